@@ -73,6 +73,25 @@ public class TestProps {
   public static final String CI_COMMON_AUTHS = CI_COMMON + "auths";
   // Tserver props to set when a table is created
   public static final String CI_COMMON_ACCUMULO_SERVER_PROPS = CI_COMMON + "accumulo.server.props";
+  // Optional existing table whose rows are sampled to place splits when a table is created,
+  // instead of spacing splits evenly
+  public static final String CI_COMMON_ACCUMULO_SPLITS_SAMPLE_TABLE =
+      CI_COMMON + "accumulo.splits.sample.table";
+  // Number of concurrent add splits calls used when creating a table with many splits
+  public static final String CI_COMMON_ACCUMULO_SPLITS_THREADS =
+      CI_COMMON + "accumulo.splits.threads";
+  // Enables the scan cost breakdown (first result, server, transfer and validation time) for
+  // the scanner, walker and batch walker
+  public static final String CI_COMMON_TIMING_ENABLED = CI_COMMON + "timing.enabled";
+  // How often in milliseconds to log the scan cost breakdown
+  public static final String CI_COMMON_TIMING_REPORT_MS = CI_COMMON + "timing.report.ms";
+  // Optional host:port of the metrics coordinator that ingest, walk, batch walk and scan clients
+  // publish their throughput and latency to. The coordinator listens on the port.
+  public static final String CI_COMMON_METRICS_COORDINATOR = CI_COMMON + "metrics.coordinator";
+  // Length of each metrics interval in milliseconds, must be the same for clients and coordinator
+  public static final String CI_COMMON_METRICS_INTERVAL_MS = CI_COMMON + "metrics.interval.ms";
+  // Optional CSV file the metrics coordinator appends the merged metrics of each interval to
+  public static final String CI_COMMON_METRICS_OUTPUT = CI_COMMON + "metrics.output";
 
   /** Ingest **/
   // Number of entries each ingest client should write
@@ -136,6 +155,15 @@ public class TestProps {
   public static final String CI_SCANNER_ENTRIES = CI_SCANNER + "entries";
   // Perform the scan using the configured consistency level
   public static final String CI_SCANNER_CONSISTENCY_LEVEL = CI_SCANNER + "consistency.level";
+  // Optional scan SLO to adapt to, either 'latency' (p99 scan time in ms) or 'throughput'
+  // (entries/sec). When set, concurrent range scans are run and tuned to hold the target.
+  public static final String CI_SCANNER_SLO_TYPE = CI_SCANNER + "slo.type";
+  // The p99 latency (in ms) or entries/sec to hold
+  public static final String CI_SCANNER_SLO_TARGET = CI_SCANNER + "slo.target";
+  // Maximum number of concurrent scans when adapting to a SLO
+  public static final String CI_SCANNER_SLO_MAX_THREADS = CI_SCANNER + "slo.max.threads";
+  // How often (in ms) to measure the achieved SLO and adjust concurrency and range width
+  public static final String CI_SCANNER_SLO_INTERVAL_MS = CI_SCANNER + "slo.interval.ms";
 
   /** Verify **/
   // Maximum number of mapreduce mappers
@@ -169,6 +197,8 @@ public class TestProps {
   public static final String CI_SPLIT_THRESHOLD_REDUCTION_FACTOR =
       CI_SPLIT + "threshold.reduction.factor";
   public static final String CI_SPLIT_TEST_ROUNDS = CI_SPLIT + "test.rounds";
+  // Optional directory to write a performance report to, which can be used with Compare and Csv
+  public static final String CI_SPLIT_REPORT_DIR = CI_SPLIT + "report.dir";
 
   /** TeraSort **/
   public static final String TERASORT_TABLE = TERASORT + "table";
@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.continuous;
+
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.ScannerBase.ConsistencyLevel;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.testing.TestProps;
+import org.apache.hadoop.io.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Runs concurrent range scans over the continuous ingest table and adjusts the number of concurrent
+ * scans and the width of each scanned range to hold a p99 latency or entries/sec target. Each
+ * measurement interval logs the concurrency and range width alongside what was achieved, which
+ * traces out the scan capacity curve of the cluster.
+ */
+class AdaptiveScanner {
+  private static final Logger log = LoggerFactory.getLogger(AdaptiveScanner.class);
+
+  enum SloType {
+    LATENCY, THROUGHPUT
+  }
+
+  /**
+   * Collects the duration and entry count of every scan completed during an interval.
+   */
+  private static class ScanWindow {
+    private long[] times = new long[1024];
+    private int scans = 0;
+    private long entries = 0;
+
+    synchronized void record(long timeMs, long count) {
+      if (scans == times.length) {
+        times = Arrays.copyOf(times, scans * 2);
+      }
+      times[scans++] = timeMs;
+      entries += count;
+    }
+
+    /**
+     * @return the sorted scan times recorded since the last call, the total entries is stored in
+     *         the last element
+     */
+    synchronized long[] drain() {
+      long[] result = Arrays.copyOf(times, scans + 1);
+      Arrays.sort(result, 0, scans);
+      result[scans] = entries;
+      scans = 0;
+      entries = 0;
+      return result;
+    }
+  }
+
+  private final ContinuousEnv env;
+  private final SloType sloType;
+  private final double target;
+  private final int maxThreads;
+  private final long intervalMs;
+  private final ConsistencyLevel cl;
+  private final long maxDistance;
+
+  private final ScanWindow window = new ScanWindow();
+  private final ScanTimings timings;
+  private final ClientMetrics metrics;
+  private volatile int concurrency = 1;
+  private volatile long distance;
+
+  AdaptiveScanner(ContinuousEnv env) {
+    this.env = env;
+    this.sloType =
+        SloType.valueOf(env.getTestProperty(TestProps.CI_SCANNER_SLO_TYPE).trim().toUpperCase());
+    this.target = Double.parseDouble(env.getTestProperty(TestProps.CI_SCANNER_SLO_TARGET));
+    this.maxThreads = Integer.parseInt(env.getTestProperty(TestProps.CI_SCANNER_SLO_MAX_THREADS));
+    this.intervalMs = Long.parseLong(env.getTestProperty(TestProps.CI_SCANNER_SLO_INTERVAL_MS));
+    this.cl = TestProps
+        .getScanConsistencyLevel(env.getTestProperty(TestProps.CI_SCANNER_CONSISTENCY_LEVEL));
+
+    Preconditions.checkArgument(target > 0, "SLO target must be > 0");
+    Preconditions.checkArgument(maxThreads > 0, "SLO max threads must be > 0");
+    Preconditions.checkArgument(intervalMs > 0, "SLO interval must be > 0");
+
+    this.maxDistance = Math.max(1, (env.getRowMax() - env.getRowMin()) / 2);
+    this.distance = Math.min(1_000_000_000_000L, maxDistance);
+    this.timings = ScanTimings.create(env, "scan");
+    this.metrics = ClientMetrics.create(env.getTestProperties(), "scan");
+  }
+
+  private Void scanLoop(int id) throws Exception {
+    AccumuloClient client = env.getAccumuloClient();
+    try (Scanner scanner = ContinuousUtil.createScanner(client, env.getAccumuloTableName(),
+        env.getRandomAuthorizations())) {
+      scanner.setConsistencyLevel(cl);
+      timings.configure(scanner);
+      while (true) {
+        // threads above the current concurrency level idle until they are needed
+        if (id >= concurrency) {
+          sleepUninterruptibly(100, MILLISECONDS);
+          continue;
+        }
+
+        long dist = distance;
+        long startRow =
+            ContinuousIngest.genLong(env.getRowMin(), env.getRowMax() - dist, env.getRandom());
+        scanner.setRange(new Range(new Text(ContinuousIngest.genRow(startRow)),
+            new Text(ContinuousIngest.genRow(startRow + dist))));
+
+        long t1 = System.nanoTime();
+        ScanTimings.Operation op = timings.start();
+        long count = 0;
+        for (var entry : scanner) {
+          if (!op.accept(entry.getKey(), entry.getValue())) {
+            continue;
+          }
+          op.validate(entry.getKey(), entry.getValue());
+          count++;
+        }
+        op.finish(count);
+        long t2 = System.nanoTime();
+
+        window.record(NANOSECONDS.toMillis(t2 - t1), count);
+        metrics.record(count, Duration.ofNanos(t2 - t1));
+      }
+    }
+  }
+
+  void run() throws Exception {
+    log.info("Adapting to {} target of {} using up to {} concurrent scans", sloType, target,
+        maxThreads);
+
+    ExecutorService executor = Executors.newFixedThreadPool(maxThreads);
+    List<Future<Void>> futures = new ArrayList<>();
+    for (int i = 0; i < maxThreads; i++) {
+      final int id = i;
+      futures.add(executor.submit(() -> scanLoop(id)));
+    }
+
+    try {
+      long lastTime = System.nanoTime();
+      while (true) {
+        sleepUninterruptibly(intervalMs, MILLISECONDS);
+
+        for (Future<Void> future : futures) {
+          if (future.isDone()) {
+            // surfaces the exception that stopped the scan thread
+            future.get();
+          }
+        }
+
+        long now = System.nanoTime();
+        long[] stats = window.drain();
+        int scans = stats.length - 1;
+        long entries = stats[scans];
+        double rate = entries / (NANOSECONDS.toMillis(now - lastTime) / 1000.0);
+        long p50 = percentile(stats, scans, .50);
+        long p99 = percentile(stats, scans, .99);
+        lastTime = now;
+
+        log.info(
+            "SLO - threads: {}, distance: {}, scans: {}, p50: {}ms, p99: {}ms, entries/sec: {}",
+            concurrency, distance, scans, p50, p99, String.format("%.2f", rate));
+
+        adjust(scans, p99, rate);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static long percentile(long[] sorted, int size, double percentile) {
+    if (size == 0) {
+      return -1;
+    }
+    return sorted[Math.min(size - 1, (int) Math.ceil(percentile * size) - 1)];
+  }
+
+  private void adjust(int scans, long p99, double rate) {
+    switch (sloType) {
+      case LATENCY:
+        if (scans == 0 || p99 > target) {
+          // back off quickly when over the target
+          if (concurrency > 1) {
+            concurrency = Math.max(1, concurrency / 2);
+          } else {
+            distance = Math.max(1, distance / 2);
+          }
+        } else if (p99 < .8 * target) {
+          if (concurrency < maxThreads) {
+            concurrency++;
+          } else {
+            distance = distance > maxDistance / 2 ? maxDistance : distance * 2;
+          }
+        }
+        break;
+      case THROUGHPUT:
+        if (rate < .9 * target) {
+          if (concurrency < maxThreads) {
+            concurrency++;
+          } else {
+            scaleDistance(rate == 0 ? 10 : target / rate);
+          }
+        } else if (rate > 1.1 * target) {
+          if (concurrency > 1) {
+            concurrency--;
+          } else {
+            scaleDistance(target / rate);
+          }
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unknown SLO type " + sloType);
+    }
+  }
+
+  private void scaleDistance(double ratio) {
+    // move ratio closer to 1 to make change slower
+    ratio = ratio - (ratio - 1.0) * (2.0 / 3.0);
+    double scaled = ratio * distance;
+    distance = scaled >= maxDistance ? maxDistance : Math.max(1, (long) scaled);
+  }
+}
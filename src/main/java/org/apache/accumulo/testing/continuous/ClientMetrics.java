@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.continuous;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.accumulo.testing.TestProps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.net.HostAndPort;
+
+/**
+ * Publishes per interval operation counts, entry counts and latency histograms of a continuous test
+ * client to a {@link MetricsCoordinator}. Each interval is sent as one line:
+ *
+ * <pre>
+ * client operation intervalStartMs intervalMs operations entries histogram
+ * </pre>
+ *
+ * Intervals are aligned to multiples of the interval length so the coordinator can merge the
+ * intervals of all clients. If the coordinator can not be reached, that interval is dropped and the
+ * connection is retried for the next one.
+ */
+class ClientMetrics {
+  private static final Logger log = LoggerFactory.getLogger(ClientMetrics.class);
+
+  private static final ClientMetrics DISABLED = new ClientMetrics(null, null, 0);
+
+  private final String operation;
+  private final HostAndPort coordinator;
+  private final long intervalMs;
+  private final String clientId;
+
+  private final LatencyHistogram histogram = new LatencyHistogram();
+  private long entries = 0;
+  private long lastTotal = 0;
+
+  private Socket socket;
+  private PrintWriter writer;
+
+  ClientMetrics(String operation, HostAndPort coordinator, long intervalMs) {
+    this.operation = operation;
+    this.coordinator = coordinator;
+    this.intervalMs = intervalMs;
+    this.clientId = coordinator == null ? null : createClientId();
+  }
+
+  /**
+   * Creates metrics for an operation. Nothing is recorded unless
+   * {@link TestProps#CI_COMMON_METRICS_COORDINATOR} is set.
+   */
+  static ClientMetrics create(Properties testProps, String operation) {
+    String address = testProps.getProperty(TestProps.CI_COMMON_METRICS_COORDINATOR);
+    if (address == null || address.isBlank()) {
+      return DISABLED;
+    }
+    long intervalMs = getIntervalMs(testProps);
+    ClientMetrics metrics =
+        new ClientMetrics(operation, HostAndPort.fromString(address.trim()), intervalMs);
+    metrics.startPublishing();
+    return metrics;
+  }
+
+  static long getIntervalMs(Properties testProps) {
+    return Long.parseLong(testProps.getProperty(TestProps.CI_COMMON_METRICS_INTERVAL_MS, "10000"));
+  }
+
+  private static String createClientId() {
+    String host;
+    try {
+      host = InetAddress.getLocalHost().getHostName();
+    } catch (IOException e) {
+      host = "unknown";
+    }
+    return host + "-" + ProcessHandle.current().pid();
+  }
+
+  /**
+   * Records one operation that read or wrote the given number of entries.
+   */
+  void record(long entries, Duration latency) {
+    if (coordinator == null) {
+      return;
+    }
+    synchronized (this) {
+      this.entries += entries;
+      histogram.record(latency.toNanos() / 1000);
+    }
+  }
+
+  /**
+   * Records one operation for clients that track the running total of entries instead of the
+   * entries per operation.
+   */
+  void recordTotal(long totalEntries, Duration latency) {
+    if (coordinator == null) {
+      return;
+    }
+    synchronized (this) {
+      record(totalEntries - lastTotal, latency);
+      lastTotal = totalEntries;
+    }
+  }
+
+  private void startPublishing() {
+    ScheduledExecutorService publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "client-metrics-" + operation);
+      t.setDaemon(true);
+      return t;
+    });
+    long now = System.currentTimeMillis();
+    publisher.scheduleAtFixedRate(this::publish, intervalMs - now % intervalMs, intervalMs,
+        MILLISECONDS);
+  }
+
+  void publish() {
+    // publishing runs just after an interval boundary, so report the interval that just ended
+    long intervalStart =
+        (System.currentTimeMillis() + intervalMs / 2) / intervalMs * intervalMs - intervalMs;
+    String line;
+    synchronized (this) {
+      line = String.join(" ", clientId, operation, Long.toString(intervalStart),
+          Long.toString(intervalMs), Long.toString(histogram.getCount()), Long.toString(entries),
+          histogram.encode());
+      histogram.clear();
+      entries = 0;
+    }
+
+    try {
+      if (writer == null) {
+        socket = new Socket(coordinator.getHost(), coordinator.getPort());
+        writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8));
+      }
+      writer.println(line);
+      if (writer.checkError()) {
+        throw new IOException("Failed to write to " + coordinator);
+      }
+    } catch (IOException e) {
+      log.warn("Unable to send metrics to coordinator {}, dropping interval", coordinator, e);
+      closeConnection();
+    }
+  }
+
+  private void closeConnection() {
+    writer = null;
+    if (socket != null) {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        log.debug("Failed to close connection to {}", coordinator, e);
+      }
+      socket = null;
+    }
+  }
+}
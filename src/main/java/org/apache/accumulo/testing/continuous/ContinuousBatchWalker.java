@@ -63,12 +63,15 @@ public class ContinuousBatchWalker {
         scanner.setConsistencyLevel(cl);
         Duration bwSleep =
             Duration.ofMillis(Integer.parseInt(env.getTestProperty(TestProps.CI_BW_SLEEP_MS)));
+        ScanTimings timings = ScanTimings.create(env, "batchwalk");
+        ClientMetrics metrics = ClientMetrics.create(env.getTestProperties(), "batchwalk");
         while (true) {
           try (BatchScanner bs = client.createBatchScanner(env.getAccumuloTableName(), auths)) {
             Set<Text> batch =
                 getBatch(scanner, env.getRowMin(), env.getRowMax(), scanBatchSize, env.getRandom());
             List<Range> ranges = batch.stream().map(Range::new).collect(Collectors.toList());
-            runBatchScan(scanBatchSize, bs, batch, ranges);
+            timings.configure(bs);
+            runBatchScan(scanBatchSize, bs, batch, ranges, timings, metrics);
           }
           sleepUninterruptibly(bwSleep);
         }
@@ -77,7 +80,7 @@ public class ContinuousBatchWalker {
   }
 
   private static void runBatchScan(int batchSize, BatchScanner bs, Set<Text> batch,
-      List<Range> ranges) {
+      List<Range> ranges, ScanTimings timings, ClientMetrics metrics) {
     bs.setRanges(ranges);
 
     Set<Text> rowsSeen = new HashSet<>();
@@ -86,8 +89,12 @@ public class ContinuousBatchWalker {
 
     long t1 = System.currentTimeMillis();
 
+    ScanTimings.Operation op = timings.start();
     for (Entry<Key,Value> entry : bs) {
-      ContinuousWalk.validate(entry.getKey(), entry.getValue());
+      if (!op.accept(entry.getKey(), entry.getValue())) {
+        continue;
+      }
+      op.validate(entry.getKey(), entry.getValue());
 
       rowsSeen.add(entry.getKey().getRow());
 
@@ -96,8 +103,10 @@ public class ContinuousBatchWalker {
       count++;
     }
     bs.close();
+    op.finish(count);
 
     long t2 = System.currentTimeMillis();
+    metrics.record(count, Duration.ofMillis(t2 - t1));
 
     if (!rowsSeen.equals(batch)) {
       Set<Text> extraSeen = Sets.difference(rowsSeen, batch);
@@ -22,6 +22,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -328,6 +329,8 @@ public class ContinuousIngest {
     log.info("DELETES will occur with a probability of {}",
         String.format("%.02f", deleteProbability));
 
+    ClientMetrics metrics = ClientMetrics.create(testProps, "ingest");
+
     try (BatchWriter bw = batchWriterFactory.create(tableName)) {
       zipfianEnabled =
           Boolean.parseBoolean(testProps.getProperty("test.ci.ingest.zipfian.enabled"));
@@ -364,7 +367,7 @@ public class ContinuousIngest {
             bw.addMutation(m);
           }
 
-          lastFlushTime = flush(bw, entriesWritten, entriesDeleted, lastFlushTime);
+          lastFlushTime = flush(bw, entriesWritten, entriesDeleted, lastFlushTime, metrics);
           if (entriesWritten >= numEntries)
             break out;
           pauseCheck(random);
@@ -385,7 +388,7 @@ public class ContinuousIngest {
               entriesDeleted++;
               bw.addMutation(m);
             }
-            lastFlushTime = flush(bw, entriesWritten, entriesDeleted, lastFlushTime);
+            lastFlushTime = flush(bw, entriesWritten, entriesDeleted, lastFlushTime, metrics);
             pauseCheck(random);
           }
         } else {
@@ -398,7 +401,7 @@ public class ContinuousIngest {
             entriesWritten++;
             bw.addMutation(m);
           }
-          lastFlushTime = flush(bw, entriesWritten, entriesDeleted, lastFlushTime);
+          lastFlushTime = flush(bw, entriesWritten, entriesDeleted, lastFlushTime, metrics);
         }
 
         if (entriesWritten >= numEntries)
@@ -435,10 +438,11 @@ public class ContinuousIngest {
   }
 
   private static long flush(BatchWriter bw, long entriesWritten, long entriesDeleted,
-      long lastFlushTime) throws MutationsRejectedException {
+      long lastFlushTime, ClientMetrics metrics) throws MutationsRejectedException {
     long t1 = System.currentTimeMillis();
     bw.flush();
     long t2 = System.currentTimeMillis();
+    metrics.recordTotal(entriesWritten + entriesDeleted, Duration.ofMillis(t2 - t1));
     log.info("FLUSH - duration: {}ms, since last flush: {}ms, total written: {}, total deleted: {}",
         (t2 - t1), (t2 - lastFlushTime), entriesWritten, entriesDeleted);
     return t2;
@@ -21,6 +21,7 @@ package org.apache.accumulo.testing.continuous;
 import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.accumulo.core.client.AccumuloClient;
@@ -39,6 +40,12 @@ public class ContinuousScanner {
 
     try (ContinuousEnv env = new ContinuousEnv(args)) {
 
+      String sloType = env.getTestProperty(TestProps.CI_SCANNER_SLO_TYPE);
+      if (sloType != null && !sloType.isBlank()) {
+        new AdaptiveScanner(env).run();
+        return;
+      }
+
       long distance = 1_000_000_000_000L;
 
       AccumuloClient client = env.getAccumuloClient();
@@ -49,8 +56,11 @@ public class ContinuousScanner {
           .getScanConsistencyLevel(env.getTestProperty(TestProps.CI_SCANNER_CONSISTENCY_LEVEL));
 
       double delta = Math.min(.05, .05 / (numToScan / 1000.0));
+      ScanTimings timings = ScanTimings.create(env, "scan");
+      ClientMetrics metrics = ClientMetrics.create(env.getTestProperties(), "scan");
       try (Scanner scanner = ContinuousUtil.createScanner(client, env.getAccumuloTableName(),
           env.getRandomAuthorizations())) {
+        timings.configure(scanner);
         while (true) {
           long startRow = ContinuousIngest.genLong(env.getRowMin(), env.getRowMax() - distance,
               env.getRandom());
@@ -62,13 +72,19 @@ public class ContinuousScanner {
 
           long t1 = System.currentTimeMillis();
 
+          ScanTimings.Operation op = timings.start();
           long count = 0;
           for (var entry : scanner) {
-            ContinuousWalk.validate(entry.getKey(), entry.getValue());
+            if (!op.accept(entry.getKey(), entry.getValue())) {
+              continue;
+            }
+            op.validate(entry.getKey(), entry.getValue());
             count++;
           }
+          op.finish(count);
 
           long t2 = System.currentTimeMillis();
+          metrics.record(count, Duration.ofMillis(t2 - t1));
 
           if (count < (1 - delta) * numToScan || count > (1 + delta) * numToScan) {
             if (count == 0) {
@@ -20,6 +20,7 @@ package org.apache.accumulo.testing.continuous;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Map.Entry;
 import java.util.Random;
@@ -62,11 +63,14 @@ public class ContinuousWalk {
       int sleepTime = Integer.parseInt(env.getTestProperty(TestProps.CI_WALKER_SLEEP_MS));
       ConsistencyLevel cl = TestProps
           .getScanConsistencyLevel(env.getTestProperty(TestProps.CI_WALKER_CONSISTENCY_LEVEL));
+      ScanTimings timings = ScanTimings.create(env, "walk");
+      ClientMetrics metrics = ClientMetrics.create(env.getTestProperties(), "walk");
 
       while (true) {
         try (Scanner scanner = ContinuousUtil.createScanner(client, env.getAccumuloTableName(),
             env.getRandomAuthorizations())) {
           scanner.setConsistencyLevel(cl);
+          timings.configure(scanner);
           String row = findAStartRow(env.getRowMin(), env.getRowMax(), scanner, env.getRandom());
 
           while (row != null) {
@@ -76,12 +80,18 @@ public class ContinuousWalk {
             long t1 = System.currentTimeMillis();
 
             scanner.setRange(new Range(new Text(row)));
+            ScanTimings.Operation op = timings.start();
             for (Entry<Key,Value> entry : scanner) {
-              validate(entry.getKey(), entry.getValue());
+              if (!op.accept(entry.getKey(), entry.getValue())) {
+                continue;
+              }
+              op.validate(entry.getKey(), entry.getValue());
               values.add(entry.getValue());
             }
+            op.finish(values.size());
 
             long t2 = System.currentTimeMillis();
+            metrics.record(values.size(), Duration.ofMillis(t2 - t1));
 
             log.debug("SRQ {} {} {} {}", t1, row, (t2 - t1), values.size());
 
@@ -116,6 +126,9 @@ public class ContinuousWalk {
     long t1 = System.currentTimeMillis();
 
     for (Entry<Key,Value> entry : scanner) {
+      if (ScanTimingIterator.isTimingEntry(entry.getValue())) {
+        continue;
+      }
       validate(entry.getKey(), entry.getValue());
       pr = getPrevRow(entry.getValue());
       count++;
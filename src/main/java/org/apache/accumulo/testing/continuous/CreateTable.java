@@ -18,12 +18,18 @@
  */
 package org.apache.accumulo.testing.continuous;
 
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static org.apache.accumulo.testing.TestProps.CI_COMMON_ACCUMULO_NUM_TABLETS;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.accumulo.core.client.AccumuloClient;
 import org.apache.accumulo.core.client.AccumuloException;
@@ -37,6 +43,9 @@ import org.slf4j.LoggerFactory;
 public class CreateTable {
   private static final Logger log = LoggerFactory.getLogger(CreateTable.class);
 
+  // the most splits passed to a single create or add splits call
+  private static final int SPLITS_PER_CALL = 10_000;
+
   public static void main(String[] args) throws Exception {
 
     try (ContinuousEnv env = new ContinuousEnv(args)) {
@@ -47,19 +56,40 @@ public class CreateTable {
       long rowMax = env.getRowMax();
       Map<String,String> serverProps = getProps(env, TestProps.CI_COMMON_ACCUMULO_SERVER_PROPS);
       Map<String,String> tableProps = getProps(env, TestProps.CI_COMMON_ACCUMULO_TABLE_PROPS);
-
-      createTable(client, tableName, numTablets, rowMin, rowMax, serverProps, tableProps);
+      int threads = getSplitThreads(env);
+      String sampleTable = env.getTestProperty(TestProps.CI_COMMON_ACCUMULO_SPLITS_SAMPLE_TABLE);
+
+      if (sampleTable == null || sampleTable.isBlank()) {
+        createTable(client, tableName, numTablets, rowMin, rowMax, serverProps, tableProps,
+            threads);
+      } else {
+        if (numTablets < 1) {
+          log.error("numTablets < 1");
+          System.exit(-1);
+        }
+        log.info("Sampling rows of {} to create splits", sampleTable.trim());
+        SortedSet<Text> splits =
+            SplitGenerator.sampled(client, sampleTable.trim(), numTablets, env.getRandom());
+        createTable(client, tableName, splits, serverProps, tableProps, threads);
+      }
     }
   }
 
   public static void createTable(AccumuloClient client, String tableName, int numTablets,
       long rowMin, long rowMax, Map<String,String> serverProps, Map<String,String> tableProps)
       throws Exception {
-    if (client.tableOperations().exists(tableName)) {
-      log.error("Accumulo table {} already exists", tableName);
-      System.exit(-1);
-    }
+    createTable(client, tableName, numTablets, rowMin, rowMax, serverProps, tableProps, 1);
+  }
 
+  /**
+   * Creates a table with numTablets evenly spaced over the row range.
+   *
+   * @param threads number of concurrent add splits calls used when there are more splits than fit
+   *        in a single call
+   */
+  public static void createTable(AccumuloClient client, String tableName, int numTablets,
+      long rowMin, long rowMax, Map<String,String> serverProps, Map<String,String> tableProps,
+      int threads) throws Exception {
     if (numTablets < 1) {
       log.error("numTablets < 1");
       System.exit(-1);
@@ -69,6 +99,22 @@ public class CreateTable {
       System.exit(-1);
     }
 
+    createTable(client, tableName, SplitGenerator.uniform(rowMin, rowMax, numTablets), serverProps,
+        tableProps, threads);
+  }
+
+  /**
+   * Creates a table with the given splits. When threads is greater than one and there are more than
+   * {@value #SPLITS_PER_CALL} splits, the table is created with the first chunk of splits and the
+   * remaining chunks are added concurrently.
+   */
+  public static void createTable(AccumuloClient client, String tableName, SortedSet<Text> splits,
+      Map<String,String> serverProps, Map<String,String> tableProps, int threads) throws Exception {
+    if (client.tableOperations().exists(tableName)) {
+      log.error("Accumulo table {} already exists", tableName);
+      System.exit(-1);
+    }
+
     // set tserver props
     if (!serverProps.isEmpty()) {
       try {
@@ -79,29 +125,52 @@ public class CreateTable {
       }
     }
 
-    NewTableConfiguration ntc = new NewTableConfiguration();
+    long t1 = System.nanoTime();
 
-    if (numTablets > 1) {
-      SortedSet<Text> splits = new TreeSet<>();
-      final int numSplits = numTablets - 1;
-      final long distance = ((rowMax - rowMin) / numTablets) + 1;
-      long split = distance;
-      for (int i = 0; i < numSplits; i++) {
-        String s = String.format("%016x", split + rowMin);
-        while (s.charAt(s.length() - 1) == '0') {
-          s = s.substring(0, s.length() - 1);
-        }
-        splits.add(new Text(s));
-        split += distance;
-      }
-      ntc.withSplits(splits);
-    }
+    List<Text> sorted = new ArrayList<>(splits);
+    int initialSplits = threads > 1 ? Math.min(sorted.size(), SPLITS_PER_CALL) : sorted.size();
 
+    NewTableConfiguration ntc = new NewTableConfiguration();
+    if (initialSplits > 0) {
+      ntc.withSplits(new TreeSet<>(sorted.subList(0, initialSplits)));
+    }
     ntc.setProperties(tableProps);
 
     client.tableOperations().create(tableName, ntc);
 
-    log.info("Created Accumulo table {} with {} tablets", tableName, numTablets);
+    if (initialSplits < sorted.size()) {
+      addSplits(client, tableName, sorted.subList(initialSplits, sorted.size()), threads);
+    }
+
+    long millis = Math.max(1, NANOSECONDS.toMillis(System.nanoTime() - t1));
+    log.info("Created Accumulo table {} with {} tablets in {}ms ({} splits/sec)", tableName,
+        sorted.size() + 1, millis, String.format("%.2f", sorted.size() / (millis / 1000.0)));
+  }
+
+  private static void addSplits(AccumuloClient client, String tableName, List<Text> splits,
+      int threads) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < splits.size(); i += SPLITS_PER_CALL) {
+        SortedSet<Text> chunk =
+            new TreeSet<>(splits.subList(i, Math.min(splits.size(), i + SPLITS_PER_CALL)));
+        futures.add(executor.submit(() -> {
+          client.tableOperations().addSplits(tableName, chunk);
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  static int getSplitThreads(ContinuousEnv env) {
+    String threads = env.getTestProperty(TestProps.CI_COMMON_ACCUMULO_SPLITS_THREADS);
+    return threads == null ? 1 : Math.max(1, Integer.parseInt(threads));
   }
 
   private static Map<String,String> getProps(ContinuousEnv env, String propType) {
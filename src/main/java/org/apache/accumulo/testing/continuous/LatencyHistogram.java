@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.continuous;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * A mergeable histogram of latencies in microseconds. Values below 16 are counted exactly and
+ * larger values are counted in buckets that are 1/16th of their power of two, so percentiles are
+ * accurate to within about 6%.
+ */
+final class LatencyHistogram {
+
+  private static final int SUB_BUCKETS = 16;
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final long[] counts = new long[NUM_BUCKETS];
+  private long total = 0;
+
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) Math.max(0, value);
+    }
+    int exp = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exp - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * @return the smallest value that falls in the bucket
+   */
+  static long lowerBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exp = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long sub = bucket % SUB_BUCKETS;
+    return (SUB_BUCKETS + sub) << (exp - SUB_BUCKET_BITS);
+  }
+
+  void record(long micros) {
+    counts[bucket(micros)]++;
+    total++;
+  }
+
+  void add(LatencyHistogram other) {
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      counts[i] += other.counts[i];
+    }
+    total += other.total;
+  }
+
+  long getCount() {
+    return total;
+  }
+
+  /**
+   * @return the lower bound of the bucket holding the requested percentile or -1 if empty
+   */
+  long getPercentile(double percentile) {
+    if (total == 0) {
+      return -1;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile * total));
+    long seen = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return lowerBound(i);
+      }
+    }
+    throw new IllegalStateException();
+  }
+
+  void clear() {
+    Arrays.fill(counts, 0);
+    total = 0;
+  }
+
+  /**
+   * Encodes the non-empty buckets as {@code bucket:count} pairs separated by commas, or {@code -}
+   * when empty.
+   */
+  String encode() {
+    if (total == 0) {
+      return "-";
+    }
+    StringJoiner joiner = new StringJoiner(",");
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      if (counts[i] > 0) {
+        joiner.add(i + ":" + counts[i]);
+      }
+    }
+    return joiner.toString();
+  }
+
+  static LatencyHistogram decode(String encoded) {
+    LatencyHistogram histogram = new LatencyHistogram();
+    if (encoded.equals("-")) {
+      return histogram;
+    }
+    for (String pair : encoded.split(",")) {
+      int sep = pair.indexOf(':');
+      int bucket = Integer.parseInt(pair.substring(0, sep));
+      long count = Long.parseLong(pair.substring(sep + 1));
+      if (bucket < 0 || bucket >= NUM_BUCKETS || count < 0) {
+        throw new IllegalArgumentException("Bad histogram bucket " + pair);
+      }
+      histogram.counts[bucket] += count;
+      histogram.total += count;
+    }
+    return histogram;
+  }
+}
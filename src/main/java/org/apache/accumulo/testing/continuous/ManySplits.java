@@ -23,6 +23,15 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -30,9 +39,15 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import org.apache.accumulo.core.Constants;
 import org.apache.accumulo.core.client.AccumuloClient;
 import org.apache.accumulo.core.client.AccumuloException;
 import org.apache.accumulo.core.client.AccumuloSecurityException;
@@ -46,11 +61,18 @@ import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.TableId;
 import org.apache.accumulo.testing.TestProps;
 import org.apache.accumulo.testing.continuous.ContinuousIngest.RandomGeneratorFactory;
+import org.apache.accumulo.testing.performance.Report;
+import org.apache.accumulo.testing.performance.impl.Compare;
+import org.apache.accumulo.testing.performance.impl.ContextualReport;
+import org.apache.accumulo.testing.performance.impl.Csv;
+import org.apache.accumulo.testing.performance.impl.PerfTestRunner;
 import org.apache.hadoop.io.Text;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 
 public class ManySplits {
   private static final Logger log = LoggerFactory.getLogger(ManySplits.class);
@@ -79,6 +101,8 @@ public class ManySplits {
           Integer.parseInt(testProps.getProperty(TestProps.CI_SPLIT_THRESHOLD_REDUCTION_FACTOR));
       final int testRounds =
           Integer.parseInt(testProps.getProperty(TestProps.CI_SPLIT_TEST_ROUNDS));
+      final int threads = CreateTable.getSplitThreads(env);
+      final String reportDir = testProps.getProperty(TestProps.CI_SPLIT_REPORT_DIR, "");
 
       // disable deletes for ingest
       testProps.setProperty(TestProps.CI_INGEST_DELETE_PROBABILITY, "0.0");
@@ -106,7 +130,7 @@ public class ManySplits {
 
       log.info("Creating initial table: {}", firstTable);
       CreateTable.createTable(client, firstTable, initialTabletCount, rowMin, rowMax, tableProps,
-          Map.of());
+          Map.of(), threads);
 
       log.info("Ingesting {} entries into first table, {}.", initialData, firstTable);
       var splitSupplier = ContinuousIngest.createSplitSupplier(client, firstTable);
@@ -119,23 +143,34 @@ public class ManySplits {
       client.tableOperations().flush(firstTable);
 
       // clone tables instead of ingesting into each. it's a lot quicker
-      log.info("Creating {} more tables by cloning the first", tableCount - 1);
-      tableNames.stream().parallel().skip(1).forEach(tableName -> {
-        try {
-          client.tableOperations().clone(firstTable, tableName, true, null, null);
-        } catch (TableExistsException e) {
-          log.warn(
-              "table {} already exists. Continuing with existing table. Previous data will affect splits",
-              tableName);
-        } catch (Exception e) {
-          throw new RuntimeException(e);
-        }
-      });
+      log.info("Creating {} more tables by cloning the first using {} threads", tableCount - 1,
+          threads);
+      final double cloneSplitsPerSec = cloneTables(client, firstTable,
+          tableNames.subList(1, tableNames.size()), initialTabletCount - 1, threads);
 
       StringBuilder testResults = new StringBuilder();
       testResults.append("Test results:\n");
       testResults.append("Total test rounds: ").append(testRounds).append("\n");
       testResults.append("Table count: ").append(tableCount).append("\n");
+      testResults.append("Clone splits per second: ")
+          .append(String.format("%.2f", cloneSplitsPerSec)).append("\n");
+
+      final Instant testStart = Instant.now();
+      Report.Builder report = Report.builder().id("manysplits")
+          .description("Measures how fast tablets split after the split threshold is reduced")
+          .parameter("table_count", tableCount, "The number of tables")
+          .parameter("initial_tablets", initialTabletCount, "The number of tablets per new table")
+          .parameter("write_size", initialData, "The number of entries written to each table")
+          .parameter("initial_threshold", initialSplitThresholdStr,
+              "The split threshold of each new table")
+          .parameter("reduction_factor", splitThresholdReductionFactor,
+              "The split threshold is divided by this each round")
+          .parameter("rounds", testRounds, "The number of rounds").result("clone_rate",
+              cloneSplitsPerSec, "splits/sec",
+              "Rate at which splits were created when cloning tables");
+
+      // the curves of each round, written next to the report
+      final List<Map<String,List<Sample>>> roundCurves = new ArrayList<>();
 
       SECONDS.sleep(5);
 
@@ -166,14 +201,21 @@ public class ManySplits {
 
         log.info("Waiting for each tablet to have a sum file size <= {}", splitThresholdStr);
 
-        // wait for all tablets to reach the expected sum file size
+        // wait for all tablets to reach the expected sum file size, recording how the tablet count
+        // and largest tablet of each table change along the way
+        final Map<String,List<Sample>> curves = new ConcurrentHashMap<>();
         tableNames.stream().parallel().forEach(tableName -> {
           long elapsedMillis = 0;
           long sleepMillis = SECONDS.toMillis(1);
+          List<Sample> curve = new ArrayList<>();
+          curves.put(tableName, curve);
           try {
             // wait for each tablet to reach the expected sum file size
             while (true) {
               Collection<Long> tabletFileSizes = getTabletFileSizes(client, tableName).values();
+              curve.add(new Sample(NANOSECONDS.toMillis(System.nanoTime() - beforeThresholdUpdate),
+                  tabletFileSizes.size(),
+                  tabletFileSizes.stream().mapToLong(l -> l).max().orElse(0)));
               // filter out the tablets that are already the expected size
               Set<Long> offendingTabletSizes =
                   tabletFileSizes.stream().filter(tabletFileSize -> tabletFileSize > splitThreshold)
@@ -221,11 +263,17 @@ public class ManySplits {
         String splitsPerSecond = String.format("%.2f", (double) splitCountThisRound / seconds);
         testResults.append("Splits per second:    ").append(splitsPerSecond).append("\n");
 
+        addRoundToReport(report, i, splitThresholdStr, splitCountThisRound, millis);
+        roundCurves.add(curves);
+
         previousSplitThreshold = splitThreshold;
       }
 
       log.info("Test completed successfully.");
       log.info(testResults.toString());
+      if (!reportDir.isBlank()) {
+        writeReport(reportDir, testStart, report.build(), roundCurves);
+      }
       log.info("Deleting tables");
       tableNames.stream().parallel().forEach(tableName -> {
         try {
@@ -241,17 +289,123 @@ public class ManySplits {
   }
 
   /**
-   * @return a map of tablets to the sum of their file size
+   * The tablet count and largest tablet of a table at a point during a test round.
+   */
+  private static class Sample {
+    final long elapsedMillis;
+    final int tablets;
+    final long maxTabletSize;
+
+    Sample(long elapsedMillis, int tablets, long maxTabletSize) {
+      this.elapsedMillis = elapsedMillis;
+      this.tablets = tablets;
+      this.maxTabletSize = maxTabletSize;
+    }
+  }
+
+  /**
+   * Adds the split rate and time to converge of a round for comparison.
+   */
+  private static void addRoundToReport(Report.Builder report, int round, String threshold,
+      int splits, long millis) {
+    String prefix = "round" + round + ".";
+    report.parameter(prefix + "threshold", threshold, "The split threshold set in round " + round);
+    report.result(prefix + "split_rate", splits, Math.max(1, millis), "splits/sec",
+        "Rate at which splits were created in round " + round);
+    report.result(prefix + "converge_time", millis, "ms",
+        "Time for all tablets to drop below the split threshold in round " + round);
+  }
+
+  /**
+   * Writes the report in the same form as {@link PerfTestRunner} so that it can be used with
+   * {@link Compare} and {@link Csv}. The sampled curve of each table in each round is written to a
+   * CSV file next to it, with one line per sample, so the report itself stays small.
+   */
+  private static void writeReport(String reportDir, Instant start, Report report,
+      List<Map<String,List<Sample>>> roundCurves) throws IOException {
+    ContextualReport contextualReport = new ContextualReport(ManySplits.class.getName(),
+        Constants.VERSION, start, Instant.now(), report);
+
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    String time = Instant.now().atZone(ZoneId.systemDefault()).format(formatter);
+    Path outputFile = Paths.get(reportDir, ManySplits.class.getSimpleName() + "_" + time + ".json");
+
+    Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    try (Writer writer = Files.newBufferedWriter(outputFile)) {
+      gson.toJson(contextualReport, writer);
+    }
+    log.info("Wrote report to {}", outputFile);
+
+    Path curvesFile =
+        Paths.get(reportDir, ManySplits.class.getSimpleName() + "_" + time + "_curves.csv");
+    try (Writer writer = Files.newBufferedWriter(curvesFile)) {
+      writer.write("round,table,elapsed_ms,tablets,max_tablet_size_bytes\n");
+      for (int round = 0; round < roundCurves.size(); round++) {
+        for (Map.Entry<String,List<Sample>> entry : new TreeMap<>(roundCurves.get(round))
+            .entrySet()) {
+          for (Sample sample : entry.getValue()) {
+            writer.write(round + "," + entry.getKey() + "," + sample.elapsedMillis + ","
+                + sample.tablets + "," + sample.maxTabletSize + "\n");
+          }
+        }
+      }
+    }
+    log.info("Wrote split curves to {}", curvesFile);
+  }
+
+  /**
+   * Clones the source table into each of the given tables, running up to threads clones at once.
+   *
+   * @return the number of splits created per second across all clones
+   */
+  private static double cloneTables(AccumuloClient client, String sourceTable,
+      List<String> tableNames, int splitsPerTable, int threads) throws Exception {
+    long t1 = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (String tableName : tableNames) {
+        futures.add(executor.submit(() -> {
+          try {
+            client.tableOperations().clone(sourceTable, tableName, true, null, null);
+          } catch (TableExistsException e) {
+            log.warn(
+                "table {} already exists. Continuing with existing table. Previous data will affect splits",
+                tableName);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    long millis = Math.max(1, NANOSECONDS.toMillis(System.nanoTime() - t1));
+    double splitsPerSec = (double) splitsPerTable * tableNames.size() / (millis / 1000.0);
+    log.info("Cloned {} tables in {}ms ({} splits/sec)", tableNames.size(), millis,
+        String.format("%.2f", splitsPerSec));
+    return splitsPerSec;
+  }
+
+  /**
+   * @return a map of tablets to the sum of their file size, tablets without files map to zero
    */
   private static Map<Text,Long> getTabletFileSizes(AccumuloClient client, String tableName)
       throws TableNotFoundException, AccumuloException, AccumuloSecurityException {
     TableId tableId = TableId.of(client.tableOperations().tableIdMap().get(tableName));
     try (Scanner scanner = client.createScanner("accumulo.metadata")) {
       scanner.fetchColumnFamily("file");
+      scanner.fetchColumn(new Text("~tab"), new Text("~pr"));
       scanner.setRange(getMetaRangeForTable(tableId.canonical()));
 
       Map<Text,Long> result = new HashMap<>();
       for (var entry : scanner) {
+        if (!entry.getKey().getColumnFamily().toString().equals("file")) {
+          result.putIfAbsent(entry.getKey().getRow(), 0L);
+          continue;
+        }
         String encodedDFV = new String(entry.getValue().get(), UTF_8);
         String[] ba = encodedDFV.split(",", 2);
         long tabletFileSize = Long.parseLong(ba[0]);
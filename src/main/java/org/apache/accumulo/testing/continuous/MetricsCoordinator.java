@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.continuous;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.accumulo.testing.TestProps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.net.HostAndPort;
+
+/**
+ * Collects the metrics published by continuous ingest, walk, batch walk and scan clients (see
+ * {@link ClientMetrics}) and merges them into cluster wide throughput and latency percentiles for
+ * each interval. Run this before starting the clients, then each interval is logged a short time
+ * after it ends and, if {@link TestProps#CI_COMMON_METRICS_OUTPUT} is set, appended to a CSV file.
+ */
+public class MetricsCoordinator {
+  private static final Logger log = LoggerFactory.getLogger(MetricsCoordinator.class);
+
+  /**
+   * The merged metrics of every client running an operation for one interval.
+   */
+  private static class Aggregate {
+    final Set<String> clients = new HashSet<>();
+    final LatencyHistogram histogram = new LatencyHistogram();
+    long operations = 0;
+    long entries = 0;
+  }
+
+  private final long intervalMs;
+  private final Path output;
+  // interval start time -> operation -> merged metrics
+  private final SortedMap<Long,Map<String,Aggregate>> intervals = new TreeMap<>();
+  private long lastReported = Long.MIN_VALUE;
+
+  MetricsCoordinator(long intervalMs, Path output) {
+    this.intervalMs = intervalMs;
+    this.output = output;
+  }
+
+  public static void main(String[] args) throws Exception {
+    try (ContinuousEnv env = new ContinuousEnv(args)) {
+      Properties testProps = env.getTestProperties();
+      String address = testProps.getProperty(TestProps.CI_COMMON_METRICS_COORDINATOR);
+      if (address == null || address.isBlank()) {
+        log.error("{} must be set to host:port", TestProps.CI_COMMON_METRICS_COORDINATOR);
+        System.exit(-1);
+      }
+      int port = HostAndPort.fromString(address.trim()).getPort();
+      String outputFile = testProps.getProperty(TestProps.CI_COMMON_METRICS_OUTPUT, "");
+      Path output = outputFile.isBlank() ? null : Paths.get(outputFile.trim());
+
+      new MetricsCoordinator(ClientMetrics.getIntervalMs(testProps), output).run(port);
+    }
+  }
+
+  void run(int port) throws IOException {
+    try (ServerSocket server = new ServerSocket(port)) {
+      log.info("Listening for client metrics on port {}", port);
+      run(server);
+    }
+  }
+
+  /**
+   * Accepts client connections on the server socket until it is closed.
+   */
+  void run(ServerSocket server) throws IOException {
+    ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+    reporter.scheduleAtFixedRate(this::report, intervalMs, intervalMs, MILLISECONDS);
+
+    try {
+      while (true) {
+        Socket socket = server.accept();
+        Thread t = new Thread(() -> receive(socket), "metrics-" + socket.getRemoteSocketAddress());
+        t.setDaemon(true);
+        t.start();
+      }
+    } finally {
+      reporter.shutdownNow();
+    }
+  }
+
+  private void receive(Socket socket) {
+    try (socket; BufferedReader reader =
+        new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        try {
+          add(line);
+        } catch (RuntimeException e) {
+          log.warn("Ignoring bad metrics line from {} : {}", socket.getRemoteSocketAddress(), line,
+              e);
+        }
+      }
+    } catch (IOException e) {
+      log.debug("Lost connection to {}", socket.getRemoteSocketAddress(), e);
+    }
+  }
+
+  void add(String line) {
+    String[] fields = line.split(" ");
+    if (fields.length != 7) {
+      throw new IllegalArgumentException("Expected 7 fields");
+    }
+    String client = fields[0];
+    String operation = fields[1];
+    long intervalStart = Long.parseLong(fields[2]);
+    long clientIntervalMs = Long.parseLong(fields[3]);
+    long operations = Long.parseLong(fields[4]);
+    long entries = Long.parseLong(fields[5]);
+    LatencyHistogram histogram = LatencyHistogram.decode(fields[6]);
+
+    if (clientIntervalMs != intervalMs) {
+      throw new IllegalArgumentException("Client interval " + clientIntervalMs
+          + "ms does not match coordinator interval " + intervalMs + "ms");
+    }
+
+    synchronized (this) {
+      if (intervalStart <= lastReported) {
+        log.debug("Dropping late metrics from {} for interval {}", client, intervalStart);
+        return;
+      }
+      Aggregate aggregate = intervals.computeIfAbsent(intervalStart, k -> new TreeMap<>())
+          .computeIfAbsent(operation, k -> new Aggregate());
+      aggregate.clients.add(client);
+      aggregate.operations += operations;
+      aggregate.entries += entries;
+      aggregate.histogram.add(histogram);
+    }
+  }
+
+  /**
+   * Reports every interval that ended at least one interval ago, giving clients that long to send
+   * their metrics.
+   */
+  void report() {
+    report(System.currentTimeMillis());
+  }
+
+  synchronized void report(long now) {
+    long cutoff = now - 2 * intervalMs;
+    while (!intervals.isEmpty() && intervals.firstKey() <= cutoff) {
+      long intervalStart = intervals.firstKey();
+      intervals.remove(intervalStart).forEach((operation, aggregate) -> {
+        double seconds = intervalMs / 1000.0;
+        String time = Instant.ofEpochMilli(intervalStart).toString();
+        String opsPerSec = String.format("%.2f", aggregate.operations / seconds);
+        String entriesPerSec = String.format("%.2f", aggregate.entries / seconds);
+        String p50 = toMs(aggregate.histogram.getPercentile(.50));
+        String p99 = toMs(aggregate.histogram.getPercentile(.99));
+        String p999 = toMs(aggregate.histogram.getPercentile(.999));
+
+        log.info(
+            "AGG - time: {}, op: {}, clients: {}, ops/sec: {}, entries/sec: {}, p50: {}ms,"
+                + " p99: {}ms, p999: {}ms",
+            time, operation, aggregate.clients.size(), opsPerSec, entriesPerSec, p50, p99, p999);
+
+        if (output != null) {
+          writeCsv(String.join(",", time, operation, Integer.toString(aggregate.clients.size()),
+              opsPerSec, entriesPerSec, p50, p99, p999));
+        }
+      });
+      lastReported = intervalStart;
+    }
+  }
+
+  private void writeCsv(String row) {
+    try {
+      boolean header = !Files.exists(output);
+      try (Writer writer = Files.newBufferedWriter(output, UTF_8, StandardOpenOption.CREATE,
+          StandardOpenOption.APPEND)) {
+        if (header) {
+          writer
+              .write("time,operation,clients,ops_per_sec,entries_per_sec,p50_ms,p99_ms,p999_ms\n");
+        }
+        writer.write(row);
+        writer.write('\n');
+      }
+    } catch (IOException e) {
+      log.warn("Failed to write metrics to {}", output, e);
+    }
+  }
+
+  private static String toMs(long micros) {
+    return micros < 0 ? "-" : String.format("%.3f", micros / 1000.0);
+  }
+}
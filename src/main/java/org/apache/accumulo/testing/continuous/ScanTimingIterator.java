@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.continuous;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.WrappingIterator;
+
+/**
+ * Measures the time spent reading data on the tablet server. After the source is exhausted for a
+ * seeked range, one extra entry is returned that sorts directly after the last entry read and whose
+ * value holds the nanoseconds spent in the source's seek and next calls. Use
+ * {@link #isTimingEntry(Value)} and {@link #getServerNanos(Value)} to separate these entries from
+ * the data on the client side.
+ * <p>
+ * The extra entry is always within the seeked range. When the range ends inclusively at the last
+ * entry read there is no key left for it, and the time for that range is not reported. Time spent
+ * before a tablet server re-seeks this iterator (for example when a scan session is recreated) is
+ * not reported either.
+ */
+public class ScanTimingIterator extends WrappingIterator {
+
+  private static final byte[] MARKER = {0, 't', 'i', 'm', 'i', 'n', 'g', 0};
+
+  private final Key lastKey = new Key();
+  private Range range;
+  private boolean sawKey;
+  private boolean sawStart;
+  private long serverNanos;
+  private Key timingKey;
+  private Value timingValue;
+  private boolean done;
+
+  public static boolean isTimingEntry(Value value) {
+    byte[] data = value.get();
+    if (data.length != MARKER.length + Long.BYTES) {
+      return false;
+    }
+    for (int i = 0; i < MARKER.length; i++) {
+      if (data[i] != MARKER[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public static long getServerNanos(Value value) {
+    return ByteBuffer.wrap(value.get(), MARKER.length, Long.BYTES).getLong();
+  }
+
+  @Override
+  public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive)
+      throws IOException {
+    this.range = range;
+    sawKey = false;
+    sawStart = false;
+    serverNanos = 0;
+    timingKey = null;
+    timingValue = null;
+    done = false;
+
+    long t1 = System.nanoTime();
+    super.seek(range, columnFamilies, inclusive);
+    serverNanos += System.nanoTime() - t1;
+
+    if (!super.hasTop() && !range.isInfiniteStartKey() && range.isStartKeyInclusive()
+        && !range.afterEndKey(range.getStartKey())) {
+      // nothing was read, report the time at the start of the range
+      lastKey.set(range.getStartKey());
+      sawStart = true;
+    }
+
+    checkSource();
+  }
+
+  @Override
+  public void next() throws IOException {
+    if (timingKey != null) {
+      timingKey = null;
+      timingValue = null;
+      done = true;
+      return;
+    }
+
+    long t1 = System.nanoTime();
+    super.next();
+    serverNanos += System.nanoTime() - t1;
+
+    checkSource();
+  }
+
+  private void checkSource() {
+    if (super.hasTop()) {
+      lastKey.set(super.getTopKey());
+      sawKey = true;
+    } else if ((sawKey || sawStart) && !done) {
+      timingKey = sawKey ? keyAfter(lastKey) : new Key(lastKey);
+      if (timingKey != null) {
+        timingKey.setDeleted(false);
+        timingValue = new Value(ByteBuffer.allocate(MARKER.length + Long.BYTES).put(MARKER)
+            .putLong(serverNanos).array());
+      }
+    }
+  }
+
+  /**
+   * @return a key in the seeked range that sorts after the given key, or null if there is none
+   */
+  private Key keyAfter(Key key) {
+    Key after;
+    if (key.getTimestamp() > 0) {
+      // older timestamps sort later, so this falls right after the key
+      after = new Key(key);
+      after.setTimestamp(key.getTimestamp() - 1);
+    } else {
+      // avoid negative timestamps and the underflow of Long.MIN_VALUE
+      after = key.followingKey(PartialKey.ROW_COLFAM_COLQUAL_COLVIS);
+    }
+
+    if (range.afterEndKey(after)) {
+      Key end = range.getEndKey();
+      if (range.isEndKeyInclusive() && end.compareTo(key) > 0) {
+        return new Key(end);
+      }
+      return null;
+    }
+    return after;
+  }
+
+  @Override
+  public boolean hasTop() {
+    return timingKey != null || super.hasTop();
+  }
+
+  @Override
+  public Key getTopKey() {
+    return timingKey != null ? timingKey : super.getTopKey();
+  }
+
+  @Override
+  public Value getTopValue() {
+    return timingValue != null ? timingValue : super.getTopValue();
+  }
+}
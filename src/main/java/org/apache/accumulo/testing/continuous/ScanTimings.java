@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.continuous;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.ScannerBase;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.testing.TestProps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits the time of each scan operation done by the continuous scanner, walker and batch walker
+ * into time to first result, tablet server time (reported by {@link ScanTimingIterator}), transfer
+ * time and client validation time. Transfer time is whatever remains of the total after server and
+ * validation time, so it covers the network and client side RPC overhead.
+ * <p>
+ * Averages are logged periodically and exposed over JMX as
+ * {@code org.apache.accumulo.testing:type=ScanTimings,name=<operation>}.
+ */
+public class ScanTimings implements ScanTimingsMXBean {
+  private static final Logger log = LoggerFactory.getLogger(ScanTimings.class);
+
+  private final String operation;
+  private final boolean enabled;
+
+  private final LongAdder operations = new LongAdder();
+  private final LongAdder entries = new LongAdder();
+  private final LongAdder firstResultNanos = new LongAdder();
+  private final LongAdder serverNanos = new LongAdder();
+  private final LongAdder transferNanos = new LongAdder();
+  private final LongAdder validationNanos = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+
+  private ScanTimings(String operation, boolean enabled) {
+    this.operation = operation;
+    this.enabled = enabled;
+  }
+
+  /**
+   * Creates the timings for an operation. If {@link TestProps#CI_COMMON_TIMING_ENABLED} is not set,
+   * the returned object only validates entries and records nothing.
+   */
+  static ScanTimings create(ContinuousEnv env, String operation) {
+    boolean enabled = Boolean.parseBoolean(env.getTestProperty(TestProps.CI_COMMON_TIMING_ENABLED));
+    ScanTimings timings = new ScanTimings(operation, enabled);
+    if (enabled) {
+      String reportMs = env.getTestProperty(TestProps.CI_COMMON_TIMING_REPORT_MS);
+      timings.startReporting(reportMs == null ? 60_000 : Long.parseLong(reportMs));
+    }
+    return timings;
+  }
+
+  /**
+   * Adds the server side timing iterator to a scanner when timings are enabled.
+   */
+  void configure(ScannerBase scanner) {
+    if (enabled) {
+      scanner.addScanIterator(new IteratorSetting(100, "scantiming", ScanTimingIterator.class));
+    }
+  }
+
+  Operation start() {
+    return new Operation();
+  }
+
+  /**
+   * Tracks a single scan operation. Pass every entry read to {@link #accept(Key, Value)} and only
+   * process entries for which it returns true.
+   */
+  class Operation {
+    private final long startNanos = System.nanoTime();
+    private long firstNanos = -1;
+    private long server = 0;
+    private long validation = 0;
+
+    /**
+     * @return false if the entry only carries timing information and should be skipped
+     */
+    boolean accept(Key key, Value value) {
+      if (!enabled) {
+        return true;
+      }
+      if (firstNanos < 0) {
+        firstNanos = System.nanoTime() - startNanos;
+      }
+      if (ScanTimingIterator.isTimingEntry(value)) {
+        server += ScanTimingIterator.getServerNanos(value);
+        return false;
+      }
+      return true;
+    }
+
+    void validate(Key key, Value value) {
+      if (!enabled) {
+        ContinuousWalk.validate(key, value);
+        return;
+      }
+      long t1 = System.nanoTime();
+      ContinuousWalk.validate(key, value);
+      validation += System.nanoTime() - t1;
+    }
+
+    void finish(long count) {
+      if (!enabled) {
+        return;
+      }
+      long total = System.nanoTime() - startNanos;
+      operations.increment();
+      entries.add(count);
+      firstResultNanos.add(firstNanos < 0 ? total : firstNanos);
+      serverNanos.add(server);
+      validationNanos.add(validation);
+      transferNanos.add(Math.max(0, total - server - validation));
+      totalNanos.add(total);
+    }
+  }
+
+  private void startReporting(long reportMs) {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+          new ObjectName("org.apache.accumulo.testing:type=ScanTimings,name=" + operation));
+    } catch (JMException e) {
+      log.warn("Unable to register scan timings for {} with JMX", operation, e);
+    }
+
+    ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "scan-timings-" + operation);
+      t.setDaemon(true);
+      return t;
+    });
+
+    long[] previous = new long[7];
+    reporter.scheduleAtFixedRate(() -> {
+      long[] current = {operations.sum(), entries.sum(), firstResultNanos.sum(), serverNanos.sum(),
+          transferNanos.sum(), validationNanos.sum(), totalNanos.sum()};
+      long ops = current[0] - previous[0];
+      if (ops > 0) {
+        log.info(
+            "TIMING - op: {}, ops: {}, entries: {}, avg first result: {}ms, avg server: {}ms,"
+                + " avg transfer: {}ms, avg validation: {}ms, avg total: {}ms",
+            operation, ops, current[1] - previous[1], avgMs(current[2] - previous[2], ops),
+            avgMs(current[3] - previous[3], ops), avgMs(current[4] - previous[4], ops),
+            avgMs(current[5] - previous[5], ops), avgMs(current[6] - previous[6], ops));
+      }
+      System.arraycopy(current, 0, previous, 0, current.length);
+    }, reportMs, reportMs, MILLISECONDS);
+  }
+
+  private static String avgMs(long nanos, long ops) {
+    return String.format("%.3f", avg(nanos, ops));
+  }
+
+  private static double avg(long nanos, long ops) {
+    return ops == 0 ? 0 : nanos / 1_000_000.0 / ops;
+  }
+
+  @Override
+  public long getOperations() {
+    return operations.sum();
+  }
+
+  @Override
+  public long getEntries() {
+    return entries.sum();
+  }
+
+  @Override
+  public double getAvgFirstResultMs() {
+    return avg(firstResultNanos.sum(), operations.sum());
+  }
+
+  @Override
+  public double getAvgServerMs() {
+    return avg(serverNanos.sum(), operations.sum());
+  }
+
+  @Override
+  public double getAvgTransferMs() {
+    return avg(transferNanos.sum(), operations.sum());
+  }
+
+  @Override
+  public double getAvgValidationMs() {
+    return avg(validationNanos.sum(), operations.sum());
+  }
+
+  @Override
+  public double getAvgTotalMs() {
+    return avg(totalNanos.sum(), operations.sum());
+  }
+}
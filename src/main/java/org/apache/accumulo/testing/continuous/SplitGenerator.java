@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.continuous;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.iterators.FirstEntryInRowIterator;
+import org.apache.accumulo.core.iterators.SortedKeyIterator;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Generates split points for tables used by the continuous test suite.
+ */
+final class SplitGenerator {
+  private SplitGenerator() {}
+
+  private static final byte[] HEX_DIGITS =
+      {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+  /**
+   * Creates evenly spaced splits over the row range used by continuous ingest. Each split is the 16
+   * digit hex row with trailing zeros removed.
+   */
+  static SortedSet<Text> uniform(long rowMin, long rowMax, int numTablets) {
+    SortedSet<Text> splits = new TreeSet<>();
+    final int numSplits = numTablets - 1;
+    final long distance = ((rowMax - rowMin) / numTablets) + 1;
+    final byte[] buffer = new byte[16];
+    long split = distance;
+    for (int i = 0; i < numSplits; i++) {
+      int len = toHex(split + rowMin, buffer);
+      Text text = new Text();
+      text.set(buffer, 0, len);
+      splits.add(text);
+      split += distance;
+    }
+    return splits;
+  }
+
+  /**
+   * Writes the 16 digit hex form of value into buffer, the same as {@code %016x}.
+   *
+   * @return the length of the hex string with trailing zeros removed
+   */
+  static int toHex(long value, byte[] buffer) {
+    for (int i = 15; i >= 0; i--) {
+      buffer[i] = HEX_DIGITS[(int) (value & 0xf)];
+      value >>>= 4;
+    }
+    int len = 16;
+    while (len > 0 && buffer[len - 1] == '0') {
+      len--;
+    }
+    return len;
+  }
+
+  /**
+   * Creates splits that follow the row distribution of an existing table. A random sample of the
+   * rows in the table is taken and the splits are chosen at evenly spaced positions in the sorted
+   * sample, so each tablet gets about the same number of rows from the source table. Fewer splits
+   * than requested are returned when the table has too few distinct rows.
+   */
+  static SortedSet<Text> sampled(AccumuloClient client, String table, int numTablets, Random random)
+      throws TableNotFoundException {
+    final int numSplits = numTablets - 1;
+    // sample more rows than needed so neighboring splits are not just adjacent rows
+    final int sampleSize = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(numSplits * 16L, 1024));
+
+    List<Text> sample = new ArrayList<>();
+    long rowsSeen = 0;
+    try (Scanner scanner = ContinuousUtil.createScanner(client, table, Authorizations.EMPTY)) {
+      // only need one key per row and no values
+      scanner.addScanIterator(new IteratorSetting(100, SortedKeyIterator.class));
+      scanner.addScanIterator(new IteratorSetting(101, FirstEntryInRowIterator.class));
+      for (var entry : scanner) {
+        rowsSeen++;
+        // reservoir sampling keeps a uniform sample without knowing the number of rows up front
+        if (sample.size() < sampleSize) {
+          sample.add(entry.getKey().getRow());
+        } else {
+          long j = (long) (random.nextDouble() * rowsSeen);
+          if (j < sampleSize) {
+            sample.set((int) j, entry.getKey().getRow());
+          }
+        }
+      }
+    }
+
+    sample.sort(null);
+
+    SortedSet<Text> splits = new TreeSet<>();
+    if (sample.isEmpty()) {
+      return splits;
+    }
+    for (int i = 1; i <= numSplits; i++) {
+      splits.add(sample.get((int) ((long) i * sample.size() / numTablets)));
+    }
+    return splits;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntToDoubleFunction;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Chooses the bucket of each item reference written by the generator. Buckets can be chosen
+ * uniformly, with a zipf distribution where bucket n gets weight {@code 1/(n+1)^exponent}, or with
+ * a hotspot where the first fraction of buckets gets a fixed share of references. Popular buckets
+ * have the lowest numbers, so they are next to each other in the item ref section, which is what
+ * makes them a hotspot unless the table is split around them, see {@link #splits(int)}.
+ */
+class BucketDistribution {
+
+  private final int buckets;
+  // cumulative probability of buckets 0 to n, null for uniform
+  private final double[] cdf;
+
+  private BucketDistribution(int buckets, double[] cdf) {
+    this.buckets = buckets;
+    this.cdf = cdf;
+  }
+
+  static BucketDistribution create(GcsEnv env) {
+    int buckets = env.getMaxBuckets();
+    String type = env.getBucketDistribution();
+    switch (type) {
+      case "uniform":
+        return uniform(buckets);
+      case "zipf":
+        return zipf(buckets, env.getZipfExponent());
+      case "hotspot":
+        return hotspot(buckets, env.getHotspotFraction(), env.getHotspotShare());
+      default:
+        throw new IllegalArgumentException("Unknown bucket distribution " + type);
+    }
+  }
+
+  static BucketDistribution uniform(int buckets) {
+    return new BucketDistribution(buckets, null);
+  }
+
+  static BucketDistribution zipf(int buckets, double exponent) {
+    return new BucketDistribution(buckets,
+        cumulative(buckets, n -> 1.0 / Math.pow(n + 1, exponent)));
+  }
+
+  static BucketDistribution hotspot(int buckets, double fraction, double share) {
+    Preconditions.checkArgument(fraction > 0 && fraction < 1 && share >= 0 && share <= 1,
+        "Bad hotspot fraction %s or share %s", fraction, share);
+    int hot = Math.max(1, (int) (fraction * buckets));
+    return new BucketDistribution(buckets,
+        cumulative(buckets, n -> n < hot ? share / hot : (1 - share) / Math.max(1, buckets - hot)));
+  }
+
+  private static double[] cumulative(int buckets, IntToDoubleFunction weight) {
+    double[] cdf = new double[buckets];
+    double sum = 0;
+    for (int n = 0; n < buckets; n++) {
+      sum += weight.applyAsDouble(n);
+      cdf[n] = sum;
+    }
+    for (int n = 0; n < buckets; n++) {
+      cdf[n] /= sum;
+    }
+    cdf[buckets - 1] = 1.0;
+    return cdf;
+  }
+
+  int next(Random rand) {
+    if (cdf == null) {
+      return rand.nextInt(buckets);
+    }
+    int index = Arrays.binarySearch(cdf, rand.nextDouble());
+    return index >= 0 ? index : Math.min(buckets - 1, -index - 1);
+  }
+
+  /**
+   * @return the probability that a reference goes to a bucket below the given bucket
+   */
+  double below(int bucket) {
+    if (bucket <= 0) {
+      return 0;
+    }
+    return cdf == null ? (double) bucket / buckets : cdf[Math.min(bucket, buckets) - 1];
+  }
+
+  /**
+   * Chooses split points for the item ref section so each tablet is expected to receive the same
+   * share of references. A single bucket can not be split, so a bucket that gets more than one
+   * tablet's share ends up alone in a tablet and there will be fewer tablets.
+   *
+   * @return the sorted first bucket of every tablet except the first
+   */
+  int[] splits(int tablets) {
+    int[] splits = new int[tablets - 1];
+    int count = 0;
+    int bucket = 1;
+    for (int t = 1; t < tablets; t++) {
+      double target = (double) t / tablets;
+      while (bucket < buckets && below(bucket) < target) {
+        bucket++;
+      }
+      if (bucket >= buckets) {
+        break;
+      }
+      if (count == 0 || splits[count - 1] < bucket) {
+        splits[count++] = bucket;
+      }
+    }
+    return Arrays.copyOf(splits, count);
+  }
+}
@@ -18,18 +18,64 @@
  */
 package org.apache.accumulo.testing.gcs;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
-public class Collector {
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Deletes unreferenced candidates and their items. Most passes are incremental and only read the
+ * candidates written since the previous pass started, using a server side timestamp filter. A
+ * candidate that is still referenced when first seen is only looked at again by the full pass that
+ * runs every {@link GcsEnv#getCollectorFullPassInterval()} passes.
+ * <p>
+ * After each pass the collector counts the candidates the next incremental pass will read. The
+ * sleep between passes shrinks as this backlog approaches the batch size, so the collector runs
+ * continuously when it falls behind. The backlog and collection lag are printed after each pass and
+ * exposed over JMX as {@code org.apache.accumulo.testing:type=GcsCollector}.
+ */
+public class Collector implements CollectorMXBean {
+
+  // allowed difference between the collector's clock and the tablet servers' clocks
+  private static final long CLOCK_SKEW_MS = 60_000;
 
   Persistence persistence;
   private final int batchSize;
+  private final int fullPassInterval;
+  private final long maxSleepMs;
+
+  private volatile long passes;
+  private volatile long backlog;
+  private volatile long remaining;
+  private volatile long collectionLagMs;
+  private final LongAdder deleted = new LongAdder();
 
   public Collector(GcsEnv gcsEnv) {
     this.persistence = new Persistence(gcsEnv);
     this.batchSize = gcsEnv.getBatchSize();
+    this.fullPassInterval = gcsEnv.getCollectorFullPassInterval();
+    Preconditions.checkArgument(fullPassInterval > 0,
+        "test.gcs.collector.fullPassInterval must be > 0 : %s", fullPassInterval);
+    this.maxSleepMs = gcsEnv.getCollectorMaxSleepMs();
+  }
+
+  /**
+   * What a pass over the candidates found.
+   */
+  private static class Pass {
+    long processed = 0;
+    long deleted = 0;
+    // the timestamp of the oldest candidate deleted, or Long.MAX_VALUE if none were
+    long oldestDeleted = Long.MAX_VALUE;
   }
 
   public static void main(String[] args) throws Exception {
@@ -56,9 +102,43 @@ public class Collector {
   public void run() throws Exception {
     Random rand = new Random();
 
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+          new ObjectName("org.apache.accumulo.testing:type=GcsCollector"));
+    } catch (JMException e) {
+      System.err.println("Unable to register collector metrics with JMX : " + e);
+    }
+
+    long lastPassStart = 0;
+    long passCount = 0;
     while (true) {
-      forEachBatch(persistence.candidates(), batchSize, batch -> collect(batch));
-      Thread.sleep(13000);
+      boolean full = passCount % fullPassInterval == 0;
+      long passStart = System.currentTimeMillis();
+
+      long t1 = System.nanoTime();
+      Pass pass = collectAll(full ? 0 : Math.max(1, lastPassStart - CLOCK_SKEW_MS));
+      long t2 = System.nanoTime();
+      lastPassStart = passStart;
+
+      passes = ++passCount;
+      // the candidates the next incremental pass will read, including those written during this one
+      backlog = persistence.count("C:", Math.max(1, passStart - CLOCK_SKEW_MS));
+      remaining = pass.processed - pass.deleted;
+      collectionLagMs = pass.deleted == 0 ? 0 : System.currentTimeMillis() - pass.oldestDeleted;
+      deleted.add(pass.deleted);
+
+      System.out.printf(
+          "%s pass processed %,d candidates in %,d ms, %,.2f candidates/sec, deleted : %,d"
+              + " still referenced : %,d backlog : %,d collection lag : %,d ms\n",
+          full ? "Full" : "Incremental", pass.processed, (t2 - t1) / 1_000_000,
+          pass.processed / Math.max(1e-9, (t2 - t1) / 1e9), pass.deleted, remaining, backlog,
+          collectionLagMs);
+
+      // sleep less as the backlog grows, and not at all once it fills a batch
+      long sleepMs = (long) (maxSleepMs * Math.max(0.0, 1.0 - (double) backlog / batchSize));
+      if (sleepMs > 0) {
+        Thread.sleep(sleepMs);
+      }
 
       if (rand.nextInt(10) == 0) {
         persistence.flushTable();
@@ -66,29 +146,123 @@ public class Collector {
     }
   }
 
-  private void collect(TreeSet<Candidate> candidates) {
+  /**
+   * Makes one pass over the candidates written at or after minTimestamp in key order, or over all
+   * candidates when minTimestamp is 0. Candidates are read in chunks of batchSize, and for each
+   * chunk the group refs and item refs covering the chunk's key range are merged with it. Group
+   * refs and item refs are each read once per pass, and memory is bounded by the chunk.
+   */
+  private Pass collectAll(long minTimestamp) {
+    Pass pass = new Pass();
+    Candidate start = null;
+
+    while (true) {
+      long[] timestamps = new long[batchSize];
+      List<Candidate> batch = persistence.candidatesAfter(start, minTimestamp, timestamps);
+
+      if (batch.isEmpty()) {
+        return pass;
+      }
+
+      boolean last = batch.size() < batchSize;
+      Candidate end = last ? null : batch.get(batch.size() - 1);
+      collect(batch, timestamps, start, end, pass);
+      pass.processed += batch.size();
+
+      if (last) {
+        return pass;
+      }
+      start = end;
+    }
+  }
+
+  /**
+   * Deletes the candidates in a chunk that are not referenced. The candidates were read before the
+   * refs, and group refs are read before item refs. A group ref is only deleted after all of its
+   * item refs are written, so an item ref that is missed must have been deleted after its candidate
+   * was written. Item refs are read from their index, which has an entry for every item ref.
+   */
+  private void collect(List<Candidate> candidates, long[] timestamps, Candidate start,
+      Candidate end, Pass pass) {
+    int size = candidates.size();
+    byte[][] keys = new byte[size][];
+    for (int i = 0; i < size; i++) {
+      keys[i] = persistence.itemKey(candidates.get(i));
+    }
+    int groupKeyLength = persistence.getEncoding().groupKeyLength();
 
-    int initialSize = candidates.size();
+    boolean[] referenced = new boolean[size];
 
-    for (GroupRef gr : persistence.groupRefs()) {
-      candidates.subSet(new Candidate(gr.clientId, gr.groupId, 0),
-          new Candidate(gr.clientId, gr.groupId + 1, 0)).clear();
+    // merge the group refs with the candidates, the keys of both are sorted by group key
+    int pos = 0;
+    for (byte[] groupKey : persistence.groupRefKeys(start, end)) {
+      while (pos < size && compareGroup(keys[pos], groupKey, groupKeyLength) < 0) {
+        pos++;
+      }
+      for (int i = pos; i < size && compareGroup(keys[i], groupKey, groupKeyLength) == 0; i++) {
+        referenced[i] = true;
+      }
     }
 
-    for (ItemRef ir : persistence.itemRefs()) {
-      candidates.remove(new Candidate(ir.clientId, ir.groupId, ir.itemId));
+    // merge the item refs with the candidates
+    pos = 0;
+    for (byte[] itemKey : persistence.itemRefKeys(start, end)) {
+      while (pos < size && Arrays.compareUnsigned(keys[pos], itemKey) < 0) {
+        pos++;
+      }
+      if (pos < size && Arrays.equals(keys[pos], itemKey)) {
+        referenced[pos] = true;
+      }
     }
 
-    System.out.println("Deleting " + candidates.size() + " of " + initialSize);
+    List<Candidate> toDelete = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      if (!referenced[i]) {
+        toDelete.add(candidates.get(i));
+        pass.oldestDeleted = Math.min(pass.oldestDeleted, timestamps[i]);
+      }
+    }
+    pass.deleted += toDelete.size();
 
-    for (Candidate c : candidates) {
+    System.out.println("Deleting " + toDelete.size() + " of " + size);
+
+    for (Candidate c : toDelete) {
       persistence.delete(c.item());
     }
     persistence.flush();
 
-    for (Candidate c : candidates) {
+    for (Candidate c : toDelete) {
       persistence.delete(c);
     }
     persistence.flush();
   }
+
+  @Override
+  public long getPasses() {
+    return passes;
+  }
+
+  @Override
+  public long getBacklog() {
+    return backlog;
+  }
+
+  @Override
+  public long getStillReferenced() {
+    return remaining;
+  }
+
+  @Override
+  public long getCollectionLagMs() {
+    return collectionLagMs;
+  }
+
+  @Override
+  public long getDeleted() {
+    return deleted.sum();
+  }
+
+  private static int compareGroup(byte[] itemKey, byte[] groupKey, int groupKeyLength) {
+    return Arrays.compareUnsigned(itemKey, 0, groupKeyLength, groupKey, 0, groupKeyLength);
+  }
 }
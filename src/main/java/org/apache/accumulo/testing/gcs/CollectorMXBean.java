@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+/**
+ * The progress of a {@link Collector}, for watching whether collection keeps up with generation.
+ */
+public interface CollectorMXBean {
+
+  long getPasses();
+
+  /**
+   * @return the number of candidates waiting for the next incremental pass when the last pass
+   *         finished, those written since shortly before it started
+   */
+  long getBacklog();
+
+  /**
+   * @return the number of candidates the last pass found still referenced
+   */
+  long getStillReferenced();
+
+  /**
+   * @return the age of the oldest candidate deleted by the last pass when it finished
+   */
+  long getCollectionLagMs();
+
+  long getDeleted();
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.accumulo.testing.gcs.ConditionalPersistence.CollectOutcome;
+
+/**
+ * A variant of {@link Collector} for the items written by {@link ConditionalGenerator}. Unlike the
+ * collector, many of these can run at once. Each thread repeatedly scans all items and deletes the
+ * released items with a count of zero using a conditional mutation, so collectors that find the
+ * same item race to delete it and the losers' mutations are rejected.
+ */
+public class ConditionalCollector {
+
+  private final ConditionalPersistence persistence;
+  private final Random rand;
+
+  private ConditionalCollector(ConditionalPersistence persistence, Random rand) {
+    this.persistence = persistence;
+    this.rand = rand;
+  }
+
+  private void run() throws Exception {
+    while (true) {
+      long[] counts = new long[CollectOutcome.values().length];
+      long t1 = System.nanoTime();
+      persistence.forEachItem(rand, (row, columns) -> {
+        if (ConditionalPersistence.isCollectable(columns)) {
+          counts[persistence.collect(row).ordinal()]++;
+        }
+      });
+      long t2 = System.nanoTime();
+      System.out.printf(
+          "%s deleted %,d items, %,d already deleted by others, %,d back in use,"
+              + " %,d unconfirmed, in %,d ms\n",
+          Thread.currentThread().getName(), counts[CollectOutcome.DELETED.ordinal()],
+          counts[CollectOutcome.DELETED_BY_OTHER.ordinal()],
+          counts[CollectOutcome.IN_USE.ordinal()], counts[CollectOutcome.UNCONFIRMED.ordinal()],
+          (t2 - t1) / 1_000_000);
+
+      Thread.sleep(1000 + rand.nextInt(4000));
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    GcsEnv gcsEnv = new GcsEnv(args);
+    int collectors = gcsEnv.getConditionalCollectors();
+
+    ConditionalStats stats = new ConditionalStats();
+    stats.startReporting("collector");
+
+    ExecutorService executor = Executors.newFixedThreadPool(collectors);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < collectors; i++) {
+        ConditionalPersistence persistence = new ConditionalPersistence(gcsEnv, stats);
+        ConditionalCollector collector =
+            new ConditionalCollector(persistence, new Random(gcsEnv.getRandom().nextLong()));
+        futures.add(executor.submit(() -> {
+          try (persistence) {
+            collector.run();
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
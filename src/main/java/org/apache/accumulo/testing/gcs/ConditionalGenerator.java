@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A variant of {@link Generator} that maintains reference counts with conditional mutations instead
+ * of relying on the order of batch writer flushes. Each work chain creates a group of items, adds
+ * references to them from a few buckets, removes the references and then releases the items for
+ * {@link ConditionalCollector} to delete. Chains on all threads share a small number of buckets, so
+ * their updates to bucket counts contend with each other.
+ */
+public class ConditionalGenerator {
+
+  private final ConditionalPersistence persistence;
+  private final int buckets;
+  private final int maxWork;
+  private final int maxActiveWork;
+  private final Random rand;
+
+  private long clientId;
+  private long nextGroupId;
+  private long nextItemId;
+
+  private ConditionalGenerator(GcsEnv gcsEnv, ConditionalPersistence persistence, int maxWork,
+      int maxActiveWork, Random rand) {
+    this.persistence = persistence;
+    this.buckets = gcsEnv.getConditionalBuckets();
+    this.maxWork = maxWork;
+    this.maxActiveWork = maxActiveWork;
+    this.rand = rand;
+  }
+
+  private void run() {
+    List<Queue<Runnable>> allActions = new ArrayList<>();
+    int workCreated = 0;
+
+    clientId = Math.abs(rand.nextLong());
+
+    while (workCreated == 0 || !allActions.isEmpty()) {
+      while (workCreated < maxWork && allActions.size() < maxActiveWork) {
+        allActions.add(createWork());
+        workCreated++;
+      }
+
+      // interleave unrelated work the same way the generator does
+      int index = rand.nextInt(allActions.size());
+      Queue<Runnable> queue = allActions.get(index);
+      int numToRun = Math.max(1, rand.nextInt(queue.size()));
+      for (int i = 0; i < numToRun; i++) {
+        queue.remove().run();
+      }
+
+      if (queue.isEmpty()) {
+        allActions.set(index, allActions.get(allActions.size() - 1));
+        allActions.remove(allActions.size() - 1);
+      }
+    }
+  }
+
+  private Queue<Runnable> createWork() {
+    long groupId = nextGroupId++;
+    Queue<Runnable> work = new ArrayDeque<>();
+
+    List<Item> items = new ArrayList<>();
+    int numItems = rand.nextInt(10) + 1;
+    for (int i = 0; i < numItems; i++) {
+      items.add(new Item(clientId, groupId, nextItemId++));
+    }
+
+    int[] refBuckets = rand.ints(0, buckets).distinct().limit(Math.min(buckets, 3)).toArray();
+
+    for (Item item : items) {
+      work.add(() -> persistence.createItem(item));
+    }
+    for (int bucket : refBuckets) {
+      for (Item item : items) {
+        work.add(() -> persistence.addRef(bucket, item));
+      }
+    }
+    for (int bucket : refBuckets) {
+      for (Item item : items) {
+        work.add(() -> persistence.removeRef(bucket, item));
+      }
+    }
+    for (Item item : items) {
+      work.add(() -> persistence.release(item));
+    }
+
+    return work;
+  }
+
+  public static void main(String[] args) throws Exception {
+    GcsEnv gcsEnv = new GcsEnv(args);
+    int threads = gcsEnv.getGeneratorThreads();
+    int maxWork = gcsEnv.getMaxWork();
+    int maxActiveWork = gcsEnv.getMaxActiveWork();
+
+    ConditionalStats stats = new ConditionalStats();
+    stats.startReporting("generator");
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        int work = maxWork / threads + (i < maxWork % threads ? 1 : 0);
+        if (work == 0) {
+          continue;
+        }
+        ConditionalPersistence persistence = new ConditionalPersistence(gcsEnv, stats);
+        ConditionalGenerator generator = new ConditionalGenerator(gcsEnv, persistence, work,
+            Math.max(1, maxActiveWork / threads), new Random(gcsEnv.getRandom().nextLong()));
+        futures.add(executor.submit(() -> {
+          try (persistence) {
+            generator.run();
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+      stats.printTotals("generator");
+    }
+  }
+}
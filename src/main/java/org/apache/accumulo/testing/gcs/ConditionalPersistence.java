@@ -0,0 +1,406 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.accumulo.testing.gcs.Persistence.toHex;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.ConditionalWriter;
+import org.apache.accumulo.core.client.ConditionalWriter.Status;
+import org.apache.accumulo.core.client.ConditionalWriterConfig;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.NewTableConfiguration;
+import org.apache.accumulo.core.data.Condition;
+import org.apache.accumulo.core.data.ConditionalMutation;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Stores reference counted items and buckets of references using a {@link ConditionalWriter}. Every
+ * update reads the row, writes a conditional mutation that only applies if the row has not changed
+ * and retries when rejected. An update is idempotent, so when the outcome of a write is unknown it
+ * is retried the same way and finds it has already taken effect, though not whether this write or
+ * another one made it so.
+ * <p>
+ * An item row holds its reference count and a marker for each bucket that references it. A bucket
+ * row holds a count of its references and a column for each referenced item. A reference is added
+ * to the item before the bucket and removed from the bucket before the item, so an item's count is
+ * never less than the number of buckets that reference it. Collectors only delete an item with a
+ * count of zero that its generator has released.
+ */
+class ConditionalPersistence implements AutoCloseable {
+
+  static final String ITEM = "item";
+  static final String BUCKET = "bucket";
+  static final String COUNT = "count";
+  static final String RELEASED = "released";
+  static final String REF = "ref";
+
+  private final AccumuloClient client;
+  private final String table;
+  private final ConditionalWriter writer;
+  private final Scanner scanner;
+  private final ConditionalStats stats;
+
+  ConditionalPersistence(GcsEnv env, ConditionalStats stats) {
+    this.client = env.getAccumuloClient();
+    this.table = env.getConditionalTableName();
+    this.stats = stats;
+    try {
+      this.writer = client.createConditionalWriter(table, new ConditionalWriterConfig());
+      this.scanner = client.createScanner(table);
+    } catch (TableNotFoundException | AccumuloSecurityException | AccumuloException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  static String itemRow(Item item) {
+    return new String(KeyEncoding.HEX.itemRow("I:", item.clientId, item.groupId, item.itemId),
+        UTF_8);
+  }
+
+  static String bucketRow(int bucket) {
+    return "B:" + toHex(bucket);
+  }
+
+  /**
+   * Reads a row into a map of family:qualifier to value.
+   */
+  private Map<String,String> readRow(String row) {
+    scanner.setRange(Range.exact(row));
+    Map<String,String> columns = new HashMap<>();
+    for (Entry<Key,Value> entry : scanner) {
+      columns.put(columnName(entry.getKey()), entry.getValue().toString());
+    }
+    return columns;
+  }
+
+  /**
+   * The outcome of {@link #update(String, Function)}.
+   */
+  enum Update {
+    /**
+     * A conditional mutation written by this call was accepted.
+     */
+    APPLIED,
+    /**
+     * The update was in effect without any write by this call being accepted.
+     */
+    NOT_APPLIED,
+    /**
+     * A write by this call had an unknown outcome and a reread found the update in effect, which
+     * may be due to that write or to another writer.
+     */
+    UNCONFIRMED
+  }
+
+  /**
+   * Applies an update to a row until it takes effect.
+   *
+   * @param update creates the conditional mutation for the current columns of the row, or returns
+   *        null if the update has already taken effect
+   */
+  private Update update(String row, Function<Map<String,String>,ConditionalMutation> update) {
+    long startNanos = System.nanoTime();
+    int attempts = 0;
+    boolean unknown = false;
+    while (true) {
+      ConditionalMutation cm = update.apply(readRow(row));
+      if (cm == null) {
+        if (attempts > 0) {
+          stats.updated(attempts, startNanos);
+        }
+        return unknown ? Update.UNCONFIRMED : Update.NOT_APPLIED;
+      }
+
+      attempts++;
+      Status status;
+      try {
+        status = writer.write(cm).getStatus();
+      } catch (AccumuloException | AccumuloSecurityException e) {
+        throw new RuntimeException(e);
+      }
+      stats.record(status);
+
+      switch (status) {
+        case ACCEPTED:
+          stats.updated(attempts, startNanos);
+          return Update.APPLIED;
+        case UNKNOWN:
+          unknown = true;
+          // reread the row, an unknown write that was applied makes the update return null
+          break;
+        case REJECTED:
+          break;
+        default:
+          throw new IllegalStateException("Unexpected status " + status + " for " + row);
+      }
+    }
+  }
+
+  /**
+   * @return the value of a count column, a row that has no count yet counts zero
+   */
+  static long parseCount(String count) {
+    return count == null ? 0 : Long.parseLong(count);
+  }
+
+  private static Condition condition(String family, String qualifier, String value) {
+    Condition condition = new Condition(family, qualifier);
+    return value == null ? condition : condition.setValue(value);
+  }
+
+  void createItem(Item item) {
+    update(itemRow(item), columns -> {
+      if (columns.containsKey(ITEM + ":" + COUNT)) {
+        return null;
+      }
+      ConditionalMutation cm = new ConditionalMutation(itemRow(item), new Condition(ITEM, COUNT));
+      cm.put(ITEM, COUNT, "0");
+      return cm;
+    });
+  }
+
+  /**
+   * Adds a reference from a bucket to an item, first counting it on the item and then adding it to
+   * the bucket.
+   */
+  void addRef(int bucket, Item item) {
+    String itemRow = itemRow(item);
+    String bucketRow = bucketRow(bucket);
+
+    update(itemRow, columns -> {
+      if (columns.containsKey(REF + ":" + bucketRow)) {
+        return null;
+      }
+      String count = columns.get(ITEM + ":" + COUNT);
+      ConditionalMutation cm = new ConditionalMutation(itemRow, condition(ITEM, COUNT, count),
+          new Condition(REF, bucketRow));
+      cm.put(ITEM, COUNT, Long.toString(parseCount(count) + 1));
+      cm.put(REF, bucketRow, "");
+      return cm;
+    });
+
+    update(bucketRow, columns -> {
+      if (columns.containsKey(REF + ":" + itemRow)) {
+        return null;
+      }
+      String count = columns.get(BUCKET + ":" + COUNT);
+      ConditionalMutation cm = new ConditionalMutation(bucketRow, condition(BUCKET, COUNT, count),
+          new Condition(REF, itemRow));
+      cm.put(BUCKET, COUNT, Long.toString(parseCount(count) + 1));
+      cm.put(REF, itemRow, "");
+      return cm;
+    });
+  }
+
+  /**
+   * Removes a reference from a bucket to an item, first from the bucket and then from the item's
+   * count.
+   */
+  void removeRef(int bucket, Item item) {
+    String itemRow = itemRow(item);
+    String bucketRow = bucketRow(bucket);
+
+    update(bucketRow, columns -> {
+      if (!columns.containsKey(REF + ":" + itemRow)) {
+        return null;
+      }
+      String count = columns.get(BUCKET + ":" + COUNT);
+      ConditionalMutation cm = new ConditionalMutation(bucketRow, condition(BUCKET, COUNT, count),
+          condition(REF, itemRow, ""));
+      cm.put(BUCKET, COUNT, Long.toString(Math.max(0, parseCount(count) - 1)));
+      cm.putDelete(REF, itemRow);
+      return cm;
+    });
+
+    update(itemRow, columns -> {
+      if (!columns.containsKey(REF + ":" + bucketRow)) {
+        return null;
+      }
+      String count = columns.get(ITEM + ":" + COUNT);
+      ConditionalMutation cm = new ConditionalMutation(itemRow, condition(ITEM, COUNT, count),
+          condition(REF, bucketRow, ""));
+      cm.put(ITEM, COUNT, Long.toString(Math.max(0, parseCount(count) - 1)));
+      cm.putDelete(REF, bucketRow);
+      return cm;
+    });
+  }
+
+  /**
+   * Marks an item as no longer needed by its generator, so it can be collected once unreferenced.
+   */
+  void release(Item item) {
+    update(itemRow(item), columns -> {
+      if (columns.containsKey(ITEM + ":" + RELEASED)) {
+        return null;
+      }
+      ConditionalMutation cm =
+          new ConditionalMutation(itemRow(item), new Condition(ITEM, RELEASED));
+      cm.put(ITEM, RELEASED, "");
+      return cm;
+    });
+  }
+
+  /**
+   * The outcome of {@link #collect(String)}.
+   */
+  enum CollectOutcome {
+    /**
+     * This call deleted the item.
+     */
+    DELETED,
+    /**
+     * Another collector deleted the item first.
+     */
+    DELETED_BY_OTHER,
+    /**
+     * The item was referenced again before it could be deleted.
+     */
+    IN_USE,
+    /**
+     * The item was deleted, but the outcome of this call's delete is unknown, so it may have been
+     * deleted by another collector.
+     */
+    UNCONFIRMED
+  }
+
+  /**
+   * Deletes an item row if it is released and has a count of zero. Many collectors may race to
+   * delete the same item, only one of them deletes it.
+   *
+   * @return whether this call, another collector or neither deleted the item
+   */
+  CollectOutcome collect(String itemRow) {
+    AtomicReference<Map<String,String>> lastRead = new AtomicReference<>();
+    Update update = update(itemRow, columns -> {
+      lastRead.set(columns);
+      if (!isCollectable(columns)) {
+        return null;
+      }
+      ConditionalMutation cm = new ConditionalMutation(itemRow, condition(ITEM, COUNT, "0"),
+          condition(ITEM, RELEASED, ""));
+      cm.putDelete(ITEM, COUNT);
+      cm.putDelete(ITEM, RELEASED);
+      return cm;
+    });
+
+    switch (update) {
+      case APPLIED:
+        return CollectOutcome.DELETED;
+      case UNCONFIRMED:
+        return lastRead.get().isEmpty() ? CollectOutcome.UNCONFIRMED : CollectOutcome.IN_USE;
+      case NOT_APPLIED:
+        return lastRead.get().isEmpty() ? CollectOutcome.DELETED_BY_OTHER : CollectOutcome.IN_USE;
+      default:
+        throw new IllegalStateException("Unexpected update " + update);
+    }
+  }
+
+  /**
+   * Reads every item row, starting at a random hash and wrapping around to it, so that concurrent
+   * collectors start at different items.
+   *
+   * @param consumer receives each row and its columns
+   */
+  void forEachItem(Random rand, BiConsumer<String,Map<String,String>> consumer) {
+    Text start = new Text(KeyEncoding.HEX.intRow("I:", rand.nextInt()));
+    Text end = Range.followingPrefix(new Text("I:"));
+    scanRows(new Range(start, true, end, false), consumer);
+    scanRows(new Range(new Text("I:"), true, start, false), consumer);
+  }
+
+  /**
+   * Reads every row that starts with prefix, in order.
+   */
+  void forEachRow(String prefix, BiConsumer<String,Map<String,String>> consumer) {
+    scanRows(Range.prefix(prefix), consumer);
+  }
+
+  private void scanRows(Range range, BiConsumer<String,Map<String,String>> consumer) {
+    // use a new scanner, the consumer may update rows with this object
+    try (Scanner rowScanner = client.createScanner(table)) {
+      rowScanner.setRange(range);
+      String row = null;
+      Map<String,String> columns = new HashMap<>();
+      for (Entry<Key,Value> entry : rowScanner) {
+        String entryRow = entry.getKey().getRow().toString();
+        if (!entryRow.equals(row)) {
+          if (row != null) {
+            consumer.accept(row, columns);
+          }
+          row = entryRow;
+          columns = new HashMap<>();
+        }
+        columns.put(columnName(entry.getKey()), entry.getValue().toString());
+      }
+      if (row != null) {
+        consumer.accept(row, columns);
+      }
+    } catch (TableNotFoundException | AccumuloSecurityException | AccumuloException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @return true if the columns of an item row read by a scan make it eligible for collection
+   */
+  static boolean isCollectable(Map<String,String> columns) {
+    return "0".equals(columns.get(ITEM + ":" + COUNT))
+        && columns.containsKey(ITEM + ":" + RELEASED);
+  }
+
+  static String columnName(Key k) {
+    return k.getColumnFamily() + ":" + k.getColumnQualifier();
+  }
+
+  @Override
+  public void close() {
+    scanner.close();
+    writer.close();
+  }
+
+  static void init(GcsEnv env) throws Exception {
+    TreeSet<Text> splits = new TreeSet<>();
+    // spread items over tablets by their hash, buckets are kept together to concentrate contention
+    for (int i = 1; i < env.getInitialTablets(); i++) {
+      splits.add(new Text(
+          KeyEncoding.HEX.splitRow("I:", (int) ((1L << 32) * i / env.getInitialTablets()))));
+    }
+    splits.add(new Text("I:"));
+    NewTableConfiguration ntc = new NewTableConfiguration();
+    ntc.withSplits(splits);
+    env.getAccumuloClient().tableOperations().create(env.getConditionalTableName(), ntc);
+  }
+}
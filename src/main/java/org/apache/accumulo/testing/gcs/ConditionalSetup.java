@@ -18,6 +18,10 @@
  */
 package org.apache.accumulo.testing.gcs;
 
-public interface Mutator {
-  void run(Persistence p);
+public class ConditionalSetup {
+  public static void main(String[] args) throws Exception {
+    GcsEnv env = new GcsEnv(args);
+    ConditionalPersistence.init(env);
+  }
+
 }
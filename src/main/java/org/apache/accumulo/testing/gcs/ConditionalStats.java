@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.accumulo.core.client.ConditionalWriter.Status;
+
+/**
+ * Counts the outcome of the conditional mutations written by {@link ConditionalPersistence}, shared
+ * by every thread in a process. An update that needed more than one attempt is a retry, and its
+ * retry latency is the time from its first attempt until it took effect.
+ */
+class ConditionalStats {
+
+  private final LongAdder accepted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder unknown = new LongAdder();
+  private final LongAdder updates = new LongAdder();
+  private final LongAdder retried = new LongAdder();
+  private final LongAdder retryNanos = new LongAdder();
+  private final LongAccumulator maxRetryNanos = new LongAccumulator(Math::max, 0);
+
+  void record(Status status) {
+    switch (status) {
+      case ACCEPTED:
+        accepted.increment();
+        break;
+      case REJECTED:
+        rejected.increment();
+        break;
+      case UNKNOWN:
+        unknown.increment();
+        break;
+      default:
+        // violations and visibility problems are test bugs, the caller fails on them
+        break;
+    }
+  }
+
+  /**
+   * Records an update that has taken effect.
+   *
+   * @param attempts the number of conditional mutations written for the update
+   * @param startNanos when the first attempt was made
+   */
+  void updated(int attempts, long startNanos) {
+    updates.increment();
+    if (attempts > 1) {
+      long nanos = System.nanoTime() - startNanos;
+      retried.increment();
+      retryNanos.add(nanos);
+      maxRetryNanos.accumulate(nanos);
+    }
+  }
+
+  /**
+   * Prints the rates of each outcome every 10 seconds on a daemon thread.
+   */
+  void startReporting(String name) {
+    ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "gcs-" + name + "-report");
+      t.setDaemon(true);
+      return t;
+    });
+    long[] last = new long[6];
+    last[0] = System.nanoTime();
+    reporter.scheduleAtFixedRate(() -> {
+      long now = System.nanoTime();
+      long[] current =
+          {now, accepted.sum(), rejected.sum(), unknown.sum(), retried.sum(), retryNanos.sum()};
+      double seconds = (now - last[0]) / 1e9;
+      long retries = current[4] - last[4];
+      System.out.printf(
+          "%s accepted/sec : %,.2f rejected/sec : %,.2f unknown/sec : %,.2f retried/sec : %,.2f"
+              + " avg retry latency : %,.2f ms max retry latency : %,.2f ms\n",
+          name, (current[1] - last[1]) / seconds, (current[2] - last[2]) / seconds,
+          (current[3] - last[3]) / seconds, retries / seconds,
+          retries == 0 ? 0.0 : (current[5] - last[5]) / 1e6 / retries,
+          maxRetryNanos.getThenReset() / 1e6);
+      System.arraycopy(current, 0, last, 0, current.length);
+    }, 10, 10, SECONDS);
+  }
+
+  void printTotals(String name) {
+    long retries = retried.sum();
+    System.out.printf(
+        "%s totals updates : %,d accepted : %,d rejected : %,d unknown : %,d retried : %,d"
+            + " avg retry latency : %,.2f ms\n",
+        name, updates.sum(), accepted.sum(), rejected.sum(), unknown.sum(), retries,
+        retries == 0 ? 0.0 : retryNanos.sum() / 1e6 / retries);
+  }
+}
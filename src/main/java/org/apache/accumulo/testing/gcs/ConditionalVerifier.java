@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+import static org.apache.accumulo.testing.gcs.ConditionalPersistence.BUCKET;
+import static org.apache.accumulo.testing.gcs.ConditionalPersistence.COUNT;
+import static org.apache.accumulo.testing.gcs.ConditionalPersistence.ITEM;
+import static org.apache.accumulo.testing.gcs.ConditionalPersistence.REF;
+import static org.apache.accumulo.testing.gcs.ConditionalPersistence.parseCount;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks the data written by {@link ConditionalGenerator} and {@link ConditionalCollector}. Every
+ * count must match the references it counts, and every reference in a bucket must be counted by an
+ * item that still exists. Stop the generators and collectors before running this.
+ */
+public class ConditionalVerifier {
+
+  public static void main(String[] args) throws Exception {
+    GcsEnv gcsEnv = new GcsEnv(args);
+    try (ConditionalPersistence persistence =
+        new ConditionalPersistence(gcsEnv, new ConditionalStats())) {
+      verify(persistence);
+    }
+  }
+
+  private static void verify(ConditionalPersistence persistence) {
+    // holds the bucket refs that have not yet been matched to an item, as item row/bucket row
+    Set<String> bucketRefs = new HashSet<>();
+    long[] counts = new long[3];
+
+    persistence.forEachRow("B:", (row, columns) -> {
+      int refs = countRefs(columns);
+      if (refs != parseCount(columns.get(BUCKET + ":" + COUNT))) {
+        System.err.printf("Bucket %s has count %s but %,d refs\n", row,
+            columns.get(BUCKET + ":" + COUNT), refs);
+        counts[2]++;
+      }
+      columns.keySet().stream().filter(c -> c.startsWith(REF + ":"))
+          .forEach(c -> bucketRefs.add(c.substring(REF.length() + 1) + "/" + row));
+      counts[1] += refs;
+    });
+
+    persistence.forEachRow("I:", (row, columns) -> {
+      int refs = countRefs(columns);
+      String count = columns.get(ITEM + ":" + COUNT);
+      if (count == null && refs > 0) {
+        System.err.printf("Item %s was deleted while counting %,d refs\n", row, refs);
+        counts[2]++;
+      } else if (count != null && refs != parseCount(count)) {
+        System.err.printf("Item %s has count %s but %,d refs\n", row, count, refs);
+        counts[2]++;
+      }
+      columns.keySet().stream().filter(c -> c.startsWith(REF + ":"))
+          .forEach(c -> bucketRefs.remove(row + "/" + c.substring(REF.length() + 1)));
+      counts[0]++;
+    });
+
+    for (String ref : bucketRefs) {
+      System.err.printf("Bucket ref %s is not counted by its item\n", ref);
+      counts[2]++;
+    }
+
+    System.out.printf("Checked %,d items\n", counts[0]);
+    System.out.printf("Checked %,d bucket refs\n", counts[1]);
+    if (counts[2] > 0) {
+      System.err.printf("Found %,d problems\n", counts[2]);
+    }
+  }
+
+  private static int countRefs(Map<String,String> columns) {
+    return (int) columns.keySet().stream().filter(c -> c.startsWith(REF + ":")).count();
+  }
+}
@@ -34,6 +34,22 @@ public class GcsEnv extends TestEnv {
     return Integer.parseInt(testProps.getProperty("test.gcs.maxBuckets", "100000"));
   }
 
+  public String getBucketDistribution() {
+    return testProps.getProperty("test.gcs.bucketDistribution", "uniform").trim().toLowerCase();
+  }
+
+  public double getZipfExponent() {
+    return Double.parseDouble(testProps.getProperty("test.gcs.zipfExponent", "1.0"));
+  }
+
+  public double getHotspotFraction() {
+    return Double.parseDouble(testProps.getProperty("test.gcs.hotspotFraction", "0.01"));
+  }
+
+  public double getHotspotShare() {
+    return Double.parseDouble(testProps.getProperty("test.gcs.hotspotShare", "0.9"));
+  }
+
   public int getInitialTablets() {
     return Integer.parseInt(testProps.getProperty("test.gcs.tablets", "10"));
   }
@@ -46,6 +62,46 @@ public class GcsEnv extends TestEnv {
     return Integer.parseInt(testProps.getProperty("test.gcs.maxActiveWork", "10000"));
   }
 
+  public int getGeneratorThreads() {
+    return Integer.parseInt(testProps.getProperty("test.gcs.generatorThreads", "1"));
+  }
+
+  public boolean isGroupCommit() {
+    return Boolean.parseBoolean(testProps.getProperty("test.gcs.groupCommit", "false"));
+  }
+
+  public int getVerifyPartitions() {
+    return Integer.parseInt(testProps.getProperty("test.gcs.verifyPartitions", "256"));
+  }
+
+  public int getVerifyThreads() {
+    return Integer.parseInt(testProps.getProperty("test.gcs.verifyThreads", "8"));
+  }
+
+  public KeyEncoding getKeyEncoding() {
+    return KeyEncoding.parse(testProps.getProperty("test.gcs.encoding", "hex"));
+  }
+
+  public int getCollectorFullPassInterval() {
+    return Integer.parseInt(testProps.getProperty("test.gcs.collector.fullPassInterval", "10"));
+  }
+
+  public long getCollectorMaxSleepMs() {
+    return Long.parseLong(testProps.getProperty("test.gcs.collector.maxSleepMs", "13000"));
+  }
+
+  public String getConditionalTableName() {
+    return testProps.getProperty("test.gcs.conditional.table", "gcs_conditional");
+  }
+
+  public int getConditionalBuckets() {
+    return Integer.parseInt(testProps.getProperty("test.gcs.conditional.buckets", "100"));
+  }
+
+  public int getConditionalCollectors() {
+    return Integer.parseInt(testProps.getProperty("test.gcs.conditional.collectors", "8"));
+  }
+
   public int getBatchSize() {
     return Integer.parseInt(testProps.getProperty("test.gcs.batchSize", "100000"));
   }
@@ -18,20 +18,31 @@
  */
 package org.apache.accumulo.testing.gcs;
 
-import java.util.ArrayDeque;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Queue;
 import java.util.Random;
-
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generates work chains on one or more threads. Each thread acts as an independent generator with
+ * its own client id, random number generator and {@link Persistence}, and owns a share of the total
+ * and active work.
+ */
 public class Generator {
 
   private long clientId;
   private long nextGroupId;
   private long nextItemId;
 
-  private final int maxBuckets;
+  private final BucketDistribution buckets;
 
   // The total number of work chains to execute
   private final int maxWork;
@@ -43,185 +54,153 @@ public class Generator {
 
   private final Persistence persistence;
 
-  public Generator(GcsEnv gcsEnv) {
-    this.persistence = new Persistence(gcsEnv);
-    this.maxBuckets = gcsEnv.getMaxBuckets();
+  // Work chain steps run by all generator threads
+  private final LongAdder steps;
+
+  private Generator(GcsEnv gcsEnv, Persistence persistence, int maxWork, int maxActiveWork,
+      Random rand, LongAdder steps, BucketDistribution buckets) {
+    this.persistence = persistence;
+    this.buckets = buckets;
 
-    this.maxWork = gcsEnv.getMaxWork();
-    this.maxActiveWork = gcsEnv.getMaxActiveWork();
+    this.maxWork = maxWork;
+    this.maxActiveWork = maxActiveWork;
 
-    this.rand = gcsEnv.getRandom();
+    this.rand = rand;
+    this.steps = steps;
   }
 
   private void run() {
-    // This holds future work to do.
-    List<Queue<Mutator>> allActions = new ArrayList<>();
+    // The active work chains, stored in parallel arrays indexed by chain
+    long[] groupIds = new long[maxActiveWork];
+    long[] firstItemIds = new long[maxActiveWork];
+    int[][] programs = new int[maxActiveWork][];
+    int[] pcs = new int[maxActiveWork];
+    int[] stepsLeft = new int[maxActiveWork];
+    int active = 0;
 
     int workCreated = 0;
 
     clientId = Math.abs(rand.nextLong());
 
-    while (workCreated == 0 || !allActions.isEmpty()) {
-      while (workCreated < maxWork && allActions.size() < maxActiveWork) {
-        allActions.add(createWork());
+    while (workCreated == 0 || active > 0) {
+      while (workCreated < maxWork && active < maxActiveWork) {
+        groupIds[active] = nextGroupId++;
+        firstItemIds[active] = nextItemId;
+        WorkProgram.Builder program = new WorkProgram.Builder();
+        nextItemId += createWork(program);
+        programs[active] = program.build();
+        pcs[active] = 0;
+        stepsLeft[active] = program.steps();
+        active++;
         workCreated++;
       }
 
-      int index = rand.nextInt(allActions.size());
+      int index = rand.nextInt(active);
 
-      Queue<Mutator> queue = allActions.get(index);
+      int numToRun = Math.max(1, rand.nextInt(stepsLeft[index]));
 
-      int numToRun = Math.max(1, rand.nextInt(queue.size()));
-
-      // By selecting a random queue of work do to do and taking a random number of steps off the
-      // queue we are randomly interleaving unrelated work over time.
+      // By selecting a random chain of work do to do and running a random number of its steps we
+      // are randomly interleaving unrelated work over time.
       for (int i = 0; i < numToRun; i++) {
-        queue.remove().run(persistence);
+        pcs[index] = WorkProgram.run(programs[index], pcs[index], clientId, groupIds[index],
+            firstItemIds[index], persistence);
+        steps.increment();
       }
-
-      if (queue.isEmpty()) {
-        allActions.set(index, allActions.get(allActions.size() - 1));
-        allActions.remove(allActions.size() - 1);
+      stepsLeft[index] -= numToRun;
+
+      if (stepsLeft[index] == 0) {
+        active--;
+        groupIds[index] = groupIds[active];
+        firstItemIds[index] = firstItemIds[active];
+        programs[index] = programs[active];
+        pcs[index] = pcs[active];
+        stepsLeft[index] = stepsLeft[active];
+        programs[active] = null;
       }
     }
   }
 
-  private Queue<Mutator> createWork() {
+  /**
+   * Adds the steps of a new work chain to program.
+   *
+   * @return the number of items the chain uses
+   */
+  private int createWork(WorkProgram.Builder program) {
 
     switch (rand.nextInt(2)) {
       case 0:
-        return createGroupWork();
+        return createGroupWork(program);
       case 1:
-        return createSimpleWork();
+        return createSimpleWork(program);
       default:
         throw new IllegalStateException();
     }
 
   }
 
-  private Queue<Mutator> createSimpleWork() {
-    long groupId = nextGroupId++;
-    int bucket = rand.nextInt(maxBuckets);
-
-    ArrayDeque<Mutator> work = new ArrayDeque<>();
+  private int createSimpleWork(WorkProgram.Builder work) {
+    int bucket = buckets.next(rand);
 
-    List<Item> newItems = new ArrayList<>();
+    // the indexes of the chain's items
+    List<Integer> newItems = new ArrayList<>();
     int numItems = rand.nextInt(10) + 1;
     for (int i = 0; i < numItems; i++) {
-      newItems.add(new Item(clientId, groupId, nextItemId++));
+      newItems.add(i);
     }
 
-    // copy because lambda will execute later
-    List<Item> itemsToAdd = new ArrayList<>(newItems);
-    work.add(p -> {
-      for (Item item : itemsToAdd) {
-        p.save(item, ItemState.NEW);
-      }
-      p.flush();
-    });
+    work.add(WorkProgram.SAVE_NEW, WorkProgram.mask(newItems));
 
-    List<ItemRef> referencedItems = new ArrayList<>();
+    List<Integer> referencedItems = new ArrayList<>();
 
     while (!newItems.isEmpty() || !referencedItems.isEmpty()) {
       if (newItems.isEmpty()) {
         int size = referencedItems.size();
-        List<ItemRef> subList = referencedItems.subList(rand.nextInt(size), size);
-        List<ItemRef> refsToDelete = new ArrayList<>(subList);
+        List<Integer> subList = referencedItems.subList(rand.nextInt(size), size);
+        int refsToDelete = WorkProgram.mask(subList);
         subList.clear();
 
-        work.add(p -> {
-          for (ItemRef ir : refsToDelete) {
-            p.save(new Candidate(ir.clientId, ir.groupId, ir.itemId));
-          }
-          p.flush();
-        });
-
-        work.add(p -> {
-          p.delete(refsToDelete);
-          p.flush();
-        });
+        work.add(WorkProgram.SAVE_CANDIDATES, refsToDelete);
+        work.add(WorkProgram.DELETE_REFS, refsToDelete, bucket);
       } else if (referencedItems.isEmpty()) {
         int size = newItems.size();
-        List<Item> subList = newItems.subList(rand.nextInt(size), size);
-        List<Item> itemsToRef = new ArrayList<>(subList);
+        List<Integer> subList = newItems.subList(rand.nextInt(size), size);
+        int itemsToRef = WorkProgram.mask(subList);
+        referencedItems.addAll(subList);
         subList.clear();
 
-        List<ItemRef> refsToAdd = new ArrayList<>();
-        itemsToRef.forEach(item -> refsToAdd.add(new ItemRef(bucket, item)));
-        referencedItems.addAll(refsToAdd);
-
-        work.add(p -> {
-          p.save(refsToAdd);
-          p.flush();
-        });
-
-        work.add(p -> {
-          for (Item item : itemsToRef) {
-            p.save(item, ItemState.REFERENCED);
-          }
-          p.flush();
-        });
-
+        work.add(WorkProgram.SAVE_REFS, itemsToRef, bucket);
+        work.add(WorkProgram.SAVE_REFERENCED, itemsToRef);
       } else {
         int size = referencedItems.size();
-        List<ItemRef> subList = referencedItems.subList(rand.nextInt(size), size);
-        List<ItemRef> refsToDelete = new ArrayList<>(subList);
+        List<Integer> subList = referencedItems.subList(rand.nextInt(size), size);
+        int refsToDelete = WorkProgram.mask(subList);
         subList.clear();
 
-        Item itemToRef = newItems.remove(newItems.size() - 1);
-        referencedItems.add(new ItemRef(bucket, itemToRef));
-
-        work.add(p -> {
-          for (ItemRef ir : refsToDelete) {
-            p.save(new Candidate(ir.clientId, ir.groupId, ir.itemId));
-          }
-          p.flush();
-        });
-
-        work.add(p -> {
-          p.replace(refsToDelete, new ItemRef(bucket, itemToRef));
-          p.flush();
-        });
-
-        work.add(p -> {
-          p.save(itemToRef, ItemState.REFERENCED);
-          p.flush();
-        });
+        int itemToRef = newItems.remove(newItems.size() - 1);
+        referencedItems.add(itemToRef);
+
+        work.add(WorkProgram.SAVE_CANDIDATES, refsToDelete);
+        work.add(WorkProgram.REPLACE, refsToDelete, itemToRef, bucket);
+        work.add(WorkProgram.SAVE_REFERENCED, 1 << itemToRef);
       }
     }
 
-    return work;
+    return numItems;
   }
 
-  private Queue<Mutator> createGroupWork() {
-    long groupId = nextGroupId++;
-
-    long items[] = new long[rand.nextInt(10) + 1];
-    for (int i = 0; i < items.length; i++) {
-      items[i] = nextItemId++;
-    }
-
-    ArrayDeque<Mutator> work = new ArrayDeque<>();
-
-    work.add(p -> {
-      p.save(new GroupRef(clientId, groupId));
-      p.flush();
-    });
+  private int createGroupWork(WorkProgram.Builder work) {
+    int numItems = rand.nextInt(10) + 1;
 
-    work.add(p -> {
-      for (long itemId : items) {
-        p.save(new Item(clientId, groupId, itemId), ItemState.REFERENCED);
-      }
-      p.flush();
-    });
+    work.add(WorkProgram.SAVE_GROUP_REF);
+    work.add(WorkProgram.SAVE_REFERENCED, (1 << numItems) - 1);
 
-    List<ItemRef> refsToAdd = new ArrayList<>();
-    List<ItemRef> refsToDel = new ArrayList<>();
+    // each ref is an item index and a bucket
+    List<int[]> refsToAdd = new ArrayList<>();
+    List<int[]> refsToDel = new ArrayList<>();
 
-    for (long itemId : items) {
+    for (int item = 0; item < numItems; item++) {
       for (int i = 0; i < rand.nextInt(3) + 1; i++) {
-        int bucket = rand.nextInt(maxBuckets);
-        refsToAdd.add(new ItemRef(bucket, clientId, groupId, itemId));
+        refsToAdd.add(new int[] {item, buckets.next(rand)});
       }
     }
 
@@ -231,36 +210,80 @@ public class Generator {
 
     while (!refsToAdd.isEmpty() || !refsToDel.isEmpty() || !deletedGroupRef) {
       if (!refsToAdd.isEmpty() && rand.nextBoolean()) {
-        ItemRef ref = refsToAdd.remove(refsToAdd.size() - 1);
+        int[] ref = refsToAdd.remove(refsToAdd.size() - 1);
         refsToDel.add(ref);
-        work.add(p -> {
-          p.save(ref);
-          p.flush();
-        });
+        work.add(WorkProgram.SAVE_REF, ref[0], ref[1]);
       }
 
       if (refsToAdd.isEmpty() && !deletedGroupRef && rand.nextBoolean()) {
-        work.add(p -> {
-          p.delete(new GroupRef(clientId, groupId));
-          p.flush();
-        });
+        work.add(WorkProgram.DELETE_GROUP_REF);
         deletedGroupRef = true;
       }
 
       if (!refsToDel.isEmpty() && rand.nextBoolean()) {
-        ItemRef ref = refsToDel.remove(refsToDel.size() - 1);
-        work.add(p -> {
-          p.save(new Candidate(clientId, groupId, ref.itemId));
-          p.delete(ref);
-          p.flush();
-        });
+        int[] ref = refsToDel.remove(refsToDel.size() - 1);
+        work.add(WorkProgram.RELEASE_REF, ref[0], ref[1]);
       }
     }
 
-    return work;
+    return numItems;
   }
 
-  public static void main(String[] args) {
-    new Generator(new GcsEnv(args)).run();
+  public static void main(String[] args) throws Exception {
+    GcsEnv gcsEnv = new GcsEnv(args);
+    int threads = gcsEnv.getGeneratorThreads();
+    int maxWork = gcsEnv.getMaxWork();
+    int maxActiveWork = gcsEnv.getMaxActiveWork();
+
+    LongAdder steps = new LongAdder();
+    BucketDistribution buckets = BucketDistribution.create(gcsEnv);
+    TabletWriteRates writeRates = new TabletWriteRates(gcsEnv);
+    List<Persistence> persistences = new CopyOnWriteArrayList<>();
+    // with group commit all threads share one batch writer so their flushes can be combined
+    Persistence shared = gcsEnv.isGroupCommit() ? new Persistence(gcsEnv, true) : null;
+    ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "gcs-generator-report");
+      t.setDaemon(true);
+      return t;
+    });
+    long[] last = {System.nanoTime(), 0, 0};
+    reporter.scheduleAtFixedRate(() -> {
+      long now = System.nanoTime();
+      long total = steps.sum();
+      long flushes = persistences.stream().mapToLong(Persistence::getFlushCount).sum();
+      double seconds = (now - last[0]) / 1e9;
+      System.out.printf("Work chain steps/sec : %,.2f flushes/sec : %,.2f total steps : %,d\n",
+          (total - last[1]) / seconds, (flushes - last[2]) / seconds, total);
+      writeRates.report(seconds);
+      last[0] = now;
+      last[1] = total;
+      last[2] = flushes;
+    }, 10, 10, SECONDS);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        int work = maxWork / threads + (i < maxWork % threads ? 1 : 0);
+        if (work == 0) {
+          continue;
+        }
+        Persistence persistence = shared != null ? shared : new Persistence(gcsEnv);
+        if (!persistences.contains(persistence)) {
+          persistence.setBucketWriteListener(writeRates::record);
+          persistences.add(persistence);
+        }
+        Generator generator =
+            new Generator(gcsEnv, persistence, work, Math.max(1, maxActiveWork / threads),
+                new Random(gcsEnv.getRandom().nextLong()), steps, buckets);
+        futures.add(executor.submit(generator::run));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+      reporter.shutdownNow();
+    }
   }
 }
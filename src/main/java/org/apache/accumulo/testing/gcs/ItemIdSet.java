@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+/**
+ * A hash set of item ids (client id, group id, item id) held in primitive arrays, so millions of
+ * items can be joined without creating an object for each. Each entry can carry an int value, for
+ * example the bucket of an item ref.
+ */
+final class ItemIdSet {
+
+  interface ItemIdConsumer {
+    void accept(long clientId, long groupId, long itemId, int value);
+  }
+
+  private long[] ids;
+  private int[] values;
+  private boolean[] used;
+  private int size = 0;
+
+  ItemIdSet() {
+    allocate(64);
+  }
+
+  private void allocate(int capacity) {
+    ids = new long[capacity * 3];
+    values = new int[capacity];
+    used = new boolean[capacity];
+  }
+
+  private static int hash(long clientId, long groupId, long itemId) {
+    long h = clientId * 0x9E3779B97F4A7C15L;
+    h = (h ^ groupId) * 0xC2B2AE3D27D4EB4FL;
+    h = (h ^ itemId) * 0x165667B19E3779F9L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private int find(long clientId, long groupId, long itemId) {
+    int mask = used.length - 1;
+    int slot = hash(clientId, groupId, itemId) & mask;
+    while (used[slot]) {
+      int i = slot * 3;
+      if (ids[i] == clientId && ids[i + 1] == groupId && ids[i + 2] == itemId) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -slot - 1;
+  }
+
+  /**
+   * Adds an item id, replacing the value if it is already present.
+   */
+  void add(long clientId, long groupId, long itemId, int value) {
+    if (size * 2 >= used.length) {
+      grow();
+    }
+    int slot = find(clientId, groupId, itemId);
+    if (slot < 0) {
+      slot = -slot - 1;
+      used[slot] = true;
+      ids[slot * 3] = clientId;
+      ids[slot * 3 + 1] = groupId;
+      ids[slot * 3 + 2] = itemId;
+      size++;
+    }
+    values[slot] = value;
+  }
+
+  void add(long clientId, long groupId, long itemId) {
+    add(clientId, groupId, itemId, 0);
+  }
+
+  boolean contains(long clientId, long groupId, long itemId) {
+    return find(clientId, groupId, itemId) >= 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  void forEach(ItemIdConsumer consumer) {
+    for (int slot = 0; slot < used.length; slot++) {
+      if (used[slot]) {
+        consumer.accept(ids[slot * 3], ids[slot * 3 + 1], ids[slot * 3 + 2], values[slot]);
+      }
+    }
+  }
+
+  private void grow() {
+    long[] oldIds = ids;
+    int[] oldValues = values;
+    boolean[] oldUsed = used;
+    allocate(oldUsed.length * 2);
+    size = 0;
+    for (int slot = 0; slot < oldUsed.length; slot++) {
+      if (oldUsed[slot]) {
+        add(oldIds[slot * 3], oldIds[slot * 3 + 1], oldIds[slot * 3 + 2], oldValues[slot]);
+      }
+    }
+  }
+}
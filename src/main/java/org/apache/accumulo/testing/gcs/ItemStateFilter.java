@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.Filter;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+
+/**
+ * Filters items by state on the tablet server, so a scan of the item section only sends the items
+ * it needs to the client. Optionally drops the values too, which makes sense when a single state is
+ * requested or the caller only needs the item ids.
+ */
+public class ItemStateFilter extends Filter {
+
+  private static final String STATES_OPT = "states";
+  private static final String KEYS_ONLY_OPT = "keysOnly";
+
+  private static final Value EMPTY = new Value();
+
+  private byte[][] states;
+  private boolean keysOnly;
+
+  public static void configure(IteratorSetting setting, boolean keysOnly, ItemState... states) {
+    setting.addOption(STATES_OPT,
+        Arrays.stream(states).map(ItemState::name).collect(Collectors.joining(",")));
+    setting.addOption(KEYS_ONLY_OPT, Boolean.toString(keysOnly));
+  }
+
+  @Override
+  public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options,
+      IteratorEnvironment env) throws IOException {
+    super.init(source, options, env);
+    // compare the value bytes directly, so accept does not create a string per entry
+    states = Arrays.stream(options.get(STATES_OPT).split(","))
+        .map(state -> ItemState.valueOf(state).name().getBytes(UTF_8)).toArray(byte[][]::new);
+    keysOnly = Boolean.parseBoolean(options.get(KEYS_ONLY_OPT));
+  }
+
+  @Override
+  public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+    ItemStateFilter copy = (ItemStateFilter) super.deepCopy(env);
+    copy.states = states;
+    copy.keysOnly = keysOnly;
+    return copy;
+  }
+
+  @Override
+  public boolean accept(Key k, Value v) {
+    byte[] value = v.get();
+    for (byte[] state : states) {
+      if (Arrays.equals(state, 0, state.length, value, 0, v.getSize())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public Value getTopValue() {
+    return keysOnly ? EMPTY : super.getTopValue();
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Arrays;
+
+import org.apache.accumulo.core.data.ByteSequence;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * How ids are encoded in the rows and qualifiers of the GCS table. Both encodings are fixed width
+ * and big endian, so keys sort the same way ids compare as unsigned numbers. Group keys start with
+ * a hash of the client and group ids to spread groups over tablets.
+ * <p>
+ * {@link #HEX} is human readable and separates ids with {@code :}. {@link #BINARY} writes the raw
+ * bytes of each id without separators, making keys less than half the size. The encoding is chosen
+ * when the table is created and stored in the table property {@value #TABLE_PROPERTY}.
+ */
+public enum KeyEncoding {
+  HEX(8, 16, 1) {
+    @Override
+    void write(byte[] dest, int pos, long value, int width) {
+      for (int i = pos + width - 1; i >= pos; i--) {
+        dest[i] = DIGITS[(int) (value & 0xf)];
+        value >>>= 4;
+      }
+    }
+
+    @Override
+    long read(ByteSequence bytes, int offset, int width) {
+      long value = 0;
+      for (int i = offset; i < offset + width; i++) {
+        value = (value << 4) | Character.digit(bytes.byteAt(i), 16);
+      }
+      return value;
+    }
+  },
+  BINARY(4, 8, 0) {
+    @Override
+    void write(byte[] dest, int pos, long value, int width) {
+      for (int i = pos + width - 1; i >= pos; i--) {
+        dest[i] = (byte) value;
+        value >>>= 8;
+      }
+    }
+
+    @Override
+    long read(ByteSequence bytes, int offset, int width) {
+      long value = 0;
+      for (int i = offset; i < offset + width; i++) {
+        value = (value << 8) | (bytes.byteAt(i) & 0xff);
+      }
+      return value;
+    }
+  };
+
+  static final String TABLE_PROPERTY = "table.custom.gcs.encoding";
+
+  // every section prefix, like "I:", is two bytes
+  static final int PREFIX_LENGTH = 2;
+
+  private static final byte[] DIGITS = "0123456789abcdef".getBytes(UTF_8);
+  private static final byte SEPARATOR = ':';
+
+  private final int intWidth;
+  private final int longWidth;
+  private final int separatorWidth;
+
+  KeyEncoding(int intWidth, int longWidth, int separatorWidth) {
+    this.intWidth = intWidth;
+    this.longWidth = longWidth;
+    this.separatorWidth = separatorWidth;
+  }
+
+  /**
+   * Writes the low width bytes or hex digits of value starting at pos.
+   */
+  abstract void write(byte[] dest, int pos, long value, int width);
+
+  abstract long read(ByteSequence bytes, int offset, int width);
+
+  static KeyEncoding parse(String name) {
+    return name == null ? HEX : valueOf(name.trim().toUpperCase());
+  }
+
+  static int hash(long clientId, long groupId) {
+    return Hashing.murmur3_32_fixed().newHasher().putLong(clientId).putLong(groupId).hash().asInt();
+  }
+
+  private int putInt(byte[] dest, int pos, int value) {
+    write(dest, pos, value & 0xffffffffL, intWidth);
+    return pos + intWidth;
+  }
+
+  /**
+   * Writes a separator when separate is true and the encoding has one, then value.
+   */
+  private int putLong(byte[] dest, int pos, long value, boolean separate) {
+    if (separate && separatorWidth > 0) {
+      dest[pos++] = SEPARATOR;
+    }
+    write(dest, pos, value, longWidth);
+    return pos + longWidth;
+  }
+
+  private static byte[] start(String prefix, int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < prefix.length(); i++) {
+      bytes[i] = (byte) prefix.charAt(i);
+    }
+    return bytes;
+  }
+
+  /**
+   * @return the length of the key of a group, hash:clientId:groupId, without a section prefix
+   */
+  int groupKeyLength() {
+    return intWidth + 2 * (separatorWidth + longWidth);
+  }
+
+  /**
+   * @return the length of the key of an item, the group key followed by the item id
+   */
+  int itemKeyLength() {
+    return groupKeyLength() + separatorWidth + longWidth;
+  }
+
+  /**
+   * @return the offset of the client id in a group or item row
+   */
+  int clientOffset() {
+    return PREFIX_LENGTH + intWidth + separatorWidth;
+  }
+
+  int groupOffset() {
+    return clientOffset() + longWidth + separatorWidth;
+  }
+
+  int itemOffset() {
+    return groupOffset() + longWidth + separatorWidth;
+  }
+
+  /**
+   * @return the length of a qualifier written by {@link #ids(long, long, long)}
+   */
+  int idsLength() {
+    return 3 * longWidth + 2 * separatorWidth;
+  }
+
+  /**
+   * @return the offset of the nth id in a qualifier written by {@link #ids(long, long, long)}
+   */
+  int idOffset(int n) {
+    return n * (longWidth + separatorWidth);
+  }
+
+  /**
+   * @return prefix followed by the group key
+   */
+  byte[] groupRow(String prefix, long clientId, long groupId) {
+    byte[] row = start(prefix, PREFIX_LENGTH + groupKeyLength());
+    writeGroupKey(row, clientId, groupId);
+    return row;
+  }
+
+  /**
+   * @return prefix followed by the item key
+   */
+  byte[] itemRow(String prefix, long clientId, long groupId, long itemId) {
+    byte[] row = start(prefix, PREFIX_LENGTH + itemKeyLength());
+    putLong(row, writeGroupKey(row, clientId, groupId), itemId, true);
+    return row;
+  }
+
+  private int writeGroupKey(byte[] row, long clientId, long groupId) {
+    int pos = putInt(row, PREFIX_LENGTH, hash(clientId, groupId));
+    pos = putLong(row, pos, clientId, true);
+    return putLong(row, pos, groupId, true);
+  }
+
+  /**
+   * @return prefix followed by an int, used for bucket rows and for hash ranges
+   */
+  byte[] intRow(String prefix, int value) {
+    byte[] row = start(prefix, PREFIX_LENGTH + intWidth);
+    putInt(row, PREFIX_LENGTH, value);
+    return row;
+  }
+
+  /**
+   * @return {@link #intRow(String, int)} with trailing zeros removed, for use as a split point
+   */
+  byte[] splitRow(String prefix, int value) {
+    byte[] row = intRow(prefix, value);
+    byte[] zero = intRow(prefix, 0);
+    int length = row.length;
+    while (length > PREFIX_LENGTH + 1 && row[length - 1] == zero[length - 1]) {
+      length--;
+    }
+    return Arrays.copyOf(row, length);
+  }
+
+  byte[] bucket(int bucket) {
+    byte[] bytes = new byte[intWidth];
+    putInt(bytes, 0, bucket);
+    return bytes;
+  }
+
+  byte[] id(long id) {
+    byte[] bytes = new byte[longWidth];
+    putLong(bytes, 0, id, false);
+    return bytes;
+  }
+
+  /**
+   * @return the three ids separated as they are in a group key
+   */
+  byte[] ids(long id1, long id2, long id3) {
+    byte[] bytes = new byte[idsLength()];
+    int pos = putLong(bytes, 0, id1, false);
+    pos = putLong(bytes, pos, id2, true);
+    putLong(bytes, pos, id3, true);
+    return bytes;
+  }
+
+  int readInt(ByteSequence bytes, int offset) {
+    return (int) read(bytes, offset, intWidth);
+  }
+
+  long readLong(ByteSequence bytes, int offset) {
+    return read(bytes, offset, longWidth);
+  }
+}
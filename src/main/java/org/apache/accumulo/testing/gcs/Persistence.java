@@ -18,49 +18,155 @@
  */
 package org.apache.accumulo.testing.gcs;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
 
 import org.apache.accumulo.core.client.AccumuloClient;
 import org.apache.accumulo.core.client.AccumuloException;
 import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchScanner;
 import org.apache.accumulo.core.client.BatchWriter;
 import org.apache.accumulo.core.client.IsolatedScanner;
+import org.apache.accumulo.core.client.IteratorSetting;
 import org.apache.accumulo.core.client.MutationsRejectedException;
 import org.apache.accumulo.core.client.Scanner;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.client.admin.NewTableConfiguration;
+import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.user.TimestampFilter;
 import org.apache.hadoop.io.Text;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
-import com.google.common.hash.Hashing;
 
 public class Persistence {
 
+  private static final byte[] ITEM = "item".getBytes(UTF_8);
+  private static final byte[] REF = "ref".getBytes(UTF_8);
+  private static final byte[] EMPTY = new byte[0];
+
   private final BatchWriter writer;
   private final String table;
   private final AccumuloClient client;
+  private final KeyEncoding encoding;
+  private IntConsumer bucketWrites = bucket -> {};
+  private final GroupCommit groupCommit;
+  private final LongAdder flushes = new LongAdder();
 
   Persistence(GcsEnv env) {
+    this(env, false);
+  }
+
+  /**
+   * @param groupCommit if true, concurrent calls to {@link #flush()} from different threads share a
+   *        single flush of the batch writer
+   */
+  Persistence(GcsEnv env, boolean groupCommit) {
     this.client = env.getAccumuloClient();
     this.table = env.getTableName();
+    this.groupCommit = groupCommit ? new GroupCommit() : null;
     try {
       this.writer = client.createBatchWriter(table);
     } catch (TableNotFoundException e) {
       throw new RuntimeException(e);
     }
+    this.encoding = readEncoding(client, table);
+  }
+
+  /**
+   * @return the key encoding a table was created with
+   */
+  static KeyEncoding readEncoding(AccumuloClient client, String table) {
+    try {
+      // tables created before the encoding was configurable use hex
+      return KeyEncoding
+          .parse(client.tableOperations().getConfiguration(table).get(KeyEncoding.TABLE_PROPERTY));
+    } catch (TableNotFoundException | AccumuloException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Sets a listener that is called with the bucket of every item ref mutation.
+   */
+  void setBucketWriteListener(IntConsumer listener) {
+    this.bucketWrites = listener;
+  }
+
+  /**
+   * Lets many threads wait for their writes to be durable using one flush. A thread that calls
+   * {@link #sync()} returns once a flush that started after its call completes. If no flush is
+   * running, the caller starts one. Otherwise it waits for the running flush to finish, and the
+   * first waiter then flushes for every thread that arrived while the previous flush was running.
+   * Because each thread waits for its own writes, the order of each work chain's steps is kept.
+   */
+  private class GroupCommit {
+    private long started = 0;
+    private long completed = 0;
+    private boolean flushing = false;
+    private long failed = -1;
+    private RuntimeException failure;
+
+    void sync() {
+      long target;
+      synchronized (this) {
+        // writes added before now are covered by any flush that starts after now
+        target = started + 1;
+        while (completed < target && flushing) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+          }
+        }
+        if (completed >= target) {
+          if (failed == target) {
+            throw new RuntimeException("Group commit failed", failure);
+          }
+          return;
+        }
+        flushing = true;
+        started++;
+      }
+
+      RuntimeException error = null;
+      try {
+        flushWriter();
+      } catch (RuntimeException e) {
+        error = e;
+        throw e;
+      } finally {
+        synchronized (this) {
+          if (error != null) {
+            failed = started;
+            failure = error;
+          }
+          completed = started;
+          flushing = false;
+          notifyAll();
+        }
+      }
+    }
   }
 
   static String toHex(int i) {
@@ -79,242 +185,604 @@ public class Persistence {
     }
   }
 
-  private String toHex(long l1, long l2, long l3) {
-    return toHex(l1) + ":" + toHex(l2) + ":" + toHex(l3);
+  KeyEncoding getEncoding() {
+    return encoding;
+  }
+
+  private byte[] refQualifier(ItemRef itemRef) {
+    return encoding.ids(itemRef.clientId, itemRef.groupId, itemRef.itemId);
   }
 
-  private String toHexWithHash(long l1, long l2) {
-    int hc = Hashing.murmur3_32_fixed().newHasher().putLong(l1).putLong(l2).hash().asInt();
-    return toHex(hc) + ":" + toHex(l1) + ":" + toHex(l2);
+  private Mutation bucketMutation(int bucket) {
+    bucketWrites.accept(bucket);
+    return new Mutation(encoding.intRow("R:", bucket));
   }
 
-  private String toHexWithHash(long l1, long l2, long l3) {
-    int hc =
-        Hashing.murmur3_32_fixed().newHasher().putLong(l1).putLong(l2).putLong(l3).hash().asInt();
-    return toHex(hc) + ":" + toHex(l1) + ":" + toHex(l2) + ":" + toHex(l3);
+  /**
+   * The key of an item in the candidate and item ref index sections, without the section prefix.
+   * Items sort by their group's key, which starts with a hash of the group, and then item id. The
+   * group ref section is keyed by the same group key, so candidates, group refs and item refs can
+   * be merged in one pass.
+   */
+  byte[] itemKey(Candidate c) {
+    return Arrays.copyOfRange(encoding.itemRow("C:", c.clientId, c.groupId, c.itemId),
+        KeyEncoding.PREFIX_LENGTH, KeyEncoding.PREFIX_LENGTH + encoding.itemKeyLength());
   }
 
   void save(Item item, ItemState state) {
-    Mutation m = new Mutation("I:" + toHexWithHash(item.clientId, item.groupId));
-    m.put("item", toHex(item.itemId), state.name());
+    Mutation m = new Mutation(encoding.groupRow("I:", item.clientId, item.groupId));
+    m.put(ITEM, encoding.id(item.itemId), state.name().getBytes(UTF_8));
+    write(m);
+  }
+
+  // Item refs are also written to an index sorted by item so the collector can merge them with
+  // candidates. A mutation is only atomic within its row, so an index entry is flushed before its
+  // ref is written and only deleted once the ref's delete is flushed. Every ref then has an index
+  // entry even if a client dies mid flush. An entry left without a ref only keeps its item from
+  // being collected, and Reindex removes it.
+  private void saveIndex(ItemRef itemRef) {
+    Mutation m =
+        new Mutation(encoding.itemRow("X:", itemRef.clientId, itemRef.groupId, itemRef.itemId));
+    m.put(REF, encoding.bucket(itemRef.bucket), EMPTY);
+    write(m);
+  }
+
+  private void deleteIndex(ItemRef itemRef) {
+    Mutation m =
+        new Mutation(encoding.itemRow("X:", itemRef.clientId, itemRef.groupId, itemRef.itemId));
+    m.putDelete(REF, encoding.bucket(itemRef.bucket));
     write(m);
   }
 
   void save(ItemRef itemRef) {
-    Mutation m = new Mutation("R:" + toHex(itemRef.bucket));
-    m.put("ref", toHex(itemRef.clientId, itemRef.groupId, itemRef.itemId), "");
+    saveIndex(itemRef);
+    flush();
+
+    Mutation m = bucketMutation(itemRef.bucket);
+    m.put(REF, refQualifier(itemRef), EMPTY);
     write(m);
   }
 
   public void save(Collection<ItemRef> refsToAdd) {
+    refsToAdd.forEach(this::saveIndex);
+    flush();
+
     Map<Integer,Mutation> mutations = new HashMap<>();
 
     for (ItemRef itemRef : refsToAdd) {
-      Mutation m =
-          mutations.computeIfAbsent(itemRef.bucket, bucket -> new Mutation("R:" + toHex(bucket)));
-      m.put("ref", toHex(itemRef.clientId, itemRef.groupId, itemRef.itemId), "");
+      Mutation m = mutations.computeIfAbsent(itemRef.bucket, this::bucketMutation);
+      m.put(REF, refQualifier(itemRef), EMPTY);
     }
 
     mutations.values().forEach(m -> write(m));
-
   }
 
   public void replace(Collection<ItemRef> refsToDelete, ItemRef refToAdd) {
-    Mutation m = new Mutation("R:" + toHex(refToAdd.bucket));
-    m.put("ref", toHex(refToAdd.clientId, refToAdd.groupId, refToAdd.itemId), "");
+    saveIndex(refToAdd);
+    flush();
+
+    Mutation m = bucketMutation(refToAdd.bucket);
+    m.put(REF, refQualifier(refToAdd), EMPTY);
 
     for (ItemRef ir : refsToDelete) {
       Preconditions.checkArgument(refToAdd.bucket == ir.bucket);
-      m.putDelete("ref", toHex(ir.clientId, ir.groupId, ir.itemId));
+      m.putDelete(REF, refQualifier(ir));
     }
 
     write(m);
+    if (!refsToDelete.isEmpty()) {
+      flush();
+      refsToDelete.forEach(this::deleteIndex);
+    }
   }
 
   void save(GroupRef groupRef) {
-    Mutation m = new Mutation("G:" + toHexWithHash(groupRef.clientId, groupRef.groupId));
-    m.put("", "", "");
+    Mutation m = new Mutation(encoding.groupRow("G:", groupRef.clientId, groupRef.groupId));
+    m.put(EMPTY, EMPTY, EMPTY);
     write(m);
   }
 
   void save(Candidate c) {
-    Mutation m = new Mutation("C:" + toHexWithHash(c.clientId, c.groupId, c.itemId));
-    m.put("", "", "");
+    Mutation m = new Mutation(encoding.itemRow("C:", c.clientId, c.groupId, c.itemId));
+    m.put(EMPTY, EMPTY, EMPTY);
     write(m);
   }
 
+  /**
+   * Returns once everything written by the calling thread is durable.
+   */
   public void flush() {
+    if (groupCommit == null) {
+      flushWriter();
+    } else {
+      groupCommit.sync();
+    }
+  }
+
+  private void flushWriter() {
     try {
       writer.flush();
+      flushes.increment();
     } catch (MutationsRejectedException e) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
+      throw new RuntimeException(e);
     }
   }
 
+  /**
+   * @return the number of times the batch writer has been flushed
+   */
+  long getFlushCount() {
+    return flushes.sum();
+  }
+
   public void delete(ItemRef itemRef) {
-    Mutation m = new Mutation("R:" + toHex(itemRef.bucket));
-    m.putDelete("ref", toHex(itemRef.clientId, itemRef.groupId, itemRef.itemId));
+    Mutation m = bucketMutation(itemRef.bucket);
+    m.putDelete(REF, refQualifier(itemRef));
     write(m);
+    flush();
+
+    deleteIndex(itemRef);
   }
 
   public void delete(Collection<ItemRef> refsToDelete) {
     Map<Integer,Mutation> mutations = new HashMap<>();
 
     for (ItemRef itemRef : refsToDelete) {
-      Mutation m =
-          mutations.computeIfAbsent(itemRef.bucket, bucket -> new Mutation("R:" + toHex(bucket)));
-      m.putDelete("ref", toHex(itemRef.clientId, itemRef.groupId, itemRef.itemId));
+      Mutation m = mutations.computeIfAbsent(itemRef.bucket, this::bucketMutation);
+      m.putDelete(REF, refQualifier(itemRef));
     }
 
     mutations.values().forEach(m -> write(m));
+    flush();
+
+    refsToDelete.forEach(this::deleteIndex);
   }
 
   public void delete(GroupRef groupRef) {
-    Mutation m = new Mutation("G:" + toHexWithHash(groupRef.clientId, groupRef.groupId));
-    m.putDelete("", "");
+    Mutation m = new Mutation(encoding.groupRow("G:", groupRef.clientId, groupRef.groupId));
+    m.putDelete(EMPTY, EMPTY);
     write(m);
   }
 
   public void delete(Item item) {
-    Mutation m = new Mutation("I:" + toHexWithHash(item.clientId, item.groupId));
-    m.putDelete("item", toHex(item.itemId));
+    Mutation m = new Mutation(encoding.groupRow("I:", item.clientId, item.groupId));
+    m.putDelete(ITEM, encoding.id(item.itemId));
     write(m);
   }
 
   public void delete(Candidate c) {
-    Mutation m = new Mutation("C:" + toHexWithHash(c.clientId, c.groupId, c.itemId));
-    m.putDelete("", "");
+    Mutation m = new Mutation(encoding.itemRow("C:", c.clientId, c.groupId, c.itemId));
+    m.putDelete(EMPTY, EMPTY);
     write(m);
   }
 
   private Scanner createScanner(String prefix) {
+    return createScanner(Range.prefix(prefix));
+  }
+
+  private Scanner createScanner(Range range) {
     Scanner scanner;
     try {
       scanner = new IsolatedScanner(client.createScanner(table));
     } catch (TableNotFoundException | AccumuloSecurityException | AccumuloException e) {
       throw new RuntimeException(e);
     }
-    scanner.setRange(Range.prefix(prefix));
+    scanner.setRange(range);
 
     return scanner;
   }
 
+  /**
+   * Creates a range over the keys of a section that are after start and up to and including end. A
+   * null start or end leaves that side of the range open to the start or end of the section.
+   */
+  private static Range sectionRange(String prefix, byte[] start, boolean startInclusive,
+      byte[] end) {
+    Text startRow = sectionRow(prefix, start);
+    Text endRow = end == null ? Range.followingPrefix(new Text(prefix)) : sectionRow(prefix, end);
+    return new Range(startRow, start == null || startInclusive, endRow, end != null);
+  }
+
+  private static Text sectionRow(String prefix, byte[] key) {
+    Text row = new Text(prefix);
+    if (key != null) {
+      row.append(key, 0, key.length);
+    }
+    return row;
+  }
+
+  /**
+   * @return the row of a key without its section prefix
+   */
+  private static byte[] sectionKey(Key k) {
+    ByteSequence row = k.getRowData();
+    return row.subSequence(KeyEncoding.PREFIX_LENGTH, row.length()).toArray();
+  }
+
+  private byte[] groupKey(Candidate c) {
+    return Arrays.copyOf(itemKey(c), encoding.groupKeyLength());
+  }
+
+  /**
+   * Reads the next chunk of candidates after start that were written at or after minTimestamp.
+   * Older candidates are skipped on the tablet servers, a minTimestamp of 0 reads all candidates.
+   *
+   * @param timestamps receives the timestamp of each candidate at its index, its length is the most
+   *        candidates to read
+   * @return the candidates after start in key order, or from the first candidate if start is null
+   */
+  List<Candidate> candidatesAfter(Candidate start, long minTimestamp, long[] timestamps) {
+    List<Candidate> candidates = new ArrayList<>();
+    try (Scanner scanner =
+        createScanner(sectionRange("C:", start == null ? null : itemKey(start), false, null))) {
+      if (minTimestamp > 0) {
+        scanner.addScanIterator(minTimestampFilter(minTimestamp));
+      }
+      for (Entry<Key,Value> entry : scanner) {
+        timestamps[candidates.size()] = entry.getKey().getTimestamp();
+        candidates.add(parseCandidate(entry.getKey()));
+        if (candidates.size() == timestamps.length) {
+          break;
+        }
+      }
+    }
+    return candidates;
+  }
+
+  private static IteratorSetting minTimestampFilter(long minTimestamp) {
+    IteratorSetting setting = new IteratorSetting(100, "mintime", TimestampFilter.class);
+    TimestampFilter.setStart(setting, minTimestamp, true);
+    return setting;
+  }
+
+  /**
+   * @return the keys of the group refs for the groups of the candidates after start and up to and
+   *         including end, in key order
+   */
+  Iterable<byte[]> groupRefKeys(Candidate start, Candidate end) {
+    Scanner scanner = createScanner(sectionRange("G:", start == null ? null : groupKey(start), true,
+        end == null ? null : groupKey(end)));
+    return Iterables.transform(scanner, entry -> sectionKey(entry.getKey()));
+  }
+
+  /**
+   * @return the item keys of the item refs for items after start and up to and including end, in
+   *         key order. An item appears once for each of its refs.
+   */
+  Iterable<byte[]> itemRefKeys(Candidate start, Candidate end) {
+    Scanner scanner = createScanner(sectionRange("X:", start == null ? null : itemKey(start), false,
+        end == null ? null : itemKey(end)));
+    return Iterables.transform(scanner, entry -> sectionKey(entry.getKey()));
+  }
+
+  private Candidate parseCandidate(Key k) {
+    ByteSequence row = k.getRowData();
+
+    Preconditions.checkState(row.length() == KeyEncoding.PREFIX_LENGTH + encoding.itemKeyLength(),
+        "Bad candidate row %s", k);
+
+    long clientId = encoding.readLong(row, encoding.clientOffset());
+    long groupId = encoding.readLong(row, encoding.groupOffset());
+    long itemId = encoding.readLong(row, encoding.itemOffset());
+
+    return new Candidate(clientId, groupId, itemId);
+  }
+
   private <T> Iterable<T> transformRange(String prefix, Function<Key,T> func) {
     return Iterables.transform(createScanner(prefix), entry -> func.apply(entry.getKey()));
   }
 
-  Iterable<Candidate> candidates() {
-    return transformRange("C:", k -> {
-      String row = k.getRowData().toString();
-      String[] fields = row.substring(11).split(":");
+  /**
+   * Receives the entries of a partition, see {@link #scanPartition(long, long, PartitionVisitor)}.
+   */
+  interface PartitionVisitor {
+    void item(long clientId, long groupId, long itemId, ItemState state);
 
-      Preconditions.checkState(fields.length == 3, "Bad candidate row %s", row);
+    void groupRef(long clientId, long groupId);
 
-      long clientId = Long.parseLong(fields[0], 16);
-      long groupId = Long.parseLong(fields[1], 16);
-      long itemId = Long.parseLong(fields[2], 16);
+    void candidate(long clientId, long groupId, long itemId);
 
-      return new Candidate(clientId, groupId, itemId);
-    });
+    void itemRef(int bucket, long clientId, long groupId, long itemId);
+  }
+
+  /**
+   * Reads the items, group refs, candidates and item refs whose group hash is in [lo, hi) using a
+   * batch scanner, in no particular order. These sections all start with the group key, so every
+   * item and all of its references fall in the same partition. Item refs are read from the index.
+   */
+  void scanPartition(long lo, long hi, PartitionVisitor visitor) {
+    List<Range> ranges = new ArrayList<>();
+    for (String prefix : new String[] {"I:", "G:", "C:", "X:"}) {
+      Text start = new Text(encoding.intRow(prefix, (int) lo));
+      Text end = hi > 0xffffffffL ? Range.followingPrefix(new Text(prefix))
+          : new Text(encoding.intRow(prefix, (int) hi));
+      ranges.add(new Range(start, true, end, false));
+    }
+
+    try (BatchScanner scanner = client.createBatchScanner(table)) {
+      scanner.setRanges(ranges);
+      for (Entry<Key,Value> entry : scanner) {
+        Key k = entry.getKey();
+        ByteSequence row = k.getRowData();
+        long clientId = encoding.readLong(row, encoding.clientOffset());
+        long groupId = encoding.readLong(row, encoding.groupOffset());
+        switch (row.byteAt(0)) {
+          case 'I':
+            visitor.item(clientId, groupId, encoding.readLong(k.getColumnQualifierData(), 0),
+                ItemState.valueOf(entry.getValue().toString()));
+            break;
+          case 'G':
+            visitor.groupRef(clientId, groupId);
+            break;
+          case 'C':
+            visitor.candidate(clientId, groupId, encoding.readLong(row, encoding.itemOffset()));
+            break;
+          case 'X':
+            visitor.itemRef(encoding.readInt(k.getColumnQualifierData(), 0), clientId, groupId,
+                encoding.readLong(row, encoding.itemOffset()));
+            break;
+          default:
+            throw new IllegalStateException("Unexpected row " + k);
+        }
+      }
+    } catch (TableNotFoundException | AccumuloSecurityException | AccumuloException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @return the number of entries in a section, counted in parallel across tablets
+   */
+  long count(String prefix) {
+    return count(prefix, 0);
+  }
+
+  /**
+   * @return the number of entries in a section written at or after minTimestamp, counted in
+   *         parallel across tablets
+   */
+  long count(String prefix, long minTimestamp) {
+    try (BatchScanner scanner = client.createBatchScanner(table)) {
+      scanner.setRanges(List.of(Range.prefix(prefix)));
+      if (minTimestamp > 0) {
+        scanner.addScanIterator(minTimestampFilter(minTimestamp));
+      }
+      long count = 0;
+      for (Iterator<Entry<Key,Value>> iter = scanner.iterator(); iter.hasNext(); iter.next()) {
+        count++;
+      }
+      return count;
+    } catch (TableNotFoundException | AccumuloSecurityException | AccumuloException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  Iterable<Candidate> candidates() {
+    return transformRange("C:", this::parseCandidate);
   }
 
   Iterable<ItemRef> itemRefs() {
-    return transformRange("R:", k -> {
-      String row = k.getRowData().toString();
-      String qual = k.getColumnQualifierData().toString();
+    return transformRange("R:", this::parseItemRef);
+  }
 
-      int bucket = Integer.parseInt(row.substring(2), 16);
+  private ItemRef parseItemRef(Key k) {
+    ByteSequence qual = k.getColumnQualifierData();
 
-      String[] fields = qual.split(":");
+    Preconditions.checkState(qual.length() == encoding.idsLength(), "Bad item ref %s", k);
 
-      Preconditions.checkState(fields.length == 3, "Bad item ref %s", k);
+    int bucket = encoding.readInt(k.getRowData(), KeyEncoding.PREFIX_LENGTH);
+    long clientId = encoding.readLong(qual, encoding.idOffset(0));
+    long groupId = encoding.readLong(qual, encoding.idOffset(1));
+    long itemId = encoding.readLong(qual, encoding.idOffset(2));
 
-      long clientId = Long.parseLong(fields[0], 16);
-      long groupId = Long.parseLong(fields[1], 16);
-      long itemId = Long.parseLong(fields[2], 16);
+    return new ItemRef(bucket, clientId, groupId, itemId);
+  }
 
-      return new ItemRef(bucket, clientId, groupId, itemId);
-    });
+  private ItemRef parseIndexEntry(Key k) {
+    ByteSequence row = k.getRowData();
+
+    Preconditions.checkState(row.length() == KeyEncoding.PREFIX_LENGTH + encoding.itemKeyLength(),
+        "Bad item ref index row %s", k);
+
+    return new ItemRef(encoding.readInt(k.getColumnQualifierData(), 0),
+        encoding.readLong(row, encoding.clientOffset()),
+        encoding.readLong(row, encoding.groupOffset()),
+        encoding.readLong(row, encoding.itemOffset()));
+  }
+
+  /**
+   * Looks up the given item refs, or their index entries when index is true, with a batch scanner.
+   *
+   * @return the refs that were found
+   */
+  private TreeSet<ItemRef> lookup(Collection<ItemRef> refs, boolean index) {
+    List<Range> ranges = new ArrayList<>(refs.size());
+    for (ItemRef ir : refs) {
+      if (index) {
+        ranges.add(Range.exact(new Text(encoding.itemRow("X:", ir.clientId, ir.groupId, ir.itemId)),
+            new Text(REF), new Text(encoding.bucket(ir.bucket))));
+      } else {
+        ranges.add(Range.exact(new Text(encoding.intRow("R:", ir.bucket)), new Text(REF),
+            new Text(refQualifier(ir))));
+      }
+    }
+
+    TreeSet<ItemRef> found = new TreeSet<>();
+    if (ranges.isEmpty()) {
+      return found;
+    }
+    try (BatchScanner scanner = client.createBatchScanner(table)) {
+      scanner.setRanges(ranges);
+      for (Entry<Key,Value> entry : scanner) {
+        found.add(index ? parseIndexEntry(entry.getKey()) : parseItemRef(entry.getKey()));
+      }
+    } catch (TableNotFoundException | AccumuloSecurityException | AccumuloException e) {
+      throw new RuntimeException(e);
+    }
+    return found;
+  }
+
+  /**
+   * Calls consumer with each item ref that has no entry in the item ref index, looking the refs up
+   * in batches of batchSize.
+   *
+   * @return the number of item refs checked
+   */
+  long findUnindexedRefs(int batchSize, Consumer<ItemRef> consumer) {
+    long checked = 0;
+    for (List<ItemRef> batch : Iterables.partition(itemRefs(), batchSize)) {
+      TreeSet<ItemRef> indexed = lookup(batch, true);
+      batch.stream().filter(ir -> !indexed.contains(ir)).forEach(consumer);
+      checked += batch.size();
+    }
+    return checked;
+  }
+
+  /**
+   * Makes the item ref index match the item refs. Every item ref is indexed again, and index
+   * entries whose ref is gone are deleted. Tables written before the index existed have no entries,
+   * and a client that dies between deleting a ref and its entry leaves one behind. Must not run
+   * while generators or the collector are running.
+   *
+   * @return the number of item refs indexed and of index entries deleted
+   */
+  long[] rebuildItemRefIndex(int batchSize) {
+    long indexed = 0;
+    for (ItemRef ir : itemRefs()) {
+      saveIndex(ir);
+      indexed++;
+    }
+    flushWriter();
+
+    long deleted = 0;
+    for (List<ItemRef> batch : Iterables.partition(transformRange("X:", this::parseIndexEntry),
+        batchSize)) {
+      TreeSet<ItemRef> refs = lookup(batch, false);
+      for (ItemRef ir : batch) {
+        if (!refs.contains(ir)) {
+          deleteIndex(ir);
+          deleted++;
+        }
+      }
+    }
+    flushWriter();
+
+    return new long[] {indexed, deleted};
+  }
+
+  /**
+   * Moves candidates whose row is not their item key, which are candidates written before
+   * candidates were keyed by group, to their item key. New rows are flushed before old rows are
+   * deleted. Must not run while generators or the collector are running.
+   *
+   * @return the number of candidates moved
+   */
+  long rekeyCandidates() {
+    long moved = 0;
+    for (Entry<Key,Value> entry : createScanner("C:")) {
+      Candidate c = parseCandidate(entry.getKey());
+      if (!isItemKey(entry.getKey(), c)) {
+        save(c);
+        moved++;
+      }
+    }
+    flushWriter();
+
+    for (Entry<Key,Value> entry : createScanner("C:")) {
+      Key k = entry.getKey();
+      if (!isItemKey(k, parseCandidate(k))) {
+        Mutation m = new Mutation(k.getRowData().toArray());
+        m.putDelete(EMPTY, EMPTY);
+        write(m);
+      }
+    }
+    flushWriter();
+
+    return moved;
+  }
+
+  private boolean isItemKey(Key k, Candidate c) {
+    return Arrays.equals(k.getRowData().toArray(),
+        encoding.itemRow("C:", c.clientId, c.groupId, c.itemId));
   }
 
   Iterable<GroupRef> groupRefs() {
     return transformRange("G:", k -> {
-      String row = k.getRowData().toString();
-      String[] fields = row.substring(11).split(":");
+      ByteSequence row = k.getRowData();
 
-      Preconditions.checkState(fields.length == 2, "Bad group ref row %s", row);
+      Preconditions.checkState(
+          row.length() == KeyEncoding.PREFIX_LENGTH + encoding.groupKeyLength(),
+          "Bad group ref row %s", k);
 
-      long clientId = Long.parseLong(fields[0], 16);
-      long groupId = Long.parseLong(fields[1], 16);
+      long clientId = encoding.readLong(row, encoding.clientOffset());
+      long groupId = encoding.readLong(row, encoding.groupOffset());
 
       return new GroupRef(clientId, groupId);
     });
   }
 
+  /**
+   * Reads the items in the given states. The states are filtered on the tablet servers by
+   * {@link ItemStateFilter} and only keys are returned.
+   */
   Iterable<Item> items(ItemState... states) {
-    EnumSet<ItemState> stateSet = EnumSet.of(states[0]);
-    for (int i = 1; i < states.length; i++) {
-      stateSet.add(states[i]);
-    }
+    Preconditions.checkArgument(states.length > 0, "No item states given");
 
-    Iterable<Entry<Key,Value>> itemIter = Iterables.filter(createScanner("I:"),
-        entry -> stateSet.contains(ItemState.valueOf(entry.getValue().toString())));
+    Scanner scanner = createScanner("I:");
+    IteratorSetting setting = new IteratorSetting(100, "itemstate", ItemStateFilter.class);
+    ItemStateFilter.configure(setting, true, states);
+    scanner.addScanIterator(setting);
 
-    return Iterables.transform(itemIter, entry -> {
+    return Iterables.transform(scanner, entry -> {
       Key k = entry.getKey();
-      String row = k.getRowData().toString();
-      String qual = k.getColumnQualifierData().toString();
-
-      String[] fields = row.substring(11).split(":");
+      ByteSequence row = k.getRowData();
 
-      Preconditions.checkState(fields.length == 2, "Bad group ref row %s", row);
+      Preconditions.checkState(
+          row.length() == KeyEncoding.PREFIX_LENGTH + encoding.groupKeyLength(), "Bad item row %s",
+          k);
 
-      long clientId = Long.parseLong(fields[0], 16);
-      long groupId = Long.parseLong(fields[1], 16);
-      long itemId = Long.parseLong(qual, 16);
+      long clientId = encoding.readLong(row, encoding.clientOffset());
+      long groupId = encoding.readLong(row, encoding.groupOffset());
+      long itemId = encoding.readLong(k.getColumnQualifierData(), 0);
 
       return new Item(clientId, groupId, itemId);
     });
   }
 
-  private static TreeSet<Text> initialSplits(GcsEnv env) {
+  private static TreeSet<Text> initialSplits(GcsEnv env, KeyEncoding encoding) {
     TreeSet<Text> splits = new TreeSet<>();
 
     int tabletsPerSection = env.getInitialTablets();
 
-    for (String prefix : new String[] {"G:", "C:", "I:", "R:"}) {
-      int numSplits = tabletsPerSection - 1;
-
-      long max;
+    for (String prefix : new String[] {"G:", "C:", "I:", "R:", "X:"}) {
       if (prefix.equals("R:")) {
-        max = env.getMaxBuckets();
+        // split item refs so each tablet is expected to get the same share of writes
+        for (int bucket : BucketDistribution.create(env).splits(tabletsPerSection)) {
+          splits.add(new Text(encoding.splitRow(prefix, bucket)));
+        }
       } else {
-        max = 1L << 33 - 1;
-      }
-
-      long distance = (max / tabletsPerSection) + 1;
-      long split = distance;
+        long distance = ((1L << 32) / tabletsPerSection) + 1;
+        long split = distance;
 
-      for (int i = 0; i < numSplits; i++) {
-        String s = String.format("%08x", split);
-        while (s.charAt(s.length() - 1) == '0') {
-          s = s.substring(0, s.length() - 1);
+        for (int i = 0; i < tabletsPerSection - 1; i++) {
+          splits.add(new Text(encoding.splitRow(prefix, (int) split)));
+          split += distance;
         }
-        splits.add(new Text(prefix + s));
-        split += distance;
       }
 
-      splits.add(new Text(prefix + "~"));
+      // binary keys can contain any byte, so end the section with the row that follows all of it
+      splits.add(Range.followingPrefix(new Text(prefix)));
     }
 
     return splits;
   }
 
   public static void init(GcsEnv env) throws Exception {
+    KeyEncoding encoding = env.getKeyEncoding();
     NewTableConfiguration ntc = new NewTableConfiguration();
-    ntc.withSplits(initialSplits(env));
-    ntc.setProperties(ImmutableMap.of("table.compaction.major.ratio", "1"));
+    ntc.withSplits(initialSplits(env, encoding));
+    ntc.setProperties(ImmutableMap.of("table.compaction.major.ratio", "1",
+        KeyEncoding.TABLE_PROPERTY, encoding.name()));
     env.getAccumuloClient().tableOperations().create(env.getTableName(), ntc);
   }
 
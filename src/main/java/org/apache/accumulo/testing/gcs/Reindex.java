@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+/**
+ * Brings the item ref index and candidate rows of a table in line with the current layout. Tables
+ * written before the index existed get an entry for every item ref, their candidates are moved to
+ * rows keyed by group, and index entries left behind by generators that died are removed. Stop the
+ * generators and collector before running this.
+ */
+public class Reindex {
+  public static void main(String[] args) throws Exception {
+    GcsEnv env = new GcsEnv(args);
+    Persistence persistence = new Persistence(env);
+
+    long moved = persistence.rekeyCandidates();
+    long[] counts = persistence.rebuildItemRefIndex(env.getBatchSize());
+
+    System.out.printf(
+        "Moved %,d candidates, indexed %,d item refs, deleted %,d stale index entries\n", moved,
+        counts[0], counts[1]);
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Counts the item ref writes made to each bucket and reports them per tablet of the item ref
+ * section, using the table's current splits. This shows how evenly the tablets share the writes
+ * when buckets are chosen with a skewed {@link BucketDistribution}.
+ */
+class TabletWriteRates {
+
+  private final AccumuloClient client;
+  private final String table;
+  private final KeyEncoding encoding;
+  private final AtomicLongArray writes;
+  private final long[] reported;
+
+  TabletWriteRates(GcsEnv env) {
+    this.client = env.getAccumuloClient();
+    this.table = env.getTableName();
+    this.encoding = Persistence.readEncoding(client, table);
+    this.writes = new AtomicLongArray(env.getMaxBuckets());
+    this.reported = new long[env.getMaxBuckets()];
+  }
+
+  void record(int bucket) {
+    writes.incrementAndGet(bucket);
+  }
+
+  /**
+   * Prints the write rates of the item ref tablets since the last report.
+   */
+  void report(double seconds) {
+    List<byte[]> splits;
+    try {
+      splits = client.tableOperations().listSplits(table).stream().map(Text::copyBytes)
+          .filter(split -> split.length > 2 && split[0] == 'R' && split[1] == ':')
+          .sorted(Arrays::compareUnsigned).collect(Collectors.toList());
+    } catch (TableNotFoundException | AccumuloSecurityException | AccumuloException e) {
+      System.err.println("Unable to read splits for write rates : " + e);
+      return;
+    }
+
+    int tablets = splits.size() + 1;
+    long[] tabletWrites = new long[tablets];
+    int[] firstBucket = new int[tablets];
+    int[] lastBucket = new int[tablets];
+    Arrays.fill(firstBucket, -1);
+
+    // bucket rows sort in bucket order, so walk the buckets and splits together
+    int tablet = 0;
+    for (int bucket = 0; bucket < reported.length; bucket++) {
+      long current = writes.get(bucket);
+      long delta = current - reported[bucket];
+      reported[bucket] = current;
+
+      byte[] row = encoding.intRow("R:", bucket);
+      while (tablet < splits.size() && Arrays.compareUnsigned(splits.get(tablet), row) < 0) {
+        tablet++;
+      }
+      tabletWrites[tablet] += delta;
+      if (firstBucket[tablet] < 0) {
+        firstBucket[tablet] = bucket;
+      }
+      lastBucket[tablet] = bucket;
+    }
+
+    List<Integer> used = new ArrayList<>();
+    long total = 0;
+    for (int t = 0; t < tablets; t++) {
+      if (firstBucket[t] >= 0) {
+        used.add(t);
+        total += tabletWrites[t];
+      }
+    }
+    if (total == 0) {
+      return;
+    }
+
+    used.sort(Comparator.comparingLong((Integer t) -> tabletWrites[t]).reversed());
+    double mean = total / seconds / used.size();
+    double max = tabletWrites[used.get(0)] / seconds;
+    String busiest = IntStream.range(0, Math.min(3, used.size())).mapToObj(used::get)
+        .map(t -> String.format("buckets %d-%d : %,.2f", firstBucket[t], lastBucket[t],
+            tabletWrites[t] / seconds))
+        .collect(Collectors.joining(", "));
+
+    System.out.printf(
+        "Item ref tablets : %d writes/sec mean : %,.2f max : %,.2f max/mean : %.2f busiest : %s\n",
+        used.size(), mean, max, max / mean, busiest);
+  }
+}
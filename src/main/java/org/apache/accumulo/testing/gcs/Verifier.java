@@ -18,70 +18,149 @@
  */
 package org.apache.accumulo.testing.gcs;
 
-import static org.apache.accumulo.testing.gcs.Collector.forEachBatch;
-
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeSet;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks the test invariants. The group hash at the start of the item, group ref, candidate and
+ * item ref index keys is split into partitions. Each partition is read with a batch scanner and
+ * joined in memory on primitive item ids, and partitions are verified in parallel. The item refs
+ * are then looked up in the index, so the partitions' checks also cover every item ref.
+ */
 public class Verifier {
 
   Persistence persistence;
+  private final int partitions;
+  private final int threads;
   private final int batchSize;
 
   public Verifier(GcsEnv gcsEnv) {
     this.persistence = new Persistence(gcsEnv);
+    this.partitions = gcsEnv.getVerifyPartitions();
+    this.threads = gcsEnv.getVerifyThreads();
     this.batchSize = gcsEnv.getBatchSize();
   }
 
-  public static void main(String[] args) {
+  public static void main(String[] args) throws Exception {
     new Verifier(new GcsEnv(args)).run();
   }
 
-  private void run() {
-    forEachBatch(persistence.items(ItemState.REFERENCED), batchSize, batch -> checkItems(batch));
-    forEachBatch(persistence.itemRefs(), batchSize, batch -> checkItemRefs(batch));
-  }
-
-  // Ensure there is an item for each item ref
-  private void checkItemRefs(TreeSet<ItemRef> itemRefs) {
-    Map<Item,List<ItemRef>> refMap = new HashMap<>();
-
-    itemRefs.forEach(ir -> {
-      refMap.computeIfAbsent(ir.item(), i -> new ArrayList<>()).add(ir);
-    });
+  private void run() throws Exception {
+    long[] totals = new long[3];
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<long[]>> futures = new ArrayList<>();
+      for (int i = 0; i < partitions; i++) {
+        long lo = (1L << 32) * i / partitions;
+        long hi = (1L << 32) * (i + 1) / partitions;
+        futures.add(executor.submit(() -> verifyPartition(lo, hi)));
+      }
+      for (Future<long[]> future : futures) {
+        long[] counts = future.get();
+        for (int i = 0; i < totals.length; i++) {
+          totals[i] += counts[i];
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
 
-    persistence.items(ItemState.NEW, ItemState.REFERENCED).forEach(item -> refMap.remove(item));
+    // the partitions read item refs from their index, so every item ref must have an index entry
+    List<ItemRef> unindexed = new ArrayList<>();
+    long itemRefs = persistence.findUnindexedRefs(batchSize, unindexed::add);
+    if (!unindexed.isEmpty()) {
+      System.err.println("Item refs missing from the item ref index : ");
+      unindexed.forEach(ir -> System.err.println("\t" + ir));
+    }
+    totals[2] += unindexed.size();
 
-    if (refMap.size() > 0) {
-      System.err.println("References without items : ");
-      refMap.values().stream().flatMap(List::stream).forEach(ir -> System.err.println("\t" + ir));
+    // entries left by generators that died after deleting a ref only delay collection of the item
+    long staleEntries = persistence.count("X:") - (itemRefs - unindexed.size());
+    if (staleEntries > 0) {
+      System.out.printf("%,d item ref index entries have no item ref, reindex removes them\n",
+          staleEntries);
     }
 
-    System.out.printf("Checked %,d item refs\n", itemRefs.size());
+    System.out.printf("Checked %,d items\n", totals[0]);
+    System.out.printf("Checked %,d items with item refs\n", totals[1]);
+    System.out.printf("Checked %,d item refs\n", itemRefs);
+    if (totals[2] > 0) {
+      System.err.printf("Found %,d problems\n", totals[2]);
+    }
   }
 
-  // Ensure all items are referenced by something.
-  private void checkItems(TreeSet<Item> items) {
-
-    int initialSize = items.size();
-
-    persistence.itemRefs().forEach(ir -> items.remove(ir.item()));
+  /**
+   * Ensures all referenced items in the partition are referenced by something and that there is an
+   * item for each item ref.
+   *
+   * @return the number of referenced items, item refs and problems found
+   */
+  private long[] verifyPartition(long lo, long hi) {
+    ItemIdSet referencedItems = new ItemIdSet();
+    ItemIdSet allItems = new ItemIdSet();
+    ItemIdSet groupRefs = new ItemIdSet();
+    ItemIdSet candidates = new ItemIdSet();
+    ItemIdSet itemRefs = new ItemIdSet();
+
+    persistence.scanPartition(lo, hi, new Persistence.PartitionVisitor() {
+      @Override
+      public void item(long clientId, long groupId, long itemId, ItemState state) {
+        allItems.add(clientId, groupId, itemId);
+        if (state == ItemState.REFERENCED) {
+          referencedItems.add(clientId, groupId, itemId);
+        }
+      }
+
+      @Override
+      public void groupRef(long clientId, long groupId) {
+        groupRefs.add(clientId, groupId, 0);
+      }
+
+      @Override
+      public void candidate(long clientId, long groupId, long itemId) {
+        candidates.add(clientId, groupId, itemId);
+      }
+
+      @Override
+      public void itemRef(int bucket, long clientId, long groupId, long itemId) {
+        itemRefs.add(clientId, groupId, itemId, bucket);
+      }
+    });
 
-    persistence.candidates().forEach(c -> items.remove(new Item(c)));
+    List<String> unreferenced = new ArrayList<>();
+    referencedItems.forEach((clientId, groupId, itemId, value) -> {
+      if (!itemRefs.contains(clientId, groupId, itemId)
+          && !candidates.contains(clientId, groupId, itemId)
+          && !groupRefs.contains(clientId, groupId, 0)) {
+        unreferenced.add(new Item(clientId, groupId, itemId).toString());
+      }
+    });
 
-    persistence.groupRefs()
-        .forEach(gr -> items
-            .subSet(new Item(gr.clientId, gr.groupId, 0), new Item(gr.clientId, gr.groupId + 1, 0))
-            .clear());
+    List<String> missingItems = new ArrayList<>();
+    itemRefs.forEach((clientId, groupId, itemId, bucket) -> {
+      if (!allItems.contains(clientId, groupId, itemId)) {
+        missingItems.add(new ItemRef(bucket, clientId, groupId, itemId).toString());
+      }
+    });
 
-    if (items.size() > 0) {
-      System.err.println("Unreferenced items : ");
-      items.forEach(i -> System.err.println("\t" + i));
+    if (!unreferenced.isEmpty() || !missingItems.isEmpty()) {
+      synchronized (System.err) {
+        if (!unreferenced.isEmpty()) {
+          System.err.println("Unreferenced items : ");
+          unreferenced.forEach(i -> System.err.println("\t" + i));
+        }
+        if (!missingItems.isEmpty()) {
+          System.err.println("References without items : ");
+          missingItems.forEach(ir -> System.err.println("\t" + ir));
+        }
+      }
     }
 
-    System.out.printf("Checked %,d items\n", initialSize);
+    return new long[] {referencedItems.size(), itemRefs.size(),
+        unreferenced.size() + missingItems.size()};
   }
 }
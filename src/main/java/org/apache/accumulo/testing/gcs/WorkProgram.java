@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A work chain encoded as a program of ints, so the generator can hold many active chains without
+ * keeping a closure and lists of objects for every step. The items of a chain are the consecutive
+ * item ids after the chain's first item id, and at most {@link #MAX_ITEMS} of them, so a set of
+ * items is an int bit mask of item indexes. Each step is an opcode followed by its operands and
+ * ends with a flush.
+ */
+class WorkProgram {
+
+  static final int MAX_ITEMS = 31;
+
+  // save the items in mask as NEW
+  static final int SAVE_NEW = 0;
+  // save the items in mask as REFERENCED
+  static final int SAVE_REFERENCED = 1;
+  // save refs from bucket to the items in mask
+  static final int SAVE_REFS = 2;
+  // save candidates for the items in mask
+  static final int SAVE_CANDIDATES = 3;
+  // delete refs from bucket to the items in mask
+  static final int DELETE_REFS = 4;
+  // in bucket, delete refs to the items in mask and add a ref to item index
+  static final int REPLACE = 5;
+  // save a ref from bucket to item index
+  static final int SAVE_REF = 6;
+  // save a candidate for item index and delete its ref from bucket
+  static final int RELEASE_REF = 7;
+  static final int SAVE_GROUP_REF = 8;
+  static final int DELETE_GROUP_REF = 9;
+
+  private static int operands(int opcode) {
+    switch (opcode) {
+      case SAVE_NEW:
+      case SAVE_REFERENCED:
+      case SAVE_CANDIDATES:
+        return 1;
+      case SAVE_REFS:
+      case DELETE_REFS:
+      case SAVE_REF:
+      case RELEASE_REF:
+        return 2;
+      case REPLACE:
+        return 3;
+      case SAVE_GROUP_REF:
+      case DELETE_GROUP_REF:
+        return 0;
+      default:
+        throw new IllegalArgumentException("Unknown opcode " + opcode);
+    }
+  }
+
+  /**
+   * @return the mask of a set of item indexes
+   */
+  static int mask(Iterable<Integer> itemIndexes) {
+    int mask = 0;
+    for (int index : itemIndexes) {
+      Preconditions.checkArgument(index >= 0 && index < MAX_ITEMS, "Bad item index %s", index);
+      mask |= 1 << index;
+    }
+    return mask;
+  }
+
+  /**
+   * Calls action with each item index in mask, in increasing order.
+   */
+  static void forEachItem(int mask, IntConsumer action) {
+    for (int i = 0; mask >>> i != 0; i++) {
+      if ((mask & (1 << i)) != 0) {
+        action.accept(i);
+      }
+    }
+  }
+
+  /**
+   * @return the pc of the step after the step at pc
+   */
+  static int next(int[] program, int pc) {
+    return pc + 1 + operands(program[pc]);
+  }
+
+  /**
+   * Appends steps to a program.
+   */
+  static class Builder {
+    private int[] program = new int[16];
+    private int length = 0;
+    private int steps = 0;
+
+    Builder add(int opcode, int... operands) {
+      if (operands.length != operands(opcode)) {
+        throw new IllegalArgumentException("Wrong operand count for opcode " + opcode);
+      }
+      if (length + 1 + operands.length > program.length) {
+        program =
+            Arrays.copyOf(program, Math.max(program.length * 2, length + 1 + operands.length));
+      }
+      program[length++] = opcode;
+      for (int operand : operands) {
+        program[length++] = operand;
+      }
+      steps++;
+      return this;
+    }
+
+    int steps() {
+      return steps;
+    }
+
+    int[] build() {
+      return Arrays.copyOf(program, length);
+    }
+  }
+
+  /**
+   * Runs the step at pc.
+   *
+   * @return the pc of the next step
+   */
+  static int run(int[] program, int pc, long clientId, long groupId, long firstItemId,
+      Persistence p) {
+    int opcode = program[pc];
+    switch (opcode) {
+      case SAVE_NEW:
+      case SAVE_REFERENCED: {
+        ItemState state = opcode == SAVE_NEW ? ItemState.NEW : ItemState.REFERENCED;
+        forEachItem(program[pc + 1],
+            i -> p.save(new Item(clientId, groupId, firstItemId + i), state));
+        break;
+      }
+      case SAVE_REFS:
+        p.save(refs(program[pc + 1], program[pc + 2], clientId, groupId, firstItemId));
+        break;
+      case SAVE_CANDIDATES:
+        forEachItem(program[pc + 1],
+            i -> p.save(new Candidate(clientId, groupId, firstItemId + i)));
+        break;
+      case DELETE_REFS:
+        p.delete(refs(program[pc + 1], program[pc + 2], clientId, groupId, firstItemId));
+        break;
+      case REPLACE: {
+        int bucket = program[pc + 3];
+        p.replace(refs(program[pc + 1], bucket, clientId, groupId, firstItemId),
+            new ItemRef(bucket, clientId, groupId, firstItemId + program[pc + 2]));
+        break;
+      }
+      case SAVE_REF:
+        p.save(new ItemRef(program[pc + 2], clientId, groupId, firstItemId + program[pc + 1]));
+        break;
+      case RELEASE_REF: {
+        long itemId = firstItemId + program[pc + 1];
+        p.save(new Candidate(clientId, groupId, itemId));
+        p.delete(new ItemRef(program[pc + 2], clientId, groupId, itemId));
+        break;
+      }
+      case SAVE_GROUP_REF:
+        p.save(new GroupRef(clientId, groupId));
+        break;
+      case DELETE_GROUP_REF:
+        p.delete(new GroupRef(clientId, groupId));
+        break;
+      default:
+        throw new IllegalStateException("Unknown opcode " + opcode + " at " + pc);
+    }
+    p.flush();
+    return next(program, pc);
+  }
+
+  private static List<ItemRef> refs(int mask, int bucket, long clientId, long groupId,
+      long firstItemId) {
+    List<ItemRef> refs = new ArrayList<>(Integer.bitCount(mask));
+    forEachItem(mask, i -> refs.add(new ItemRef(bucket, clientId, groupId, firstItemId + i)));
+    return refs;
+  }
+}
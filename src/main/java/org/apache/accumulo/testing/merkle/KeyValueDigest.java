@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.merkle;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Computes a digest over key-values without serializing them first. Each entry is hashed in the
+ * layout written by {@link Key#write} followed by {@link Value#write}: the row, column family,
+ * column qualifier and visibility end offsets as vints, those four byte arrays, the timestamp as a
+ * vlong, the delete flag as one byte, the value length as a four byte int and the value. Only the
+ * few header bytes are copied, the rest is fed to the digest straight from the key and value.
+ * <p>
+ * Any {@link MessageDigest} algorithm may be used. For replication checks, where collision
+ * resistance against an adversary is not needed, the much faster {@value #MURMUR3_128} and
+ * {@value #FARMHASH_64} are also available.
+ * <p>
+ * Prefixing any algorithm with {@value #SUM_PREFIX} hashes each entry on its own and adds the entry
+ * hashes together as unsigned integers, wrapping on overflow. The result does not depend on the
+ * order of the entries, so digests of disjoint sets of entries can be combined with
+ * {@link #merge(byte[], byte[])}. A range can then be hashed in pieces, for example one per tablet,
+ * and the hashes of adjacent ranges added up to compare tables whose split points differ.
+ */
+public abstract class KeyValueDigest {
+  public static final String MURMUR3_128 = "murmur3_128";
+  public static final String FARMHASH_64 = "farmhash_64";
+  public static final String SUM_PREFIX = "sum_";
+
+  private final DataOutputBuffer header = new DataOutputBuffer(32);
+
+  public static KeyValueDigest getInstance(String algorithm) throws NoSuchAlgorithmException {
+    if (algorithm.toLowerCase().startsWith(SUM_PREFIX)) {
+      return new SumDigest(getInstance(algorithm.substring(SUM_PREFIX.length())));
+    }
+    switch (algorithm.toLowerCase()) {
+      case MURMUR3_128:
+        return new HashFunctionDigest(MURMUR3_128, Hashing.murmur3_128());
+      case FARMHASH_64:
+        return new HashFunctionDigest(FARMHASH_64, Hashing.farmHashFingerprint64());
+      default:
+        return new MessageDigestAdapter(MessageDigest.getInstance(algorithm));
+    }
+  }
+
+  public abstract String getAlgorithm();
+
+  public abstract void update(byte[] bytes, int offset, int length);
+
+  public void update(byte[] bytes) {
+    update(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Completes the digest and resets for the next one.
+   */
+  public abstract byte[] digest();
+
+  public abstract void reset();
+
+  /**
+   * @return true if digests of disjoint sets of entries can be combined, in any order, with
+   *         {@link #merge(byte[], byte[])}
+   */
+  public boolean isMergeable() {
+    return false;
+  }
+
+  /**
+   * @return the digest of the entries of both digests
+   */
+  public byte[] merge(byte[] digest1, byte[] digest2) {
+    throw new UnsupportedOperationException(getAlgorithm() + " digests can not be merged");
+  }
+
+  public void update(Key key, Value value) {
+    ByteSequence row = key.getRowData(), cf = key.getColumnFamilyData(),
+        cq = key.getColumnQualifierData(), cv = key.getColumnVisibilityData();
+
+    header.reset();
+    try {
+      WritableUtils.writeVInt(header, row.length());
+      WritableUtils.writeVInt(header, row.length() + cf.length());
+      WritableUtils.writeVInt(header, row.length() + cf.length() + cq.length());
+      WritableUtils.writeVInt(header, row.length() + cf.length() + cq.length() + cv.length());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    update(header.getData(), 0, header.getLength());
+
+    update(row);
+    update(cf);
+    update(cq);
+    update(cv);
+
+    header.reset();
+    try {
+      WritableUtils.writeVLong(header, key.getTimestamp());
+      header.writeBoolean(key.isDeleted());
+      header.writeInt(value.getSize());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    update(header.getData(), 0, header.getLength());
+
+    update(value.get(), 0, value.getSize());
+  }
+
+  private void update(ByteSequence bytes) {
+    if (bytes.isBackedByArray()) {
+      update(bytes.getBackingArray(), bytes.offset(), bytes.length());
+    } else {
+      update(bytes.toArray());
+    }
+  }
+
+  private static class MessageDigestAdapter extends KeyValueDigest {
+    private final MessageDigest digest;
+
+    MessageDigestAdapter(MessageDigest digest) {
+      this.digest = digest;
+    }
+
+    @Override
+    public String getAlgorithm() {
+      return digest.getAlgorithm();
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+      digest.update(bytes, offset, length);
+    }
+
+    @Override
+    public byte[] digest() {
+      return digest.digest();
+    }
+
+    @Override
+    public void reset() {
+      digest.reset();
+    }
+  }
+
+  private static class SumDigest extends KeyValueDigest {
+    private final KeyValueDigest entryDigest;
+    private final byte[] sum;
+    private boolean pending = false;
+
+    SumDigest(KeyValueDigest entryDigest) {
+      this.entryDigest = entryDigest;
+      this.sum = new byte[entryDigest.digest().length];
+    }
+
+    @Override
+    public String getAlgorithm() {
+      return SUM_PREFIX + entryDigest.getAlgorithm();
+    }
+
+    /**
+     * Bytes passed here make up one element of the sum, which is completed by the next key-value or
+     * {@link #digest()}. This is how Merkle tree nodes are hashed from their children.
+     */
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+      entryDigest.update(bytes, offset, length);
+      pending = true;
+    }
+
+    @Override
+    public void update(Key key, Value value) {
+      completePending();
+      entryDigest.update(key, value);
+      add(sum, entryDigest.digest());
+    }
+
+    private void completePending() {
+      if (pending) {
+        add(sum, entryDigest.digest());
+        pending = false;
+      }
+    }
+
+    @Override
+    public byte[] digest() {
+      completePending();
+      byte[] result = sum.clone();
+      reset();
+      return result;
+    }
+
+    @Override
+    public void reset() {
+      Arrays.fill(sum, (byte) 0);
+      entryDigest.reset();
+      pending = false;
+    }
+
+    @Override
+    public boolean isMergeable() {
+      return true;
+    }
+
+    @Override
+    public byte[] merge(byte[] digest1, byte[] digest2) {
+      byte[] result = digest1.clone();
+      add(result, digest2);
+      return result;
+    }
+
+    // big endian addition, dropping the final carry
+    private static void add(byte[] total, byte[] value) {
+      int carry = 0;
+      for (int i = total.length - 1; i >= 0; i--) {
+        int s = (total[i] & 0xff) + (value[i] & 0xff) + carry;
+        total[i] = (byte) s;
+        carry = s >>> 8;
+      }
+    }
+  }
+
+  private static class HashFunctionDigest extends KeyValueDigest {
+    private final String algorithm;
+    private final HashFunction function;
+    private Hasher hasher;
+
+    HashFunctionDigest(String algorithm, HashFunction function) {
+      this.algorithm = algorithm;
+      this.function = function;
+      this.hasher = function.newHasher();
+    }
+
+    @Override
+    public String getAlgorithm() {
+      return algorithm;
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+      hasher.putBytes(bytes, offset, length);
+    }
+
+    @Override
+    public byte[] digest() {
+      byte[] result = hasher.hash().asBytes();
+      reset();
+      return result;
+    }
+
+    @Override
+    public void reset() {
+      // a Hasher can only be used for one hash
+      hasher = function.newHasher();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.merkle;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Builds a {@link MerkleTree} bottom-up from leaves supplied in sorted order. Adjacent nodes at the
+ * same level are merged as soon as they are both present, so only one node per level is held at a
+ * time and each leaf is touched a constant number of times. The resulting root is identical to the
+ * one computed by repeatedly pairing the leftmost adjacent nodes of equal level.
+ */
+public class MerkleTreeBuilder {
+  private final KeyValueDigest digest;
+  private final boolean keepChildNodes;
+  private final Deque<MerkleTreeNode> stack = new ArrayDeque<>();
+
+  public MerkleTreeBuilder(String digestAlgorithm) throws NoSuchAlgorithmException {
+    this(digestAlgorithm, false);
+  }
+
+  /**
+   * @param keepChildNodes retain the whole tree so it can be walked with
+   *        {@link MerkleTreeNode#getChildNodes()}, instead of only one pending node per level
+   */
+  public MerkleTreeBuilder(String digestAlgorithm, boolean keepChildNodes)
+      throws NoSuchAlgorithmException {
+    this.digest = KeyValueDigest.getInstance(digestAlgorithm);
+    this.keepChildNodes = keepChildNodes;
+  }
+
+  /**
+   * Adds the next node, which must cover the range directly after the previously added node.
+   */
+  public void add(MerkleTreeNode node) {
+    stack.push(node);
+    while (stack.size() > 1) {
+      MerkleTreeNode right = stack.pop();
+      if (right.getLevel() != stack.peek().getLevel()) {
+        stack.push(right);
+        break;
+      }
+      stack.push(new MerkleTreeNode(stack.pop(), right, digest, keepChildNodes));
+    }
+  }
+
+  /**
+   * Rolls up the remaining nodes, right to left, into the root.
+   */
+  public MerkleTreeNode getRootNode() {
+    if (stack.isEmpty()) {
+      throw new IllegalStateException("Must have at least one node");
+    }
+    while (stack.size() > 1) {
+      MerkleTreeNode right = stack.pop();
+      stack.push(new MerkleTreeNode(stack.pop(), right, digest, keepChildNodes));
+    }
+    return stack.peek();
+  }
+}
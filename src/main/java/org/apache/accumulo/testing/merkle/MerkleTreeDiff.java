@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.merkle;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Walks two Merkle trees built over the same leaf ranges from the root, only descending into
+ * subtrees whose hashes differ. The cost is proportional to the number of differing leaves rather
+ * than the size of the trees.
+ */
+public class MerkleTreeDiff {
+
+  /**
+   * @param left root of a tree built with child nodes retained
+   * @param right root of a tree built with child nodes retained
+   * @return the differing leaves of the left tree in sorted order. When two subtrees being compared
+   *         do not have the same child ranges, the root of the left subtree is returned instead.
+   */
+  public static List<MerkleTreeNode> differingNodes(MerkleTreeNode left, MerkleTreeNode right) {
+    List<MerkleTreeNode> differing = new ArrayList<>();
+    Deque<MerkleTreeNode[]> pending = new ArrayDeque<>();
+    pending.push(new MerkleTreeNode[] {left, right});
+
+    while (!pending.isEmpty()) {
+      MerkleTreeNode[] pair = pending.pop();
+      MerkleTreeNode l = pair[0], r = pair[1];
+      if (l.getRange().equals(r.getRange()) && Arrays.equals(l.getHash(), r.getHash())) {
+        continue;
+      }
+
+      List<MerkleTreeNode> lChildren = l.getChildNodes(), rChildren = r.getChildNodes();
+      if (lChildren.isEmpty() || lChildren.size() != rChildren.size()
+          || !l.getChildren().equals(r.getChildren())) {
+        differing.add(l);
+        continue;
+      }
+
+      // push in reverse so the left most subtree is visited first
+      for (int i = lChildren.size() - 1; i >= 0; i--) {
+        pending.push(new MerkleTreeNode[] {lChildren.get(i), rChildren.get(i)});
+      }
+    }
+
+    return differing;
+  }
+
+  /**
+   * Merges adjacent leaves of two trees until both have leaves with the same ranges, ending at the
+   * end rows the two trees have in common. This lets trees built over different split points be
+   * compared, which requires a {@link KeyValueDigest#isMergeable() mergeable} digest.
+   *
+   * @param left sorted, contiguous leaves of one tree
+   * @param right sorted, contiguous leaves of the other tree, covering the same rows
+   * @param alignedLeft receives the merged leaves of the left tree
+   * @param alignedRight receives the merged leaves of the right tree
+   */
+  public static void alignLeaves(List<MerkleTreeNode> left, List<MerkleTreeNode> right,
+      KeyValueDigest digest, List<MerkleTreeNode> alignedLeft, List<MerkleTreeNode> alignedRight) {
+    if (!digest.isMergeable()) {
+      throw new IllegalArgumentException(
+          "Leaves hashed with " + digest.getAlgorithm() + " can not be merged");
+    }
+
+    int i = 0, j = 0;
+    while (i < left.size() && j < right.size()) {
+      Text startRow = RangeSerialization.getRow(left.get(i).getRange());
+      byte[] leftHash = left.get(i).getHash(), rightHash = right.get(j).getHash();
+      Text leftEnd = RangeSerialization.getColumnQualifier(left.get(i++).getRange());
+      Text rightEnd = RangeSerialization.getColumnQualifier(right.get(j++).getRange());
+
+      int cmp;
+      while ((cmp = compareEndRows(leftEnd, rightEnd)) != 0) {
+        if (cmp < 0) {
+          leftHash = digest.merge(leftHash, left.get(i).getHash());
+          leftEnd = RangeSerialization.getColumnQualifier(left.get(i++).getRange());
+        } else {
+          rightHash = digest.merge(rightHash, right.get(j).getHash());
+          rightEnd = RangeSerialization.getColumnQualifier(right.get(j++).getRange());
+        }
+      }
+
+      Range range = RangeSerialization.toRange(new Key(startRow, new Text(), leftEnd));
+      alignedLeft.add(new MerkleTreeNode(range, 0, Collections.emptyList(), leftHash));
+      alignedRight.add(new MerkleTreeNode(range, 0, Collections.emptyList(), rightHash));
+    }
+  }
+
+  // an empty end row is the end of the table
+  private static int compareEndRows(Text end1, Text end2) {
+    if (end1.getLength() == 0 || end2.getLength() == 0) {
+      return Boolean.compare(end1.getLength() == 0, end2.getLength() == 0);
+    }
+    return end1.compareTo(end2);
+  }
+}
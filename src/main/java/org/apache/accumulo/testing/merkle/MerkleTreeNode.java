@@ -18,7 +18,6 @@
  */
 package org.apache.accumulo.testing.merkle;
 
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -43,6 +42,7 @@ public class MerkleTreeNode {
   private int level;
   private List<Range> children;
   private byte[] hash;
+  private List<MerkleTreeNode> childNodes = Collections.emptyList();
 
   public MerkleTreeNode(Range range, int level, List<Range> children, byte[] hash) {
     this.range = range;
@@ -62,7 +62,7 @@ public class MerkleTreeNode {
       throws NoSuchAlgorithmException {
     level = 0;
     this.children = new ArrayList<>(children.size());
-    MessageDigest digest = MessageDigest.getInstance(digestAlgorithm);
+    KeyValueDigest digest = KeyValueDigest.getInstance(digestAlgorithm);
 
     Range childrenRange = null;
     for (MerkleTreeNode child : children) {
@@ -95,6 +95,45 @@ public class MerkleTreeNode {
     range = childrenRange;
   }
 
+  /**
+   * Creates the parent of two adjacent nodes, reusing the given digest. When {@code keepChildNodes}
+   * is set the children are retained so the tree can be walked from the root by
+   * {@link #getChildNodes()}.
+   */
+  public MerkleTreeNode(MerkleTreeNode left, MerkleTreeNode right, KeyValueDigest digest,
+      boolean keepChildNodes) {
+    if (keepChildNodes) {
+      childNodes = Arrays.asList(left, right);
+    }
+    level = Math.max(left.getLevel(), right.getLevel()) + 1;
+    children = Arrays.asList(left.getRange(), right.getRange());
+    range = merge(left.getRange(), right.getRange());
+
+    digest.reset();
+    digest.update(left.getHash());
+    digest.update(right.getHash());
+    hash = digest.digest();
+  }
+
+  private static Range merge(Range left, Range right) {
+    // Leaves are written end to end, so the common case is the right starting where the left ends
+    if (!left.isInfiniteStopKey() && !right.isInfiniteStartKey()
+        && left.getEndKey().equals(right.getStartKey())
+        && (left.isEndKeyInclusive() || right.isStartKeyInclusive())
+        && (left.isInfiniteStartKey() || left.getStartKey().compareTo(right.getStartKey()) < 0)
+        && (right.isInfiniteStopKey() || right.getEndKey().compareTo(left.getEndKey()) > 0)) {
+      return new Range(left.getStartKey(), left.isStartKeyInclusive(), right.getEndKey(),
+          right.isEndKeyInclusive());
+    }
+
+    List<Range> overlappingRanges = Range.mergeOverlapping(Arrays.asList(left, right));
+    if (1 != overlappingRanges.size()) {
+      log.error("Tried to merge non-contiguous ranges: {} {}", left, right);
+      throw new IllegalArgumentException("Ranges must be contiguous: " + left + ", " + right);
+    }
+    return overlappingRanges.get(0);
+  }
+
   public Range getRange() {
     return range;
   }
@@ -111,6 +150,14 @@ public class MerkleTreeNode {
     return hash;
   }
 
+  /**
+   * @return the child nodes if they were retained when this node was created, otherwise an empty
+   *         list
+   */
+  public List<MerkleTreeNode> getChildNodes() {
+    return childNodes;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder(32);
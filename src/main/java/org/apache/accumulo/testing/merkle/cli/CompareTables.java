@@ -20,11 +20,18 @@ package org.apache.accumulo.testing.merkle.cli;
 
 import java.io.FileNotFoundException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.accumulo.core.client.Accumulo;
 import org.apache.accumulo.core.client.AccumuloClient;
@@ -34,6 +41,10 @@ import org.apache.accumulo.core.client.TableExistsException;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.testing.cli.ClientOpts;
+import org.apache.accumulo.testing.merkle.KeyValueDigest;
+import org.apache.accumulo.testing.merkle.MerkleTreeBuilder;
+import org.apache.accumulo.testing.merkle.MerkleTreeDiff;
+import org.apache.accumulo.testing.merkle.MerkleTreeNode;
 import org.apache.commons.codec.binary.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,8 +55,18 @@ import com.beust.jcommander.Parameter;
  * Accepts a set of tables, computes the hashes for each, and prints the top-level hash for each
  * table.
  * <p>
+ * With {@code --diff}, the Merkle trees of tables that differ from the first table are walked from
+ * the root to the differing leaves and those leaf ranges are recursively split and re-hashed, so
+ * the ranges printed are narrowed down at a cost proportional to the divergence.
+ * <p>
+ * With a {@link KeyValueDigest#isMergeable() mergeable} hash such as {@code sum_murmur3_128}, each
+ * table is hashed over its own split points. The hash printed for a table is then the merge of all
+ * its leaves, and leaves are merged up to common split points before diffing. Iterator pushdown
+ * with {@code --diff} requires a mergeable hash.
+ * <p>
  * Will automatically create output tables for intermediate hashes instead of requiring their
- * existence. This will raise an exception when the table we want to use already exists.
+ * existence. This will raise an exception when the table we want to use already exists, unless
+ * {@code --incremental} is given to update the leaves of existing output tables.
  */
 public class CompareTables {
   private static final Logger log = LoggerFactory.getLogger(CompareTables.class);
@@ -55,10 +76,12 @@ public class CompareTables {
     public List<String> tables;
 
     @Parameter(names = {"-nt", "--numThreads"},
-        description = "number of concurrent threads calculating digests")
+        description = "number of concurrent threads calculating digests across all tables")
     private int numThreads = 4;
 
-    @Parameter(names = {"-hash", "--hash"}, required = true, description = "type of hash to use")
+    @Parameter(names = {"-hash", "--hash"}, required = true,
+        description = "type of hash to use, a MessageDigest algorithm, murmur3_128 or farmhash_64,"
+            + " optionally prefixed with sum_ to make range hashes mergeable")
     private String hashName;
 
     @Parameter(names = {"-iter", "--iterator"}, description = "Should pushdown digest to iterators")
@@ -67,6 +90,24 @@ public class CompareTables {
     @Parameter(names = {"-s", "--splits"}, description = "File of splits to use for merkle tree")
     private String splitsFile = null;
 
+    @Parameter(names = {"-d", "--diff"},
+        description = "Print the ranges that differ from the first table, hashing all tables over"
+            + " the first table's ranges")
+    private boolean diff = false;
+
+    @Parameter(names = {"--diffDepth"},
+        description = "Maximum number of times a differing Merkle tree leaf is split in half")
+    private int diffDepth = 16;
+
+    @Parameter(names = {"--scansPerServer"},
+        description = "Maximum number of concurrent digest scans against one tablet server")
+    private int scansPerServer = 4;
+
+    @Parameter(names = {"--incremental"},
+        description = "Reuse existing output tables, only re-hashing the ranges whose files changed"
+            + " since they were generated")
+    private boolean incremental = false;
+
     public List<String> getTables() {
       return this.tables;
     }
@@ -90,6 +131,22 @@ public class CompareTables {
     String getSplitsFile() {
       return splitsFile;
     }
+
+    boolean isDiff() {
+      return diff;
+    }
+
+    int getDiffDepth() {
+      return diffDepth;
+    }
+
+    int getScansPerServer() {
+      return scansPerServer;
+    }
+
+    boolean isIncremental() {
+      return incremental;
+    }
   }
 
   private CompareTablesOpts opts;
@@ -98,40 +155,160 @@ public class CompareTables {
     this.opts = opts;
   }
 
-  private Map<String,String> computeAllHashes()
+  private Map<String,String> computeAllHashes(AccumuloClient client)
       throws AccumuloException, AccumuloSecurityException, TableExistsException,
       NoSuchAlgorithmException, TableNotFoundException, FileNotFoundException {
-    try (AccumuloClient client = Accumulo.newClient().from(opts.getClientProps()).build()) {
-      final Map<String,String> hashesByTable = new HashMap<>();
+    final Map<String,String> hashesByTable = new LinkedHashMap<>();
+
+    // Walking the trees for a diff requires them to be built over the same leaves, unless the
+    // leaves can be merged to line them up afterwards
+    Collection<Range> sharedRanges = null;
+    if (opts.isDiff() && !isMergeable()) {
+      sharedRanges =
+          new GenerateHashes().getRanges(client, opts.getTables().get(0), opts.getSplitsFile());
+    }
+
+    for (String table : opts.getTables()) {
+      final String outputTableName = table + "_merkle";
+
+      if (!opts.isIncremental() && client.tableOperations().exists(outputTableName)) {
+        throw new IllegalArgumentException(
+            "Expected output table name to not yet exist: " + outputTableName);
+      }
+    }
 
+    // Schedule the ranges of every table on one pool so the replicas are hashed concurrently
+    ExecutorService svc = Executors.newWorkStealingPool(opts.getNumThreads());
+    ServerThrottle throttle = new ServerThrottle(opts.getScansPerServer());
+    LongAdder hashed = new LongAdder();
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    long total = 0;
+    ScheduledExecutorService reporter = null;
+    try {
       for (String table : opts.getTables()) {
         final String outputTableName = table + "_merkle";
-
-        if (client.tableOperations().exists(outputTableName)) {
-          throw new IllegalArgumentException(
-              "Expected output table name to not yet exist: " + outputTableName);
+        if (!client.tableOperations().exists(outputTableName)) {
+          client.tableOperations().create(outputTableName);
         }
 
-        client.tableOperations().create(outputTableName);
-
         GenerateHashes genHashes = new GenerateHashes();
-        Collection<Range> ranges = genHashes.getRanges(client, table, opts.getSplitsFile());
-
-        try {
-          genHashes.run(client, table, table + "_merkle", opts.getHashName(), opts.getNumThreads(),
-              opts.isIteratorPushdown(), ranges);
-        } catch (Exception e) {
-          log.error("Error generating hashes for {}", table, e);
-          throw new RuntimeException(e);
+        Collection<Range> ranges = null != sharedRanges ? sharedRanges
+            : genHashes.getRanges(client, table, opts.getSplitsFile());
+        total += ranges.size();
+
+        futures
+            .add(genHashes
+                .submit(client, table, outputTableName, opts.getHashName(),
+                    opts.isIteratorPushdown(), opts.isIncremental(), ranges, svc, throttle, hashed)
+                .whenComplete((v, t) -> {
+                  if (null == t) {
+                    log.info("Finished generating hashes for {}", table);
+                  } else {
+                    log.error("Error generating hashes for {}", table, t);
+                  }
+                }));
+      }
+
+      reporter = GenerateHashes.reportProgress(hashed, total);
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    } finally {
+      if (null != reporter) {
+        reporter.shutdownNow();
+      }
+      svc.shutdownNow();
+    }
+
+    ComputeRootHash computeRootHash = new ComputeRootHash();
+    for (String table : opts.getTables()) {
+      byte[] hash;
+      if (isMergeable()) {
+        // merging every leaf gives a digest of the whole table that ignores its split points
+        KeyValueDigest digest = KeyValueDigest.getInstance(opts.getHashName());
+        byte[][] merged = {digest.digest()};
+        computeRootHash.readLeaves(client, table + "_merkle",
+            leaf -> merged[0] = digest.merge(merged[0], leaf.getHash()));
+        hash = merged[0];
+      } else {
+        hash = computeRootHash.getHash(client, table + "_merkle", opts.getHashName());
+      }
+
+      hashesByTable.put(table, Hex.encodeHexString(hash));
+    }
+    return hashesByTable;
+  }
+
+  private boolean isMergeable() throws NoSuchAlgorithmException {
+    return KeyValueDigest.getInstance(opts.getHashName()).isMergeable();
+  }
+
+  /**
+   * @return the roots of the Merkle trees of the two tables, built over leaves with the same ranges
+   */
+  private MerkleTreeNode[] getAlignedTrees(AccumuloClient client, String table1, String table2)
+      throws TableNotFoundException, NoSuchAlgorithmException {
+    ComputeRootHash computeRootHash = new ComputeRootHash();
+    List<MerkleTreeNode> leaves1 = new ArrayList<>(), leaves2 = new ArrayList<>();
+    computeRootHash.readLeaves(client, table1 + "_merkle", leaves1::add);
+    computeRootHash.readLeaves(client, table2 + "_merkle", leaves2::add);
+
+    List<MerkleTreeNode> aligned1 = new ArrayList<>(), aligned2 = new ArrayList<>();
+    MerkleTreeDiff.alignLeaves(leaves1, leaves2, KeyValueDigest.getInstance(opts.getHashName()),
+        aligned1, aligned2);
+    log.info("Merged {} and {} leaves into {} with common split points", leaves1.size(),
+        leaves2.size(), aligned1.size());
+
+    MerkleTreeBuilder builder1 = new MerkleTreeBuilder(opts.getHashName(), true);
+    MerkleTreeBuilder builder2 = new MerkleTreeBuilder(opts.getHashName(), true);
+    aligned1.forEach(builder1::add);
+    aligned2.forEach(builder2::add);
+    return new MerkleTreeNode[] {builder1.getRootNode(), builder2.getRootNode()};
+  }
+
+  /**
+   * Walks the Merkle tree of each table whose root hash differs from the first table's down to the
+   * differing leaves, then narrows those leaves by re-hashing smaller ranges of both tables.
+   */
+  private void printDifferences(AccumuloClient client, Map<String,String> hashesByTable)
+      throws TableNotFoundException, NoSuchAlgorithmException, InterruptedException,
+      ExecutionException {
+    ComputeRootHash computeRootHash = new ComputeRootHash();
+    String first = opts.getTables().get(0);
+    boolean mergeable = isMergeable();
+    MerkleTreeNode firstTree =
+        mergeable ? null : computeRootHash.getTree(client, first + "_merkle", opts.getHashName());
+
+    ExecutorService svc = Executors.newFixedThreadPool(opts.getNumThreads());
+    try {
+      for (String table : opts.getTables().subList(1, opts.getTables().size())) {
+        if (hashesByTable.get(table).equals(hashesByTable.get(first))) {
+          continue;
         }
 
-        ComputeRootHash computeRootHash = new ComputeRootHash();
-        String hash = Hex
-            .encodeHexString(computeRootHash.getHash(client, outputTableName, opts.getHashName()));
+        MerkleTreeNode[] trees;
+        if (mergeable) {
+          trees = getAlignedTrees(client, first, table);
+        } else {
+          trees = new MerkleTreeNode[] {firstTree,
+              computeRootHash.getTree(client, table + "_merkle", opts.getHashName())};
+        }
+        List<Range> leafRanges = new ArrayList<>();
+        for (MerkleTreeNode node : MerkleTreeDiff.differingNodes(trees[0], trees[1])) {
+          leafRanges.add(node.getRange());
+        }
+        log.info("{} Merkle tree leaves differ between {} and {}", leafRanges.size(), first, table);
 
-        hashesByTable.put(table, hash);
+        DiffRefiner refiner = new DiffRefiner(client, first, table, opts.getHashName(),
+            opts.isIteratorPushdown(), opts.getDiffDepth(), svc);
+
+        System.out.println("\nRanges differing between " + first + " and " + table);
+        for (Range range : refiner.refine(leafRanges)) {
+          System.out.println(range);
+        }
       }
-      return hashesByTable;
+    } finally {
+      svc.shutdownNow();
     }
   }
 
@@ -144,22 +321,37 @@ public class CompareTables {
           "Cannot use iterator pushdown with anything other than table split points");
     }
 
-    CompareTables compareTables = new CompareTables(opts);
-    Map<String,String> tableToHashes = compareTables.computeAllHashes();
+    // the first table's ranges may span tablets of the other tables, which only a mergeable hash
+    // can digest per tablet
+    if (opts.isIteratorPushdown() && opts.isDiff()
+        && !KeyValueDigest.getInstance(opts.getHashName()).isMergeable()) {
+      throw new IllegalArgumentException(
+          "Cannot use iterator pushdown with --diff unless the hash is mergeable, such as sum_"
+              + opts.getHashName());
+    }
 
+    CompareTables compareTables = new CompareTables(opts);
     boolean hashesEqual = true;
-    String previousHash = null;
-    for (Entry<String,String> entry : tableToHashes.entrySet()) {
-      // Set the previous hash if we dont' have one
-      if (null == previousHash) {
-        previousHash = entry.getValue();
-      } else if (hashesEqual) {
-        // If the hashes are still equal, check that the new hash is
-        // also equal
-        hashesEqual = previousHash.equals(entry.getValue());
+    try (AccumuloClient client = Accumulo.newClient().from(opts.getClientProps()).build()) {
+      Map<String,String> tableToHashes = compareTables.computeAllHashes(client);
+
+      String previousHash = null;
+      for (Entry<String,String> entry : tableToHashes.entrySet()) {
+        // Set the previous hash if we dont' have one
+        if (null == previousHash) {
+          previousHash = entry.getValue();
+        } else if (hashesEqual) {
+          // If the hashes are still equal, check that the new hash is
+          // also equal
+          hashesEqual = previousHash.equals(entry.getValue());
+        }
+
+        System.out.println(entry.getKey() + " " + entry.getValue());
       }
 
-      System.out.println(entry.getKey() + " " + entry.getValue());
+      if (opts.isDiff() && !hashesEqual) {
+        compareTables.printDifferences(client, tableToHashes);
+      }
     }
 
     System.exit(hashesEqual ? 0 : 1);
@@ -19,10 +19,9 @@
 package org.apache.accumulo.testing.merkle.cli;
 
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.List;
 import java.util.Map.Entry;
+import java.util.function.Consumer;
 
 import org.apache.accumulo.core.client.Accumulo;
 import org.apache.accumulo.core.client.AccumuloClient;
@@ -33,10 +32,11 @@ import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.testing.cli.ClientOpts;
-import org.apache.accumulo.testing.merkle.MerkleTree;
+import org.apache.accumulo.testing.merkle.MerkleTreeBuilder;
 import org.apache.accumulo.testing.merkle.MerkleTreeNode;
 import org.apache.accumulo.testing.merkle.RangeSerialization;
 import org.apache.commons.codec.binary.Hex;
+import org.apache.hadoop.io.Text;
 
 import com.beust.jcommander.Parameter;
 
@@ -50,7 +50,9 @@ public class ComputeRootHash {
   public static class ComputeRootHashOpts extends ClientOpts {
     @Parameter(names = {"-t", "--table"}, required = true, description = "table to use")
     String tableName;
-    @Parameter(names = {"-hash", "--hash"}, required = true, description = "type of hash to use")
+    @Parameter(names = {"-hash", "--hash"}, required = true,
+        description = "type of hash to use, a MessageDigest algorithm, murmur3_128 or farmhash_64,"
+            + " optionally prefixed with sum_ to make range hashes mergeable")
     String hashName;
   }
 
@@ -63,28 +65,40 @@ public class ComputeRootHash {
 
   byte[] getHash(AccumuloClient client, String table, String hashName)
       throws TableNotFoundException, NoSuchAlgorithmException {
-    List<MerkleTreeNode> leaves = getLeaves(client, table);
-
-    MerkleTree tree = new MerkleTree(leaves, hashName);
+    return build(client, table, new MerkleTreeBuilder(hashName)).getHash();
+  }
 
-    return tree.getRootNode().getHash();
+  /**
+   * @return the root of the Merkle tree with all child nodes retained, for walking the tree with
+   *         {@link org.apache.accumulo.testing.merkle.MerkleTreeDiff}
+   */
+  MerkleTreeNode getTree(AccumuloClient client, String table, String hashName)
+      throws TableNotFoundException, NoSuchAlgorithmException {
+    return build(client, table, new MerkleTreeBuilder(hashName, true));
   }
 
-  private ArrayList<MerkleTreeNode> getLeaves(AccumuloClient client, String tableName)
+  private MerkleTreeNode build(AccumuloClient client, String table, MerkleTreeBuilder builder)
       throws TableNotFoundException {
-    // TODO make this a bit more resilient to very large merkle trees by
-    // lazily reading more data from the table when necessary
-    final Scanner s = client.createScanner(tableName, Authorizations.EMPTY);
-    final ArrayList<MerkleTreeNode> leaves = new ArrayList<>();
-
-    for (Entry<Key,Value> entry : s) {
-      Range range = RangeSerialization.toRange(entry.getKey());
-      byte[] hash = entry.getValue().get();
+    // The leaves are read in sorted order, so they can be rolled up as they are scanned
+    readLeaves(client, table, builder::add);
+    return builder.getRootNode();
+  }
 
-      leaves.add(new MerkleTreeNode(range, 0, Collections.emptyList(), hash));
+  /**
+   * Passes each leaf stored in the table to the consumer, in sorted order.
+   */
+  void readLeaves(AccumuloClient client, String table, Consumer<MerkleTreeNode> consumer)
+      throws TableNotFoundException {
+    try (Scanner s = client.createScanner(table, Authorizations.EMPTY)) {
+      // skip the change markers stored by incremental runs
+      s.fetchColumnFamily(new Text());
+      for (Entry<Key,Value> entry : s) {
+        Range range = RangeSerialization.toRange(entry.getKey());
+        byte[] hash = entry.getValue().get();
+
+        consumer.accept(new MerkleTreeNode(range, 0, Collections.emptyList(), hash));
+      }
     }
-
-    return leaves;
   }
 
   public static void main(String[] args) throws Exception {
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.merkle.cli;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.testing.merkle.KeyValueDigest;
+import org.apache.accumulo.testing.merkle.RangeSerialization;
+import org.apache.hadoop.io.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Narrows row ranges known to differ between two tables by repeatedly splitting each range in half
+ * at the midpoint of its end rows, re-hashing both halves in both tables and keeping only the
+ * halves that still differ. Ranges that cannot be split any further, or that reach the maximum
+ * depth, are reported.
+ */
+class DiffRefiner {
+  private static final Logger log = LoggerFactory.getLogger(DiffRefiner.class);
+
+  /**
+   * Rows covered by a range, inclusive of the start row and exclusive of the end row. Null rows are
+   * unbounded. The rows stored for the ranges hashed by {@link GenerateHashes} are the rows
+   * directly after its split points, so they delimit the same rows this way.
+   */
+  private static class Rows {
+    final Text start;
+    final Text end;
+
+    Rows(Text start, Text end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    Range toRange() {
+      return new Range(start, true, end, false);
+    }
+  }
+
+  private final AccumuloClient client;
+  private final String table1;
+  private final String table2;
+  private final String digestName;
+  private final boolean iteratorPushdown;
+  private final int maxDepth;
+  private final ExecutorService svc;
+
+  DiffRefiner(AccumuloClient client, String table1, String table2, String digestName,
+      boolean iteratorPushdown, int maxDepth, ExecutorService svc) {
+    this.client = client;
+    this.table1 = table1;
+    this.table2 = table2;
+    this.digestName = digestName;
+    this.iteratorPushdown = iteratorPushdown;
+    this.maxDepth = maxDepth;
+    this.svc = svc;
+  }
+
+  /**
+   * @param ranges Merkle tree ranges, as read by {@link RangeSerialization#toRange}, that are
+   *        already known to differ
+   * @return the smallest differing ranges found, with adjacent ranges merged
+   */
+  List<Range> refine(Collection<Range> ranges) throws InterruptedException, ExecutionException {
+    List<Range> differing = new ArrayList<>();
+    List<Rows> level = new ArrayList<>();
+    for (Range range : ranges) {
+      expand(rows(range), 0, level, differing);
+    }
+
+    long hashed = 0;
+    for (int depth = 1; !level.isEmpty(); depth++) {
+      List<Future<Boolean>> results = new ArrayList<>(level.size());
+      for (Rows rows : level) {
+        results.add(svc.submit(() -> differs(rows.toRange())));
+      }
+      hashed += level.size();
+
+      List<Rows> next = new ArrayList<>();
+      for (int i = 0; i < level.size(); i++) {
+        if (results.get(i).get()) {
+          expand(level.get(i), depth, next, differing);
+        }
+      }
+      log.info("Depth {} re-hashed {} ranges, {} still differ", depth, level.size(), next.size());
+      level = next;
+    }
+
+    log.info("Re-hashed {} ranges to find {} differing ranges", hashed, differing.size());
+    return Range.mergeOverlapping(differing);
+  }
+
+  private static Rows rows(Range leafRange) {
+    Text start = RangeSerialization.getRow(leafRange),
+        end = RangeSerialization.getColumnQualifier(leafRange);
+    return new Rows(start.getLength() == 0 ? null : start, end.getLength() == 0 ? null : end);
+  }
+
+  /**
+   * @param leafRange a Merkle tree range, as read by {@link RangeSerialization#toRange}
+   * @return the range of rows that was hashed for it
+   */
+  static Range toRowRange(Range leafRange) {
+    return rows(leafRange).toRange();
+  }
+
+  private void expand(Rows rows, int depth, List<Rows> next, List<Range> differing) {
+    Text mid = depth < maxDepth ? split(rows.start, rows.end) : null;
+    if (null == mid) {
+      differing.add(rows.toRange());
+    } else {
+      next.add(new Rows(rows.start, mid));
+      next.add(new Rows(mid, rows.end));
+    }
+  }
+
+  private boolean differs(Range range) throws Exception {
+    GenerateHashes genHashes = new GenerateHashes();
+    KeyValueDigest digest = KeyValueDigest.getInstance(digestName);
+    byte[] hash1 = genHashes.digest(client, table1, range, digest, iteratorPushdown).get();
+    byte[] hash2 = genHashes.digest(client, table2, range, digest, iteratorPushdown).get();
+    return !Arrays.equals(hash1, hash2);
+  }
+
+  /**
+   * @return a row that sorts strictly between the two rows, about half way between them when
+   *         treated as unsigned fractions, or null if there is none worth splitting on
+   */
+  static Text split(Text start, Text end) {
+    byte[] lo = null == start ? new byte[0] : start.copyBytes();
+    byte[] hi = null == end ? null : end.copyBytes();
+
+    // one extra byte of precision so adjacent rows can still be split
+    int len = Math.max(lo.length, null == hi ? 0 : hi.length) + 1;
+    byte[] upper = new byte[len];
+    if (null == hi) {
+      Arrays.fill(upper, (byte) 0xff);
+    } else {
+      System.arraycopy(hi, 0, upper, 0, hi.length);
+    }
+
+    byte[] sum = new BigInteger(1, Arrays.copyOf(lo, len)).add(new BigInteger(1, upper))
+        .shiftRight(1).toByteArray();
+    byte[] mid = new byte[len];
+    int copy = Math.min(len, sum.length);
+    System.arraycopy(sum, sum.length - copy, mid, len - copy, copy);
+
+    // trailing zeros only lower the row, keep dropping them while it stays after the start
+    int midLen = len;
+    while (midLen > 0 && mid[midLen - 1] == 0
+        && Arrays.compareUnsigned(mid, 0, midLen - 1, lo, 0, lo.length) > 0) {
+      midLen--;
+    }
+
+    if (Arrays.compareUnsigned(mid, 0, midLen, lo, 0, lo.length) <= 0
+        || (null != hi && Arrays.compareUnsigned(mid, 0, midLen, hi, 0, hi.length) >= 0)) {
+      return null;
+    }
+    return new Text(Arrays.copyOf(mid, midLen));
+  }
+}
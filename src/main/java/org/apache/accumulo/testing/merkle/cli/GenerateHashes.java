@@ -20,24 +20,34 @@ package org.apache.accumulo.testing.merkle.cli;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.accumulo.core.client.Accumulo;
 import org.apache.accumulo.core.client.AccumuloClient;
 import org.apache.accumulo.core.client.AccumuloException;
 import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchScanner;
 import org.apache.accumulo.core.client.BatchWriter;
 import org.apache.accumulo.core.client.IteratorSetting;
 import org.apache.accumulo.core.client.MutationsRejectedException;
@@ -49,6 +59,7 @@ import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.testing.cli.ClientOpts;
+import org.apache.accumulo.testing.merkle.KeyValueDigest;
 import org.apache.accumulo.testing.merkle.RangeSerialization;
 import org.apache.accumulo.testing.merkle.skvi.DigestIterator;
 import org.apache.commons.codec.binary.Hex;
@@ -61,7 +72,8 @@ import com.google.common.collect.Iterables;
 
 /**
  * Read from a table, compute a Merkle tree and output it to a table. Each key-value pair in the
- * destination table is a leaf node of the Merkle tree.
+ * destination table is a leaf node of the Merkle tree. With {@code --incremental}, only the leaves
+ * whose tablet files changed since the previous run into the same output table are recomputed.
  */
 public class GenerateHashes {
   private static final Logger log = LoggerFactory.getLogger(GenerateHashes.class);
@@ -71,7 +83,9 @@ public class GenerateHashes {
     @Parameter(names = {"-t", "--table"}, required = true, description = "table to use")
     String tableName;
 
-    @Parameter(names = {"-hash", "--hash"}, required = true, description = "type of hash to use")
+    @Parameter(names = {"-hash", "--hash"}, required = true,
+        description = "type of hash to use, a MessageDigest algorithm, murmur3_128 or farmhash_64,"
+            + " optionally prefixed with sum_ to make range hashes mergeable")
     private String hashName;
 
     @Parameter(names = {"-o", "--output"}, required = true,
@@ -90,6 +104,11 @@ public class GenerateHashes {
         description = "File of splits to use for merkle tree")
     private String splitsFile = null;
 
+    @Parameter(names = {"--incremental"}, required = false,
+        description = "Only re-hash the ranges whose files changed since the output table was"
+            + " last generated")
+    private boolean incremental = false;
+
     String getHashName() {
       return hashName;
     }
@@ -110,6 +129,9 @@ public class GenerateHashes {
       return splitsFile;
     }
 
+    boolean isIncremental() {
+      return incremental;
+    }
   }
 
   Collection<Range> getRanges(AccumuloClient client, String tableName, String splitsFile)
@@ -143,96 +165,240 @@ public class GenerateHashes {
     try (AccumuloClient client = Accumulo.newClient().from(opts.getClientProps()).build()) {
       Collection<Range> ranges = getRanges(client, opts.tableName, opts.getSplitsFile());
       run(client, opts.tableName, opts.getOutputTableName(), opts.getHashName(),
-          opts.getNumThreads(), opts.isIteratorPushdown(), ranges);
+          opts.getNumThreads(), opts.isIteratorPushdown(), opts.isIncremental(), ranges);
     }
   }
 
   public void run(final AccumuloClient client, final String inputTableName,
       final String outputTableName, final String digestName, int numThreads,
-      final boolean iteratorPushdown, final Collection<Range> ranges)
-      throws TableNotFoundException, AccumuloException, NoSuchAlgorithmException {
+      final boolean iteratorPushdown, final Collection<Range> ranges) throws TableNotFoundException,
+      AccumuloException, AccumuloSecurityException, NoSuchAlgorithmException {
+    run(client, inputTableName, outputTableName, digestName, numThreads, iteratorPushdown, false,
+        ranges);
+  }
+
+  public void run(final AccumuloClient client, final String inputTableName,
+      final String outputTableName, final String digestName, int numThreads,
+      final boolean iteratorPushdown, final boolean incremental, final Collection<Range> ranges)
+      throws TableNotFoundException, AccumuloException, AccumuloSecurityException,
+      NoSuchAlgorithmException {
+    ExecutorService svc = Executors.newWorkStealingPool(numThreads);
+    LongAdder hashed = new LongAdder();
+    ScheduledExecutorService reporter = reportProgress(hashed, ranges.size());
+    try {
+      submit(client, inputTableName, outputTableName, digestName, iteratorPushdown, incremental,
+          ranges, svc, new ServerThrottle(numThreads), hashed).get();
+    } catch (InterruptedException e) {
+      log.error("Interrupted while waiting for the digests to complete. Exiting now");
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new AccumuloException("Could not compute digests for " + inputTableName, e.getCause());
+    } finally {
+      reporter.shutdownNow();
+      svc.shutdownNow();
+    }
+  }
+
+  /**
+   * Logs how many of the ranges have been hashed every ten seconds until the returned executor is
+   * shut down.
+   */
+  static ScheduledExecutorService reportProgress(LongAdder hashed, long total) {
+    ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "merkle-progress");
+      t.setDaemon(true);
+      return t;
+    });
+    long start = System.nanoTime();
+    reporter.scheduleAtFixedRate(() -> {
+      long done = hashed.sum();
+      long elapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+      log.info("Hashed {} of {} ranges ({}%) in {}s", done, total,
+          total == 0 ? 100 : done * 100 / total, elapsed);
+    }, 10, 10, TimeUnit.SECONDS);
+    return reporter;
+  }
+
+  /**
+   * Schedules the digest of each range on the executor, writing each leaf to the output table as it
+   * is computed. Ranges are submitted round robin across the tablet servers hosting them, and at
+   * most the throttle's limit of scans run against any one server at a time.
+   * <p>
+   * When {@code incremental} is set, the input table is flushed and each leaf is stored with a
+   * marker of the files it was computed from. Ranges whose marker has not changed since the
+   * previous run keep their leaf, and leaves of ranges no longer in use are deleted.
+   *
+   * @param hashed incremented as each range is written or found unchanged, for progress reporting
+   * @return completes once every leaf is written and the output writer is closed
+   */
+  CompletableFuture<Void> submit(final AccumuloClient client, final String inputTableName,
+      final String outputTableName, final String digestName, final boolean iteratorPushdown,
+      final boolean incremental, Collection<Range> ranges, Executor executor,
+      ServerThrottle throttle, LongAdder hashed) throws TableNotFoundException, AccumuloException,
+      AccumuloSecurityException, NoSuchAlgorithmException {
     if (!client.tableOperations().exists(outputTableName)) {
       throw new IllegalArgumentException(outputTableName + " does not exist, please create it");
     }
 
-    // Get some parallelism
-    ExecutorService svc = Executors.newFixedThreadPool(numThreads);
+    Map<Range,byte[]> markers = null;
+    List<Key> staleLeaves = new ArrayList<>();
+    if (incremental) {
+      markers =
+          changedRanges(client, inputTableName, outputTableName, digestName, ranges, staleLeaves);
+      log.info("{} of {} ranges of {} changed since the previous run, {} leaves removed",
+          markers.size(), ranges.size(), inputTableName, staleLeaves.size());
+      hashed.add(ranges.size() - markers.size());
+      ranges = markers.keySet();
+    }
+
+    final BatchWriter bw = client.createBatchWriter(outputTableName);
+    for (Key stale : staleLeaves) {
+      Mutation m = new Mutation(stale.getRow());
+      m.putDelete(new Text(), stale.getColumnQualifier());
+      m.putDelete(LeafMarkers.MARKER_COLF, stale.getColumnQualifier());
+      bw.addMutation(m);
+    }
 
-    try (BatchWriter bw = client.createBatchWriter(outputTableName)) {
-      for (final Range range : ranges) {
-        final MessageDigest digest = getDigestAlgorithm(digestName);
+    final Map<Range,byte[]> leafMarkers = markers;
+    List<CompletableFuture<Void>> futures = new ArrayList<>(ranges.size());
+    for (Entry<Range,String> located : ServerThrottle.locate(client, inputTableName, ranges)
+        .entrySet()) {
+      final Range range = located.getKey();
+      final String server = located.getValue();
+      final KeyValueDigest digest = KeyValueDigest.getInstance(digestName);
 
-        svc.execute(() -> {
-          Scanner s;
-          try {
-            s = client.createScanner(inputTableName, Authorizations.EMPTY);
-          } catch (Exception e) {
-            log.error("Could not get scanner for " + inputTableName, e);
-            throw new RuntimeException(e);
-          }
+      futures.add(throttle.submit(server, () -> {
+        try {
+          return digest(client, inputTableName, range, digest, iteratorPushdown);
+        } catch (TableNotFoundException e) {
+          log.error("Could not get scanner for " + inputTableName, e);
+          throw new CompletionException(e);
+        }
+      }, executor).thenAccept(v -> {
+        Mutation m = RangeSerialization.toMutation(range, v);
+        if (null != leafMarkers) {
+          m.put(LeafMarkers.MARKER_COLF, RangeSerialization.getColumnQualifier(range),
+              new Value(leafMarkers.get(range)));
+        }
 
-          s.setRange(range);
-
-          Value v;
-          Mutation m;
-          if (iteratorPushdown) {
-            IteratorSetting cfg = new IteratorSetting(50, DigestIterator.class);
-            cfg.addOption(DigestIterator.HASH_NAME_KEY, digestName);
-            s.addScanIterator(cfg);
-
-            // The scanner should only ever return us one
-            // Key-Value, otherwise this approach won't work
-            Entry<Key,Value> entry = Iterables.getOnlyElement(s);
-
-            v = entry.getValue();
-            m = RangeSerialization.toMutation(range, v);
-          } else {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            for (Entry<Key,Value> entry : s) {
-              DataOutputStream out = new DataOutputStream(baos);
-              try {
-                entry.getKey().write(out);
-                entry.getValue().write(out);
-              } catch (Exception e) {
-                log.error("Error writing {}", entry, e);
-                throw new RuntimeException(e);
-              }
-
-              digest.update(baos.toByteArray());
-              baos.reset();
-            }
-
-            v = new Value(digest.digest());
-            m = RangeSerialization.toMutation(range, v);
-          }
+        // Log some progress
+        log.debug("{} computed digest for {} of {}", Thread.currentThread().getName(), range,
+            Hex.encodeHexString(v.get()));
 
-          // Log some progress
-          log.info("{} computed digest for {} of {}", Thread.currentThread().getName(), range,
-              Hex.encodeHexString(v.get()));
+        try {
+          bw.addMutation(m);
+        } catch (MutationsRejectedException e) {
+          log.error("Could not write mutation", e);
+          throw new CompletionException(e);
+        }
+        hashed.increment();
+      }));
+    }
 
-          try {
-            bw.addMutation(m);
-          } catch (MutationsRejectedException e) {
-            log.error("Could not write mutation", e);
-            throw new RuntimeException(e);
-          }
-        });
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle((v, t) -> {
+      try {
+        bw.close();
+      } catch (MutationsRejectedException e) {
+        if (null == t) {
+          throw new CompletionException(e);
+        }
+        t.addSuppressed(e);
       }
+      if (null != t) {
+        throw t instanceof CompletionException ? (CompletionException) t
+            : new CompletionException(t);
+      }
+      return null;
+    });
+  }
 
-      svc.shutdown();
+  /**
+   * Compares the marker of each range against the one stored with its leaf by the previous run.
+   *
+   * @param staleLeaves filled with the key of each stored leaf whose range is not in {@code ranges}
+   * @return the markers of the ranges that need to be hashed, in range order
+   */
+  private Map<Range,byte[]> changedRanges(AccumuloClient client, String inputTableName,
+      String outputTableName, String digestName, Collection<Range> ranges, List<Key> staleLeaves)
+      throws TableNotFoundException, AccumuloException, AccumuloSecurityException {
+    // data still in memory is not reflected in the tablet files
+    client.tableOperations().flush(inputTableName, null, null, true);
+    LeafMarkers current = LeafMarkers.read(client, inputTableName, digestName);
+
+    Map<Key,byte[]> previous = new HashMap<>();
+    try (Scanner s = client.createScanner(outputTableName, Authorizations.EMPTY)) {
+      for (Entry<Key,Value> entry : s) {
+        Key leaf =
+            new Key(entry.getKey().getRow(), new Text(), entry.getKey().getColumnQualifier());
+        if (entry.getKey().compareColumnFamily(LeafMarkers.MARKER_COLF) == 0) {
+          previous.put(leaf, entry.getValue().get());
+        } else {
+          // a leaf without a marker is always hashed again
+          previous.putIfAbsent(leaf, null);
+        }
+      }
+    }
 
-      // Wait indefinitely for the scans to complete
-      while (!svc.isTerminated()) {
-        try {
-          Thread.sleep(1000);
-        } catch (InterruptedException e) {
-          log.error(
-              "Interrupted while waiting for executor service to gracefully complete. Exiting now");
-          svc.shutdownNow();
-          return;
+    Map<Range,byte[]> changed = new LinkedHashMap<>();
+    for (Range range : ranges) {
+      byte[] marker = current.marker(range);
+      if (!Arrays.equals(marker, previous.remove(RangeSerialization.toKey(range)))) {
+        changed.put(range, marker);
+      }
+    }
+
+    staleLeaves.addAll(previous.keySet());
+    return changed;
+  }
+
+  /**
+   * Computes the digest of all key-values in a range of a table. An empty range produces the digest
+   * of no input regardless of {@code iteratorPushdown}.
+   * <p>
+   * A mergeable digest pushed down to the iterator is computed for each tablet of the range
+   * concurrently, and the per-tablet digests are merged.
+   */
+  Value digest(AccumuloClient client, String tableName, Range range, KeyValueDigest digest,
+      boolean iteratorPushdown) throws TableNotFoundException {
+    if (iteratorPushdown && digest.isMergeable()) {
+      try (BatchScanner bs = client.createBatchScanner(tableName, Authorizations.EMPTY)) {
+        bs.setRanges(Collections.singleton(range));
+        IteratorSetting cfg = new IteratorSetting(50, DigestIterator.class);
+        cfg.addOption(DigestIterator.HASH_NAME_KEY, digest.getAlgorithm());
+        bs.addScanIterator(cfg);
+
+        // Each tablet, and each restart of a scan session, returns a partial digest
+        byte[] merged = digest.digest();
+        for (Entry<Key,Value> entry : bs) {
+          merged = digest.merge(merged, entry.getValue().get());
         }
+        return new Value(merged);
       }
     }
+
+    try (Scanner s = client.createScanner(tableName, Authorizations.EMPTY)) {
+      s.setRange(range);
+
+      if (iteratorPushdown) {
+        IteratorSetting cfg = new IteratorSetting(50, DigestIterator.class);
+        cfg.addOption(DigestIterator.HASH_NAME_KEY, digest.getAlgorithm());
+        s.addScanIterator(cfg);
+
+        // The scanner should only ever return us one
+        // Key-Value, otherwise this approach won't work
+        Entry<Key,Value> entry = Iterables.getOnlyElement(s, null);
+
+        if (null != entry) {
+          return entry.getValue();
+        }
+      } else {
+        for (Entry<Key,Value> entry : s) {
+          digest.update(entry.getKey(), entry.getValue());
+        }
+      }
+
+      return new Value(digest.digest());
+    }
   }
 
   private TreeSet<Range> endRowsToRanges(Collection<Text> endRows) {
@@ -255,10 +421,6 @@ public class GenerateHashes {
     return ranges;
   }
 
-  private MessageDigest getDigestAlgorithm(String digestName) throws NoSuchAlgorithmException {
-    return MessageDigest.getInstance(digestName);
-  }
-
   public static void main(String[] args) throws Exception {
     GenerateHashesOpts opts = new GenerateHashesOpts();
     opts.parseArgs(GenerateHashes.class.getName(), args);
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.merkle.cli;
+
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.testing.TestProps;
+import org.apache.accumulo.testing.merkle.RangeSerialization;
+import org.apache.hadoop.io.Text;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Computes a change marker for each Merkle tree leaf from the files of the tablets overlapping its
+ * range, as recorded in the metadata table. Once a table is flushed, a leaf whose marker is the
+ * same as on the previous run covers the same data and does not need to be hashed again. Writes
+ * that land in another part of the same tablet, and compactions, change the marker too, so some
+ * unchanged leaves are still re-hashed.
+ */
+class LeafMarkers {
+  static final Text MARKER_COLF = new Text("marker");
+
+  private static final Text FILE_COLF = new Text("file");
+
+  // files of each tablet keyed by the row directly after its end row
+  private final NavigableMap<Text,SortedSet<String>> tablets = new TreeMap<>();
+  private final SortedSet<String> lastTablet = new TreeSet<>();
+  private final String digestName;
+
+  private LeafMarkers(String digestName) {
+    this.digestName = digestName;
+  }
+
+  static LeafMarkers read(AccumuloClient client, String tableName, String digestName)
+      throws TableNotFoundException, AccumuloException, AccumuloSecurityException {
+    String tableId = client.tableOperations().tableIdMap().get(tableName);
+    if (null == tableId) {
+      throw new TableNotFoundException(null, tableName, null);
+    }
+
+    LeafMarkers markers = new LeafMarkers(digestName);
+    try (Scanner scanner =
+        client.createScanner(TestProps.METADATA_TABLE_NAME, Authorizations.EMPTY)) {
+      scanner.fetchColumnFamily(FILE_COLF);
+      // every tablet has a prev row, so tablets without files are seen too
+      scanner.fetchColumn(new Text("~tab"), new Text("~pr"));
+      scanner.setRange(new Range(tableId + ";", false, tableId + "<", true));
+
+      Text row = new Text();
+      for (Entry<Key,Value> entry : scanner) {
+        entry.getKey().getRow(row);
+        SortedSet<String> files = markers.tabletFiles(row, tableId.length());
+        if (entry.getKey().compareColumnFamily(FILE_COLF) == 0) {
+          files.add(entry.getKey().getColumnQualifier().toString());
+        }
+      }
+    }
+    return markers;
+  }
+
+  private SortedSet<String> tabletFiles(Text metadataRow, int tableIdLength) {
+    if (metadataRow.getBytes()[tableIdLength] == '<') {
+      return lastTablet;
+    }
+    // the row directly after the end row, so tablets and leaves both have exclusive end rows
+    Text afterEndRow = new Text();
+    afterEndRow.set(metadataRow.getBytes(), tableIdLength + 1,
+        metadataRow.getLength() - tableIdLength - 1);
+    afterEndRow.append(new byte[] {0}, 0, 1);
+    return tablets.computeIfAbsent(afterEndRow, k -> new TreeSet<>());
+  }
+
+  /**
+   * @param range a range hashed by {@link GenerateHashes}
+   */
+  byte[] marker(Range range) {
+    // stored leaf rows include the start row and exclude the end row, see DiffRefiner
+    Text start = RangeSerialization.getRow(range),
+        end = RangeSerialization.getColumnQualifier(range);
+
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    hasher.putUnencodedChars(digestName);
+
+    NavigableMap<Text,SortedSet<String>> overlapping =
+        start.getLength() == 0 ? tablets : tablets.tailMap(start, false);
+    boolean pastEnd = false;
+    for (Entry<Text,SortedSet<String>> tablet : overlapping.entrySet()) {
+      putFiles(hasher, tablet.getValue());
+      if (end.getLength() != 0 && tablet.getKey().compareTo(end) >= 0) {
+        pastEnd = true;
+        break;
+      }
+    }
+    if (!pastEnd) {
+      putFiles(hasher, lastTablet);
+    }
+
+    return hasher.hash().asBytes();
+  }
+
+  private static void putFiles(Hasher hasher, SortedSet<String> files) {
+    hasher.putInt(files.size());
+    for (String file : files) {
+      hasher.putUnencodedChars(file).putByte((byte) 0);
+    }
+  }
+}
@@ -18,24 +18,42 @@
  */
 package org.apache.accumulo.testing.merkle.cli;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.accumulo.core.client.Accumulo;
 import org.apache.accumulo.core.client.AccumuloClient;
 import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.testing.cli.ClientOpts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.beust.jcommander.Parameter;
 
 /**
- * Accepts two table names and enumerates all key-values pairs in both checking for correctness. All
- * differences between the two tables will be printed to the console.
+ * Accepts two table names and enumerates all key-values pairs in both checking for correctness. The
+ * tables are split into ranges, by the first table's split points, a file of split points or the
+ * leaves of a Merkle tree table, and the two tables are merged over each range concurrently. The
+ * number of matching and differing entries is printed along with the differences with the smallest
+ * keys, up to the sample size.
  */
 public class ManualComparison {
+  private static final Logger log = LoggerFactory.getLogger(ManualComparison.class);
 
   public static class ManualComparisonOpts extends ClientOpts {
     @Parameter(names = {"--table1"}, required = true, description = "First table")
@@ -43,57 +61,178 @@ public class ManualComparison {
 
     @Parameter(names = {"--table2"}, required = true, description = "First table")
     public String table2;
+
+    @Parameter(names = {"-nt", "--numThreads"},
+        description = "number of ranges to compare concurrently")
+    public int numThreads = 4;
+
+    @Parameter(names = {"-s", "--splits"},
+        description = "File of splits to partition the comparison by, instead of the splits of"
+            + " the first table")
+    public String splitsFile = null;
+
+    @Parameter(names = {"-l", "--leaves"},
+        description = "Merkle tree table, as written by GenerateHashes, whose leaf ranges"
+            + " partition the comparison")
+    public String leavesTable = null;
+
+    @Parameter(names = {"--sample"},
+        description = "Maximum number of differences to print, those with the smallest keys")
+    public int sample = 100;
   }
 
-  public static void main(String[] args) throws Exception {
-    ManualComparisonOpts opts = new ManualComparisonOpts();
-    opts.parseArgs("ManualComparison", args);
+  private final AccumuloClient client;
+  private final String table1;
+  private final String table2;
+  private final int sample;
+
+  private final LongAdder matching = new LongAdder();
+  private final LongAdder onlyInFirst = new LongAdder();
+  private final LongAdder onlyInSecond = new LongAdder();
+  private final LongAdder differing = new LongAdder();
+  private final LongAdder rangesDone = new LongAdder();
+  // the number of entries in samples, which evicts its last key once there are more than sample
+  private final AtomicInteger sampled = new AtomicInteger();
+  private final ConcurrentSkipListMap<Key,String> samples = new ConcurrentSkipListMap<>();
+
+  ManualComparison(AccumuloClient client, String table1, String table2, int sample) {
+    this.client = client;
+    this.table1 = table1;
+    this.table2 = table2;
+    this.sample = sample;
+  }
+
+  /**
+   * @return the total number of entries that differ between the two tables
+   */
+  long compare(Collection<Range> ranges, int numThreads) throws Exception {
+    ExecutorService svc = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<Void>> futures = new ArrayList<>(ranges.size());
+      for (Range range : ranges) {
+        futures.add(svc.submit(() -> {
+          compare(range);
+          return null;
+        }));
+      }
+      svc.shutdown();
 
-    try (AccumuloClient client = Accumulo.newClient().from(opts.getClientProps()).build();
-        Scanner s1 = client.createScanner(opts.table1, Authorizations.EMPTY);
-        Scanner s2 = client.createScanner(opts.table2, Authorizations.EMPTY)) {
+      while (!svc.awaitTermination(10, TimeUnit.SECONDS)) {
+        log.info("Compared {} of {} ranges, {} entries differ so far", rangesDone.sum(),
+            ranges.size(), getDifferences());
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      svc.shutdownNow();
+    }
+    return getDifferences();
+  }
+
+  private long getDifferences() {
+    return onlyInFirst.sum() + onlyInSecond.sum() + differing.sum();
+  }
+
+  /**
+   * Merges the sorted entries of both tables within the range.
+   */
+  private void compare(Range range) throws TableNotFoundException {
+    try (Scanner s1 = client.createScanner(table1, Authorizations.EMPTY);
+        Scanner s2 = client.createScanner(table2, Authorizations.EMPTY)) {
+      s1.setRange(range);
+      s2.setRange(range);
       Iterator<Entry<Key,Value>> iter1 = s1.iterator(), iter2 = s2.iterator();
-      boolean incrementFirst = true, incrementSecond = true;
 
-      Entry<Key,Value> entry1 = iter1.next(), entry2 = iter2.next();
-      while (iter1.hasNext() && iter2.hasNext()) {
-        if (incrementFirst) {
-          entry1 = iter1.next();
-        }
-        if (incrementSecond) {
-          entry2 = iter2.next();
+      Entry<Key,Value> entry1 = next(iter1), entry2 = next(iter2);
+      while (null != entry1 || null != entry2) {
+        int cmp;
+        if (null == entry1) {
+          cmp = 1;
+        } else if (null == entry2) {
+          cmp = -1;
+        } else {
+          cmp = entry1.getKey().compareTo(entry2.getKey());
         }
-        incrementFirst = false;
-        incrementSecond = false;
 
-        if (!entry1.equals(entry2)) {
-
-          if (entry1.getKey().compareTo(entry2.getKey()) < 0) {
-            System.out.println("Exist in original " + entry1);
-            incrementFirst = true;
-          } else if (entry2.getKey().compareTo(entry1.getKey()) < 0) {
-            System.out.println("Exist in replica " + entry2);
-            incrementSecond = true;
+        if (cmp < 0) {
+          onlyInFirst.increment();
+          sample(entry1.getKey(), "Exist in original " + entry1);
+          entry1 = next(iter1);
+        } else if (cmp > 0) {
+          onlyInSecond.increment();
+          sample(entry2.getKey(), "Exist in replica " + entry2);
+          entry2 = next(iter2);
+        } else {
+          if (entry1.getValue().equals(entry2.getValue())) {
+            matching.increment();
           } else {
-            System.out.println("Differ... " + entry1 + " " + entry2);
-            incrementFirst = true;
-            incrementSecond = true;
+            differing.increment();
+            sample(entry1.getKey(), "Differ... " + entry1 + " " + entry2);
           }
-        } else {
-          incrementFirst = true;
-          incrementSecond = true;
+          entry1 = next(iter1);
+          entry2 = next(iter2);
         }
       }
+    }
+    rangesDone.increment();
+  }
 
-      System.out.println("\nExtra entries from " + opts.table1);
-      while (iter1.hasNext()) {
-        System.out.println(iter1.next());
-      }
+  private static Entry<Key,Value> next(Iterator<Entry<Key,Value>> iter) {
+    return iter.hasNext() ? iter.next() : null;
+  }
 
-      System.out.println("\nExtra entries from " + opts.table2);
-      while (iter2.hasNext()) {
-        System.out.println(iter2.next());
-      }
+  /**
+   * Keeps the differences with the smallest keys, so the sample printed does not depend on the
+   * order in which the ranges are compared.
+   */
+  private void sample(Key key, String difference) {
+    if (null == samples.put(key, difference) && sampled.incrementAndGet() > sample) {
+      samples.pollLastEntry();
+      sampled.decrementAndGet();
     }
   }
+
+  private void print() {
+    for (String difference : samples.values()) {
+      System.out.println(difference);
+    }
+    if (getDifferences() > samples.size()) {
+      System.out.println("... " + (getDifferences() - samples.size()) + " more differences");
+    }
+
+    System.out.println("\nMatching entries: " + matching.sum());
+    System.out.println("Only in " + table1 + ": " + onlyInFirst.sum());
+    System.out.println("Only in " + table2 + ": " + onlyInSecond.sum());
+    System.out.println("Differing values: " + differing.sum());
+  }
+
+  private static Collection<Range> getRanges(AccumuloClient client, ManualComparisonOpts opts)
+      throws Exception {
+    if (null != opts.leavesTable) {
+      List<Range> ranges = new ArrayList<>();
+      new ComputeRootHash().readLeaves(client, opts.leavesTable,
+          leaf -> ranges.add(DiffRefiner.toRowRange(leaf.getRange())));
+      return ranges;
+    }
+    return new GenerateHashes().getRanges(client, opts.table1, opts.splitsFile);
+  }
+
+  public static void main(String[] args) throws Exception {
+    ManualComparisonOpts opts = new ManualComparisonOpts();
+    opts.parseArgs("ManualComparison", args);
+
+    long differences;
+    try (AccumuloClient client = Accumulo.newClient().from(opts.getClientProps()).build()) {
+      ManualComparison comparison =
+          new ManualComparison(client, opts.table1, opts.table2, opts.sample);
+      Collection<Range> ranges = getRanges(client, opts);
+      log.info("Comparing {} and {} over {} ranges", opts.table1, opts.table2, ranges.size());
+
+      differences = comparison.compare(ranges, opts.numThreads);
+      comparison.print();
+    }
+
+    System.exit(differences == 0 ? 0 : 1);
+  }
 }
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.merkle.cli;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.Locations;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.TabletId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of concurrent scans against each tablet server, so that hashing many tables at
+ * once spreads the load instead of piling onto whichever server hosts the first ranges. A scan is
+ * only handed to the executor once its server has a free slot, so scans waiting for a busy server
+ * queue here instead of holding executor threads.
+ */
+class ServerThrottle {
+  private static final Logger log = LoggerFactory.getLogger(ServerThrottle.class);
+
+  static final String UNKNOWN = "unknown";
+
+  private final int scansPerServer;
+  // the running count and waiting scans of each server, guarded by this
+  private final Map<String,Server> servers = new HashMap<>();
+
+  private static class Server {
+    int running = 0;
+    final Deque<Runnable> waiting = new ArrayDeque<>();
+  }
+
+  ServerThrottle(int scansPerServer) {
+    this.scansPerServer = scansPerServer;
+  }
+
+  /**
+   * Runs a scan on the executor once the server has a free slot. Waiting scans start in the order
+   * they were submitted. Ranges on an {@link #UNKNOWN} server are not limited.
+   *
+   * @return completes with the result of the scan
+   */
+  <T> CompletableFuture<T> submit(String server, Supplier<T> scan, Executor executor) {
+    if (UNKNOWN.equals(server)) {
+      return CompletableFuture.supplyAsync(scan, executor);
+    }
+
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Runnable start = () -> {
+      try {
+        CompletableFuture.supplyAsync(scan, executor).whenComplete((v, t) -> {
+          release(server);
+          if (null == t) {
+            result.complete(v);
+          } else {
+            result.completeExceptionally(t);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        release(server);
+        result.completeExceptionally(e);
+      }
+    };
+
+    boolean free;
+    synchronized (this) {
+      Server state = servers.computeIfAbsent(server, s -> new Server());
+      free = state.running < scansPerServer;
+      if (free) {
+        state.running++;
+      } else {
+        state.waiting.add(start);
+      }
+    }
+    if (free) {
+      start.run();
+    }
+    return result;
+  }
+
+  /**
+   * Hands a finished scan's slot to the next scan waiting for the server, if any.
+   */
+  private void release(String server) {
+    Runnable next;
+    synchronized (this) {
+      Server state = servers.get(server);
+      next = state.waiting.poll();
+      if (null == next) {
+        state.running--;
+      }
+    }
+    if (null != next) {
+      next.run();
+    }
+  }
+
+  /**
+   * Finds the tablet server hosting the start of each range.
+   *
+   * @return the server of each range, ordered round robin across servers so that work taken in
+   *         order is spread over all of them
+   */
+  static Map<Range,String> locate(AccumuloClient client, String tableName,
+      Collection<Range> ranges) {
+    Map<Range,List<TabletId>> tablets = Map.of();
+    Locations locations = null;
+    try {
+      locations = client.tableOperations().locate(tableName, ranges);
+      tablets = locations.groupByRange();
+    } catch (AccumuloException | AccumuloSecurityException | TableNotFoundException e) {
+      log.warn("Could not locate tablets of {}, scans will not be limited per server", tableName,
+          e);
+    }
+
+    Map<String,Deque<Range>> byServer = new TreeMap<>();
+    for (Range range : ranges) {
+      List<TabletId> ids = tablets.get(range);
+      String server = null;
+      if (null != ids && !ids.isEmpty()) {
+        server = locations.getTabletLocation(ids.get(0));
+      }
+      byServer.computeIfAbsent(null == server ? UNKNOWN : server, s -> new ArrayDeque<>())
+          .add(range);
+    }
+
+    Map<Range,String> ordered = new LinkedHashMap<>();
+    List<String> remaining = new ArrayList<>(byServer.keySet());
+    while (!remaining.isEmpty()) {
+      remaining.removeIf(server -> {
+        Deque<Range> queue = byServer.get(server);
+        ordered.put(queue.remove(), server);
+        return queue.isEmpty();
+      });
+    }
+    return ordered;
+  }
+}
@@ -18,7 +18,16 @@
  */
 package org.apache.accumulo.testing.merkle.ingest;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.accumulo.core.client.Accumulo;
 import org.apache.accumulo.core.client.AccumuloClient;
@@ -27,6 +36,8 @@ import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.testing.cli.ClientOpts;
 import org.apache.hadoop.io.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.beust.jcommander.Parameter;
 
@@ -34,6 +45,12 @@ import com.beust.jcommander.Parameter;
  * Generates some random data with a given percent of updates to be deletes.
  */
 public class RandomWorkload {
+  private static final Logger log = LoggerFactory.getLogger(RandomWorkload.class);
+
+  private static final long ROW_SEED = 12345;
+  private static final long CF_SEED = 12346;
+  private static final long CQ_SEED = 12347;
+  private static final long DELETE_SEED = 12348;
 
   public static class RandomWorkloadOpts extends ClientOpts {
 
@@ -58,22 +75,111 @@ public class RandomWorkload {
     @Parameter(names = {"-d", "--deletes"}, required = false,
         description = "Percentage of updates that should be deletes")
     public int deletePercent = 5;
+
+    @Parameter(names = {"-p", "--partitions"}, required = false,
+        description = "Generate the records in this many threads, each writing a disjoint slice of"
+            + " the sequence. The data written is the same for any number of partitions, but"
+            + " differs from the sequential data written when this is 0")
+    public int partitions = 0;
   }
 
   public void run(RandomWorkloadOpts opts) throws Exception {
     try (AccumuloClient client = Accumulo.newClient().from(opts.getClientProps()).build()) {
-      run(client, opts.tableName, opts.numRecords, opts.rowMax, opts.cfMax, opts.cqMax,
-          opts.deletePercent);
+      if (opts.partitions > 0) {
+        runPartitioned(client, opts.tableName, opts.numRecords, opts.rowMax, opts.cfMax, opts.cqMax,
+            opts.deletePercent, opts.partitions);
+      } else {
+        run(client, opts.tableName, opts.numRecords, opts.rowMax, opts.cfMax, opts.cqMax,
+            opts.deletePercent);
+      }
+    }
+  }
+
+  /**
+   * Writes the records from {@code partitions} threads, each with its own writer. Every field of
+   * record {@code i} is derived from {@code i} and a fixed seed, so each thread generates its slice
+   * of the sequence independently and the table contents do not depend on the number of threads.
+   * Deletes use the record number as their timestamp, like puts, so the order in which the threads'
+   * writes arrive does not matter either.
+   */
+  public void runPartitioned(final AccumuloClient client, final String tableName,
+      final long numRecords, int rowMax, int cfMax, int cqMax, int deletePercent, int partitions)
+      throws Exception {
+    if (!client.tableOperations().exists(tableName)) {
+      client.tableOperations().create(tableName);
+    }
+
+    LongAdder written = new LongAdder();
+    ExecutorService svc = Executors.newFixedThreadPool(partitions);
+    List<Future<Void>> futures = new ArrayList<>(partitions);
+    long start = System.nanoTime();
+    for (int p = 0; p < partitions; p++) {
+      final long first = numRecords * p / partitions;
+      final long last = numRecords * (p + 1) / partitions;
+      futures.add(svc.submit(() -> {
+        try (BatchWriter bw = client.createBatchWriter(tableName)) {
+          final Text row = new Text(), cf = new Text(), cq = new Text();
+          final Value value = new Value();
+          for (long i = first; i < last; i++) {
+            row.set(Integer.toString(bounded(ROW_SEED, i, rowMax)));
+            cf.set(Integer.toString(bounded(CF_SEED, i, cfMax)));
+            cq.set(Integer.toString(bounded(CQ_SEED, i, cqMax)));
+
+            Mutation m = new Mutation(row);
+            if (bounded(DELETE_SEED, i, 100) < deletePercent) {
+              m.putDelete(cf, cq, i);
+            } else {
+              value.set(Long.toString(i).getBytes(UTF_8));
+              m.put(cf, cq, i, value);
+            }
+            bw.addMutation(m);
+            written.increment();
+          }
+        }
+        return null;
+      }));
+    }
+    svc.shutdown();
+
+    try {
+      while (!svc.awaitTermination(10, TimeUnit.SECONDS)) {
+        log.info("Wrote {} of {} records, {} records/sec", written.sum(), numRecords,
+            rate(written.sum(), start));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      svc.shutdownNow();
     }
+    log.info("Wrote {} records with {} partitions, {} records/sec", numRecords, partitions,
+        rate(numRecords, start));
+  }
+
+  private static String rate(long records, long startNanos) {
+    double secs = (System.nanoTime() - startNanos) / 1e9;
+    return String.format("%.1f", secs == 0 ? 0 : records / secs);
+  }
+
+  /**
+   * @return a number in [0,bound) for record {@code i}, the finalizer of SplitMix64 applied to the
+   *         record number spread by the golden ratio
+   */
+  static int bounded(long seed, long i, int bound) {
+    long z = seed + (i + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    z = z ^ (z >>> 31);
+    return (int) Long.remainderUnsigned(z, bound);
   }
 
   public void run(final AccumuloClient client, final String tableName, final long numRecords,
       int rowMax, int cfMax, int cqMax, int deletePercent) throws Exception {
 
-    final Random rowRand = new Random(12345);
-    final Random cfRand = new Random(12346);
-    final Random cqRand = new Random(12347);
-    final Random deleteRand = new Random(12348);
+    final Random rowRand = new Random(ROW_SEED);
+    final Random cfRand = new Random(CF_SEED);
+    final Random cqRand = new Random(CQ_SEED);
+    final Random deleteRand = new Random(DELETE_SEED);
     long valueCounter = 0L;
 
     if (!client.tableOperations().exists(tableName)) {
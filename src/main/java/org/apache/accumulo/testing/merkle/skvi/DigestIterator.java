@@ -18,10 +18,7 @@
  */
 package org.apache.accumulo.testing.merkle.skvi;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
 import java.util.Map;
@@ -32,6 +29,7 @@ import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.testing.merkle.KeyValueDigest;
 
 /**
  * {@link SortedKeyValueIterator} which attempts to compute a hash over some range of Key-Value
@@ -40,12 +38,13 @@ import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
  * For the purposes of constructing a Merkle tree, this class will only generate a meaningful result
  * if the (Batch)Scanner will compute a single digest over a Range. If the (Batch)Scanner stops and
  * restarts in the middle of a session, incorrect values will be returned and the merkle tree will
- * be invalid.
+ * be invalid. That does not apply to {@link KeyValueDigest#isMergeable() mergeable} digests, where
+ * the partial digests returned by each session can be merged by the client.
  */
 public class DigestIterator implements SortedKeyValueIterator<Key,Value> {
   public static final String HASH_NAME_KEY = "hash.name";
 
-  private MessageDigest digest;
+  private KeyValueDigest digest;
   private Key topKey;
   private Value topValue;
   private SortedKeyValueIterator<Key,Value> source;
@@ -59,7 +58,7 @@ public class DigestIterator implements SortedKeyValueIterator<Key,Value> {
     }
 
     try {
-      this.digest = MessageDigest.getInstance(hashName);
+      this.digest = KeyValueDigest.getInstance(hashName);
     } catch (NoSuchAlgorithmException e) {
       throw new IOException(e);
     }
@@ -98,8 +97,6 @@ public class DigestIterator implements SortedKeyValueIterator<Key,Value> {
 
   protected void consume() throws IOException {
     digest.reset();
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    DataOutputStream dos = new DataOutputStream(baos);
 
     if (!this.source.hasTop()) {
       this.topKey = null;
@@ -110,15 +107,10 @@ public class DigestIterator implements SortedKeyValueIterator<Key,Value> {
 
     Key lastKeySeen = null;
     while (this.source.hasTop()) {
-      baos.reset();
-
       Key currentKey = this.source.getTopKey();
       lastKeySeen = currentKey;
 
-      currentKey.write(dos);
-      this.source.getTopValue().write(dos);
-
-      digest.update(baos.toByteArray());
+      digest.update(currentKey, this.source.getTopValue());
 
       this.source.next();
     }
@@ -141,7 +133,7 @@ public class DigestIterator implements SortedKeyValueIterator<Key,Value> {
   public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
     DigestIterator copy = new DigestIterator();
     try {
-      copy.digest = MessageDigest.getInstance(digest.getAlgorithm());
+      copy.digest = KeyValueDigest.getInstance(digest.getAlgorithm());
     } catch (NoSuchAlgorithmException e) {
       throw new RuntimeException(e);
     }
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.performance;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+import org.apache.commons.math3.stat.StatUtils;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A summary of a {@link Histogram} as stored in a report. The encoded histogram can be passed to
+ * {@link Histogram#decode(String)} to compute other percentiles.
+ */
+public class Distribution {
+  public final long min;
+  public final long max;
+  public final double average;
+  public final long count;
+  public final long p50;
+  public final long p90;
+  public final long p99;
+  public final long p999;
+  public final String histogram;
+
+  public Distribution(Histogram histogram) {
+    this(histogram.getMin(), histogram.getMax(), histogram.getAverage(), histogram.getCount(),
+        histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90),
+        histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9),
+        histogram.encode());
+  }
+
+  private Distribution(long min, long max, double average, long count, long p50, long p90, long p99,
+      long p999, String histogram) {
+    this.min = min;
+    this.max = max;
+    this.average = average;
+    this.count = count;
+    this.p50 = p50;
+    this.p90 = p90;
+    this.p99 = p99;
+    this.p999 = p999;
+    this.histogram = histogram;
+  }
+
+  /**
+   * Combines the distributions of repeated trials. The percentiles are the medians of the trials'
+   * percentiles, like other results of repeated trials. The min, max, average, count and histogram
+   * cover the values of all trials.
+   */
+  public static Distribution median(List<Distribution> trials) {
+    Preconditions.checkArgument(!trials.isEmpty(), "No distributions given");
+    Histogram merged = new Histogram();
+    for (Distribution trial : trials) {
+      merged.add(Histogram.decode(trial.histogram));
+    }
+    return new Distribution(merged.getMin(), merged.getMax(), merged.getAverage(),
+        merged.getCount(), median(trials, d -> d.p50), median(trials, d -> d.p90),
+        median(trials, d -> d.p99), median(trials, d -> d.p999), merged.encode());
+  }
+
+  private static long median(List<Distribution> trials, ToLongFunction<Distribution> percentile) {
+    return Math.round(
+        StatUtils.percentile(trials.stream().mapToLong(percentile).asDoubleStream().toArray(), 50));
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.performance;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Records a distribution of non-negative values, such as latencies, for reporting percentiles.
+ * Values below 128 are counted exactly and larger values are counted in log-linear buckets that are
+ * each at most 1/64 of their lower bound wide, so reported percentiles are within 1% of the
+ * recorded value. Use with {@link Report.Builder#result(String, Histogram, String, String)}.
+ */
+public class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int EXACT = SUB_BUCKETS * 2;
+  private static final int NUM_BUCKETS = EXACT + (Long.SIZE - SUB_BUCKET_BITS - 2) * SUB_BUCKETS;
+
+  private final long[] counts = new long[NUM_BUCKETS];
+  private long count = 0;
+  private long sum = 0;
+  private long min = Long.MAX_VALUE;
+  private long max = Long.MIN_VALUE;
+
+  public synchronized void record(long value) {
+    Preconditions.checkArgument(value >= 0, "value must be >= 0 : %s", value);
+    counts[index(value)]++;
+    count++;
+    sum += value;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  /**
+   * Adds all values recorded by another histogram to this one.
+   */
+  public void add(Histogram other) {
+    long[] otherCounts;
+    long otherCount, otherSum, otherMin, otherMax;
+    synchronized (other) {
+      otherCounts = other.counts.clone();
+      otherCount = other.count;
+      otherSum = other.sum;
+      otherMin = other.min;
+      otherMax = other.max;
+    }
+    synchronized (this) {
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] += otherCounts[i];
+      }
+      count += otherCount;
+      sum += otherSum;
+      min = Math.min(min, otherMin);
+      max = Math.max(max, otherMax);
+    }
+  }
+
+  static int index(long value) {
+    if (value < EXACT) {
+      return (int) value;
+    }
+    int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+    return EXACT + (shift - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+  }
+
+  /**
+   * @return the middle of the range of values counted by a bucket
+   */
+  static long value(int index) {
+    if (index < EXACT) {
+      return index;
+    }
+    int shift = (index - EXACT) / SUB_BUCKETS + 1;
+    long low = (long) (SUB_BUCKETS + (index - EXACT) % SUB_BUCKETS) << shift;
+    return low + ((1L << shift) - 1) / 2;
+  }
+
+  public synchronized long getCount() {
+    return count;
+  }
+
+  public synchronized long getMin() {
+    return count == 0 ? 0 : min;
+  }
+
+  public synchronized long getMax() {
+    return count == 0 ? 0 : max;
+  }
+
+  public synchronized double getAverage() {
+    return count == 0 ? 0 : (double) sum / count;
+  }
+
+  /**
+   * @param percentile a percentile in the range (0, 100]
+   * @return the value that the given percentage of recorded values are less than or equal to, or 0
+   *         when nothing was recorded
+   */
+  public synchronized long getValueAtPercentile(double percentile) {
+    Preconditions.checkArgument(percentile > 0 && percentile <= 100,
+        "percentile must be in (0, 100] : %s", percentile);
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.max(min, Math.min(max, value(i)));
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Encodes the min, max and sum of the recorded values followed by the non-empty buckets as Base64
+   * of variable length longs. Each bucket is written as the gap from the previous non-empty bucket
+   * and its count. Nothing is written when the histogram is empty.
+   */
+  public synchronized String encode() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    if (count > 0) {
+      writeVLong(out, min);
+      writeVLong(out, max);
+      writeVLong(out, sum);
+    }
+    int previous = -1;
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] > 0) {
+        writeVLong(out, i - previous);
+        writeVLong(out, counts[i]);
+        previous = i;
+      }
+    }
+    return Base64.getEncoder().withoutPadding().encodeToString(out.toByteArray());
+  }
+
+  /**
+   * Recreates a histogram from {@link #encode()}, with the same count, min, max, average and
+   * percentiles.
+   */
+  public static Histogram decode(String encoded) {
+    ByteBuffer in = ByteBuffer.wrap(Base64.getDecoder().decode(encoded));
+    Histogram histogram = new Histogram();
+    if (!in.hasRemaining()) {
+      return histogram;
+    }
+    histogram.min = readVLong(in);
+    histogram.max = readVLong(in);
+    histogram.sum = readVLong(in);
+    int index = -1;
+    while (in.hasRemaining()) {
+      index += (int) readVLong(in);
+      long bucketCount = readVLong(in);
+      histogram.counts[index] += bucketCount;
+      histogram.count += bucketCount;
+    }
+    return histogram;
+  }
+
+  private static void writeVLong(ByteArrayOutputStream out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  private static long readVLong(ByteBuffer in) {
+    long value = 0;
+    for (int shift = 0;; shift += 7) {
+      byte b = in.get();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+  }
+}
@@ -63,6 +63,15 @@ public class Report {
       return this;
     }
 
+    /**
+     * Adds the percentiles of a histogram, of which p50, p99 and p999 are compared across runs.
+     */
+    public Builder result(String id, Histogram histogram, String units, String description) {
+      results
+          .add(new Result(id, new Distribution(histogram), units, description, Purpose.COMPARISON));
+      return this;
+    }
+
     public Builder result(String id, Number data, String units, String description) {
       results.add(new Result(id, data, units, description, Purpose.COMPARISON));
       return this;
@@ -79,6 +88,12 @@ public class Report {
       return this;
     }
 
+    public Builder info(String id, Histogram histogram, String units, String description) {
+      results.add(
+          new Result(id, new Distribution(histogram), units, description, Purpose.INFORMATIONAL));
+      return this;
+    }
+
     public Builder info(String id, long amount, long time, String units, String description) {
       results
           .add(new Result(id, amount / (time / 1000.0), units, description, Purpose.INFORMATIONAL));
@@ -23,6 +23,7 @@ public class Result {
   public final String id;
   public final Number data;
   public final Stats stats;
+  public final Distribution distribution;
   public final String units;
   public final String description;
   public final Purpose purpose;
@@ -42,6 +43,7 @@ public class Result {
     this.id = id;
     this.data = data;
     this.stats = null;
+    this.distribution = null;
     this.units = units;
     this.description = description;
     this.purpose = purpose;
@@ -51,6 +53,18 @@ public class Result {
     this.id = id;
     this.data = null;
     this.stats = stats;
+    this.distribution = null;
+    this.units = units;
+    this.description = description;
+    this.purpose = purpose;
+  }
+
+  public Result(String id, Distribution distribution, String units, String description,
+      Purpose purpose) {
+    this.id = id;
+    this.data = null;
+    this.stats = null;
+    this.distribution = distribution;
     this.units = units;
     this.description = description;
     this.purpose = purpose;
@@ -27,8 +27,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
 
 import org.apache.accumulo.testing.performance.Result;
+import org.apache.commons.math3.stat.StatUtils;
+import org.apache.commons.math3.stat.inference.MannWhitneyUTest;
 
 import com.google.common.collect.Sets;
 import com.google.gson.Gson;
@@ -68,22 +71,66 @@ public class Compare {
     }
   }
 
+  /**
+   * Significance level for flagging a change.
+   */
+  private static final double ALPHA = 0.05;
+  private static final int BOOTSTRAP_SAMPLES = 10_000;
+
   public static void main(String[] args) throws Exception {
-    Map<TestId,Double> oldResults = flatten(readReports(args[0]));
-    Map<TestId,Double> newResults = flatten(readReports(args[1]));
+    Map<TestId,double[]> oldResults = flatten(readReports(args[0]));
+    Map<TestId,double[]> newResults = flatten(readReports(args[1]));
 
     for (TestId testId : Sets.union(oldResults.keySet(), newResults.keySet())) {
-      Double oldResult = oldResults.get(testId);
-      Double newResult = newResults.get(testId);
+      double[] oldSamples = oldResults.get(testId);
+      double[] newSamples = newResults.get(testId);
+      Double oldResult = oldSamples == null ? null : median(oldSamples);
+      Double newResult = newSamples == null ? null : median(newSamples);
 
       if (oldResult == null || newResult == null) {
         System.out.printf("%s %s %.2f %.2f\n", testId.testClass, testId.id, oldResult, newResult);
-      } else {
+      } else if (oldSamples.length < 2 || newSamples.length < 2) {
         double change = (newResult - oldResult) / oldResult;
         System.out.printf("%s %s %.2f %.2f %.2f%s\n", testId.testClass, testId.id, oldResult,
             newResult, change * 100, "%");
+      } else {
+        double change = (newResult - oldResult) / oldResult;
+        double[] ci = changeInterval(oldSamples, newSamples);
+        double p = new MannWhitneyUTest().mannWhitneyUTest(oldSamples, newSamples);
+        // only flag changes that are significant and whose interval excludes no change
+        boolean flag = p < ALPHA && (ci[0] > 0 || ci[1] < 0);
+        System.out.printf("%s %s %.2f %.2f %.2f%s [%.2f%s, %.2f%s] p=%.3f n=%d/%d%s\n",
+            testId.testClass, testId.id, oldResult, newResult, change * 100, "%", ci[0] * 100, "%",
+            ci[1] * 100, "%", p, oldSamples.length, newSamples.length, flag ? " SIGNIFICANT" : "");
+      }
+    }
+  }
+
+  private static double median(double[] samples) {
+    return StatUtils.percentile(samples, 50);
+  }
+
+  /**
+   * Computes a bootstrap confidence interval at {@link #ALPHA} for the relative change of the
+   * median. A fixed seed keeps the output of repeated comparisons identical.
+   */
+  private static double[] changeInterval(double[] oldSamples, double[] newSamples) {
+    Random random = new Random(42);
+    double[] changes = new double[BOOTSTRAP_SAMPLES];
+    double[] oldResample = new double[oldSamples.length];
+    double[] newResample = new double[newSamples.length];
+    for (int i = 0; i < changes.length; i++) {
+      for (int j = 0; j < oldResample.length; j++) {
+        oldResample[j] = oldSamples[random.nextInt(oldSamples.length)];
+      }
+      for (int j = 0; j < newResample.length; j++) {
+        newResample[j] = newSamples[random.nextInt(newSamples.length)];
       }
+      double oldMedian = median(oldResample);
+      changes[i] = (median(newResample) - oldMedian) / oldMedian;
     }
+    return new double[] {StatUtils.percentile(changes, ALPHA / 2 * 100),
+        StatUtils.percentile(changes, (1 - ALPHA / 2) * 100)};
   }
 
   static Collection<ContextualReport> readReports(String file) throws Exception {
@@ -102,13 +149,15 @@ public class Compare {
     }
   }
 
-  private static Map<TestId,Double> flatten(Collection<ContextualReport> results) {
-    HashMap<TestId,Double> flattened = new HashMap<>();
+  private static Map<TestId,double[]> flatten(Collection<ContextualReport> results) {
+    HashMap<TestId,double[]> flattened = new HashMap<>();
 
     for (ContextualReport cr : results) {
       for (Result r : cr.results) {
         if (r.purpose == Result.Purpose.COMPARISON) {
-          flattened.put(new TestId(cr.testClass, r.id), r.data.doubleValue());
+          for (String key : ContextualReport.comparisonValues(r).keySet()) {
+            flattened.put(new TestId(cr.testClass, key), cr.samples(key));
+          }
         }
       }
     }
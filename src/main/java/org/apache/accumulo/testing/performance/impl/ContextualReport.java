@@ -18,9 +18,21 @@
  */
 package org.apache.accumulo.testing.performance.impl;
 
+import static java.util.stream.Collectors.toList;
+
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
+import org.apache.accumulo.testing.performance.Distribution;
 import org.apache.accumulo.testing.performance.Report;
+import org.apache.accumulo.testing.performance.Result;
+import org.apache.commons.math3.stat.StatUtils;
+
+import com.google.common.collect.ImmutableList;
 
 public class ContextualReport extends Report {
 
@@ -28,14 +40,84 @@ public class ContextualReport extends Report {
   public final String accumuloVersion;
   public final String startTime;
   public final String finishTime;
+  public final int warmups;
+  /**
+   * The report of every measured trial. The results of this report are the medians of the numeric
+   * and distribution results across these trials.
+   */
+  public final List<Report> trials;
 
   public ContextualReport(String testClass, String accumuloVersion, Instant startTime,
       Instant finishTime, Report r) {
-    super(r.id, r.description, r.results, r.parameters);
+    this(testClass, accumuloVersion, startTime, finishTime, 0, List.of(r));
+  }
+
+  public ContextualReport(String testClass, String accumuloVersion, Instant startTime,
+      Instant finishTime, int warmups, List<Report> trials) {
+    super(trials.get(0).id, trials.get(0).description, medians(trials), trials.get(0).parameters);
     this.testClass = testClass;
     this.accumuloVersion = accumuloVersion;
     this.startTime = startTime.toString();
     this.finishTime = finishTime.toString();
+    this.warmups = warmups;
+    this.trials = ImmutableList.copyOf(trials);
+  }
+
+  /**
+   * Replaces each numeric or distribution result of the first trial with its median across all
+   * trials, see {@link Distribution#median(List)}. Results missing from a trial or carrying stats
+   * are taken from the first trial as is.
+   */
+  private static List<Result> medians(List<Report> trials) {
+    List<Result> results = new ArrayList<>();
+    for (Result first : trials.get(0).results) {
+      List<Result> matching = new ArrayList<>();
+      for (Report trial : trials) {
+        trial.results.stream().filter(r -> Objects.equals(r.id, first.id)).findFirst()
+            .ifPresent(matching::add);
+      }
+
+      if (trials.size() == 1 || matching.size() != trials.size()) {
+        results.add(first);
+      } else if (matching.stream().allMatch(r -> r.data != null)) {
+        double[] values = matching.stream().mapToDouble(r -> r.data.doubleValue()).toArray();
+        results.add(new Result(first.id, StatUtils.percentile(values, 50), first.units,
+            first.description, first.purpose));
+      } else if (matching.stream().allMatch(r -> r.distribution != null)) {
+        Distribution median =
+            Distribution.median(matching.stream().map(r -> r.distribution).collect(toList()));
+        results.add(new Result(first.id, median, first.units, first.description, first.purpose));
+      } else {
+        results.add(first);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * @return the values of a result that are compared across runs, keyed by the result id for
+   *         numeric results and by the result id and percentile for distributions
+   */
+  static Map<String,Double> comparisonValues(Result result) {
+    Map<String,Double> values = new LinkedHashMap<>();
+    if (result.data != null) {
+      values.put(result.id, result.data.doubleValue());
+    } else if (result.distribution != null) {
+      values.put(result.id + ".p50", (double) result.distribution.p50);
+      values.put(result.id + ".p99", (double) result.distribution.p99);
+      values.put(result.id + ".p999", (double) result.distribution.p999);
+    }
+    return values;
+  }
 
+  /**
+   * @param key a key returned by {@link #comparisonValues(Result)}
+   * @return the value for the key in each trial, or the reported value for files written before
+   *         trials were recorded
+   */
+  double[] samples(String key) {
+    List<Report> reports = trials == null ? List.of(this) : trials;
+    return reports.stream().flatMap(r -> r.results.stream()).map(r -> comparisonValues(r).get(key))
+        .filter(Objects::nonNull).mapToDouble(Double::doubleValue).toArray();
   }
 }
@@ -100,7 +100,8 @@ public class Csv {
 
         for (Result result : report.results) {
           if (result.purpose == Result.Purpose.COMPARISON) {
-            row.put(id + "." + result.id, result.data.doubleValue());
+            ContextualReport.comparisonValues(result)
+                .forEach((key, value) -> row.put(id + "." + key, value));
           }
         }
       }
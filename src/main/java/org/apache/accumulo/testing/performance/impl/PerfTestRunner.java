@@ -25,42 +25,73 @@ import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.accumulo.core.client.Accumulo;
 import org.apache.accumulo.core.client.AccumuloClient;
 import org.apache.accumulo.testing.performance.Environment;
 import org.apache.accumulo.testing.performance.PerformanceTest;
 import org.apache.accumulo.testing.performance.Report;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Preconditions;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
+/**
+ * Runs a performance test and writes its report. Optional fifth and sixth arguments set the number
+ * of warmup trials, whose reports are discarded, and of measured trials, whose reports are all
+ * kept. When a test runs more than once, every table created since the first trial started is
+ * deleted between trials. Tables are left in place after the last trial.
+ */
 public class PerfTestRunner {
+  private static final Logger log = LoggerFactory.getLogger(PerfTestRunner.class);
+
   public static void main(String[] args) throws Exception {
     String clientProps = args[0];
     String className = args[1];
     String accumuloVersion = args[2];
     String outputDir = args[3];
+    int warmups = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+    int trials = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+
+    Preconditions.checkArgument(warmups >= 0, "warmups must be >= 0");
+    Preconditions.checkArgument(trials > 0, "trials must be > 0");
 
     PerformanceTest perfTest = Class.forName(className).asSubclass(PerformanceTest.class)
         .getDeclaredConstructor().newInstance();
 
-    AccumuloClient client = Accumulo.newClient().from(clientProps).build();
+    Set<String> initialTables;
+    try (AccumuloClient client = Accumulo.newClient().from(clientProps).build()) {
+      initialTables = new TreeSet<>(client.tableOperations().list());
+    }
 
     Instant start = Instant.now();
 
-    Report result = perfTest.runTest(new Environment() {
-      @Override
-      public AccumuloClient getClient() {
-        return client;
+    List<Report> results = new ArrayList<>();
+    for (int i = 0; i < warmups + trials; i++) {
+      boolean warmup = i < warmups;
+      log.info("Running {} {} of {}", warmup ? "warmup" : "trial", warmup ? i + 1 : i - warmups + 1,
+          warmup ? warmups : trials);
+      if (i > 0) {
+        deleteNewTables(clientProps, initialTables);
       }
-    });
+      Report result = runTrial(perfTest, clientProps);
+      if (!warmup) {
+        results.add(result);
+      }
+    }
 
     Instant stop = Instant.now();
 
     Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
-    ContextualReport report = new ContextualReport(className, accumuloVersion, start, stop, result);
+    ContextualReport report =
+        new ContextualReport(className, accumuloVersion, start, stop, warmups, results);
 
     DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
     String time = Instant.now().atZone(ZoneId.systemDefault()).format(formatter);
@@ -71,4 +102,33 @@ public class PerfTestRunner {
       gson.toJson(report, writer);
     }
   }
+
+  /**
+   * Runs one trial with its own client, since some tests close the client they are given.
+   */
+  private static Report runTrial(PerformanceTest perfTest, String clientProps) throws Exception {
+    try (AccumuloClient client = Accumulo.newClient().from(clientProps).build()) {
+      return perfTest.runTest(new Environment() {
+        @Override
+        public AccumuloClient getClient() {
+          return client;
+        }
+      });
+    }
+  }
+
+  /**
+   * Deletes the tables a previous trial created, so tests with fixed table names can run again.
+   */
+  private static void deleteNewTables(String clientProps, Set<String> initialTables)
+      throws Exception {
+    try (AccumuloClient client = Accumulo.newClient().from(clientProps).build()) {
+      for (String table : client.tableOperations().list()) {
+        if (!initialTables.contains(table)) {
+          log.info("Deleting table {} created by the previous trial", table);
+          client.tableOperations().delete(table);
+        }
+      }
+    }
+  }
 }
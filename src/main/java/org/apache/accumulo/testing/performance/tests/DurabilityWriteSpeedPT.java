@@ -28,6 +28,7 @@ import org.apache.accumulo.core.client.admin.NewTableConfiguration;
 import org.apache.accumulo.core.client.admin.TableOperations;
 import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.testing.performance.Environment;
+import org.apache.accumulo.testing.performance.Histogram;
 import org.apache.accumulo.testing.performance.PerformanceTest;
 import org.apache.accumulo.testing.performance.Report;
 import org.apache.accumulo.testing.performance.SystemConfiguration;
@@ -56,10 +57,13 @@ public class DurabilityWriteSpeedPT implements PerformanceTest {
       for (String durability : new String[] {"sync", "flush", "log", "none"}) {
         String tableName = durability + "T";
         createTable(client, tableName, durability);
-        long median = writeSome(reportBuilder, client, tableName, N, durability);
+        Histogram flushLatency = new Histogram();
+        long median = writeSome(reportBuilder, client, tableName, N, durability, flushLatency);
         tableOps.delete(tableName);
         reportBuilder.result(durability + " Median", median, TimeUnit.MILLISECONDS.toString(),
             "Median time result for " + durability);
+        reportBuilder.result(durability + " Flush", flushLatency, TimeUnit.MICROSECONDS.toString(),
+            "Latency distribution of batch writer flushes for " + durability);
       }
     }
     reportBuilder.parameter("rows", N, "Number of random rows written.");
@@ -67,7 +71,7 @@ public class DurabilityWriteSpeedPT implements PerformanceTest {
   }
 
   private long writeSome(Report.Builder reportBuilder, AccumuloClient c, String table, long count,
-      String durabilityLevel) throws Exception {
+      String durabilityLevel, Histogram flushLatency) throws Exception {
     int iterations = 5;
     long[] attempts = new long[iterations];
     for (int attempt = 0; attempt < iterations; attempt++) {
@@ -78,7 +82,9 @@ public class DurabilityWriteSpeedPT implements PerformanceTest {
           m.put("", "", "");
           bw.addMutation(m);
           if (i % (Math.max(1, count / 100)) == 0) {
+            long t1 = System.nanoTime();
             bw.flush();
+            flushLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - t1));
           }
         }
       }
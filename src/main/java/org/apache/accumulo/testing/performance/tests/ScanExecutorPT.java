@@ -18,6 +18,7 @@
  */
 package org.apache.accumulo.testing.performance.tests;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LongSummaryStatistics;
@@ -37,6 +38,7 @@ import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.testing.performance.Environment;
+import org.apache.accumulo.testing.performance.Histogram;
 import org.apache.accumulo.testing.performance.PerformanceTest;
 import org.apache.accumulo.testing.performance.Report;
 import org.apache.accumulo.testing.performance.SystemConfiguration;
@@ -109,8 +111,8 @@ public class ScanExecutorPT implements PerformanceTest {
 
     TestExecutor<Long> longScans = startLongScans(client, tableName, stop);
 
-    LongSummaryStatistics shortStats1 = runShortScans(client, tableName, 50000);
-    LongSummaryStatistics shortStats2 = runShortScans(client, tableName, 100000);
+    long[] shortTimes1 = runShortScans(client, tableName, 50000);
+    long[] shortTimes2 = runShortScans(client, tableName, 100000);
 
     stop.set(true);
     long t4 = System.currentTimeMillis();
@@ -123,6 +125,15 @@ public class ScanExecutorPT implements PerformanceTest {
 
     final String ms = TimeUnit.MILLISECONDS.toString();
 
+    // round each scan to the nearest millisecond, truncating would lower the average by about half
+    // a millisecond
+    LongSummaryStatistics shortStats1 =
+        Arrays.stream(shortTimes1).map(t -> Math.round(t / 1e6)).summaryStatistics();
+    LongSummaryStatistics shortStats2 =
+        Arrays.stream(shortTimes2).map(t -> Math.round(t / 1e6)).summaryStatistics();
+    Histogram shortLatency = new Histogram();
+    Arrays.stream(shortTimes2).map(TimeUnit.NANOSECONDS::toMicros).forEach(shortLatency::record);
+
     builder.id("sexec").description(TEST_DESC);
     builder.info("write_rate", NUM_ROWS * NUM_FAMS * NUM_QUALS, t2 - t1, "entries/sec",
         "Data write rate");
@@ -130,8 +141,10 @@ public class ScanExecutorPT implements PerformanceTest {
         "Compact rate");
     builder.info("short_times1", shortStats1, ms, "Duration of each short scan from first run.");
     builder.info("short_times2", shortStats2, ms, "Duration of each short scan from second run.");
-    builder.result("short_average", shortStats2.getAverage(), ms,
+    builder.result("short_average", Arrays.stream(shortTimes2).average().orElse(0) / 1e6, ms,
         "Average duration of short scans from second run.");
+    builder.result("short_latency", shortLatency, TimeUnit.MICROSECONDS.toString(),
+        "Latency distribution of short scans from second run.");
     builder.info("long_counts", longStats, "entries read",
         "Entries read by each long scan threads");
     builder.info("long_rate", longStats.getSum(), (t4 - t3), "entries/sec",
@@ -151,7 +164,7 @@ public class ScanExecutorPT implements PerformanceTest {
 
   private static long scan(String tableName, AccumuloClient c, byte[] row, byte[] fam,
       Map<String,String> hints) throws TableNotFoundException {
-    long t1 = System.currentTimeMillis();
+    long t1 = System.nanoTime();
     int count = 0;
     try (Scanner scanner = c.createScanner(tableName, Authorizations.EMPTY)) {
       scanner.setExecutionHints(hints);
@@ -161,7 +174,7 @@ public class ScanExecutorPT implements PerformanceTest {
       }
     }
 
-    return System.currentTimeMillis() - t1;
+    return System.nanoTime() - t1;
   }
 
   private long scan(String tableName, AccumuloClient c, AtomicBoolean stop,
@@ -181,8 +194,7 @@ public class ScanExecutorPT implements PerformanceTest {
     return count;
   }
 
-  private LongSummaryStatistics runShortScans(AccumuloClient client, String tableName,
-      int numScans) {
+  private long[] runShortScans(AccumuloClient client, String tableName, int numScans) {
 
     Map<String,String> execHints = Map.of("scan_type", "dedicated");
     Map<String,String> prioHints = Map.of("scan_type", "short");
@@ -199,7 +211,7 @@ public class ScanExecutorPT implements PerformanceTest {
         executor.submit(() -> scan(tableName, client, row, fam, hints));
       }
 
-      return executor.stream().mapToLong(l -> l).summaryStatistics();
+      return executor.stream().mapToLong(l -> l).toArray();
     }
   }
 
@@ -18,6 +18,7 @@
  */
 package org.apache.accumulo.testing.performance.tests;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LongSummaryStatistics;
@@ -38,6 +39,7 @@ import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.testing.performance.Environment;
+import org.apache.accumulo.testing.performance.Histogram;
 import org.apache.accumulo.testing.performance.PerformanceTest;
 import org.apache.accumulo.testing.performance.Report;
 import org.apache.accumulo.testing.performance.SystemConfiguration;
@@ -111,8 +113,8 @@ public class YieldingScanExecutorPT implements PerformanceTest {
 
     TestExecutor<Long> longScans = startLongScans(env, tableName, stop);
 
-    LongSummaryStatistics shortStats1 = runShortScans(env, tableName, 50000);
-    LongSummaryStatistics shortStats2 = runShortScans(env, tableName, 100000);
+    long[] shortTimes1 = runShortScans(env, tableName, 50000);
+    long[] shortTimes2 = runShortScans(env, tableName, 100000);
 
     stop.set(true);
     long t4 = System.currentTimeMillis();
@@ -125,6 +127,13 @@ public class YieldingScanExecutorPT implements PerformanceTest {
 
     final String ms = TimeUnit.MILLISECONDS.toString();
 
+    LongSummaryStatistics shortStats1 =
+        Arrays.stream(shortTimes1).map(t -> Math.round(t / 1e6)).summaryStatistics();
+    LongSummaryStatistics shortStats2 =
+        Arrays.stream(shortTimes2).map(t -> Math.round(t / 1e6)).summaryStatistics();
+    Histogram shortLatency = new Histogram();
+    Arrays.stream(shortTimes2).map(TimeUnit.NANOSECONDS::toMicros).forEach(shortLatency::record);
+
     builder.id("yfexec").description(TEST_DESC);
     builder.info("write", NUM_ROWS * NUM_FAMS * NUM_QUALS, t2 - t1, "entries/sec",
         "Data write rate");
@@ -132,8 +141,10 @@ public class YieldingScanExecutorPT implements PerformanceTest {
         "Compact rate");
     builder.info("short_times1", shortStats1, ms, "Duration of each short scan from first run.");
     builder.info("short_times2", shortStats2, ms, "Duration of each short scan from second run.");
-    builder.result("short", shortStats2.getAverage(), ms,
+    builder.result("short", Arrays.stream(shortTimes2).average().orElse(0) / 1e6, ms,
         "Average duration of short scans from second run.");
+    builder.result("short_latency", shortLatency, TimeUnit.MICROSECONDS.toString(),
+        "Latency distribution of short scans from second run.");
     builder.info("long_counts", longStats, "entry count",
         "Entries read by each of the filter threads");
     builder.info("long", longStats.getSum(), (t4 - t3), "entries/sec",
@@ -163,7 +174,7 @@ public class YieldingScanExecutorPT implements PerformanceTest {
 
   private static long scan(String tableName, AccumuloClient c, byte[] row, byte[] fam)
       throws TableNotFoundException {
-    long t1 = System.currentTimeMillis();
+    long t1 = System.nanoTime();
     int count = 0;
     try (Scanner scanner = c.createScanner(tableName, Authorizations.EMPTY)) {
       scanner.setRange(Range.exact(new Text(row), new Text(fam)));
@@ -172,7 +183,7 @@ public class YieldingScanExecutorPT implements PerformanceTest {
       }
     }
 
-    return System.currentTimeMillis() - t1;
+    return System.nanoTime() - t1;
   }
 
   private long scan(String tableName, AccumuloClient c, AtomicBoolean stop,
@@ -199,7 +210,7 @@ public class YieldingScanExecutorPT implements PerformanceTest {
     return count;
   }
 
-  private LongSummaryStatistics runShortScans(Environment env, String tableName, int numScans) {
+  private long[] runShortScans(Environment env, String tableName, int numScans) {
 
     try (TestExecutor<Long> executor = new TestExecutor<>(NUM_SHORT_SCANS_THREADS)) {
       Random rand = new Random();
@@ -210,7 +221,7 @@ public class YieldingScanExecutorPT implements PerformanceTest {
         executor.submit(() -> scan(tableName, env.getClient(), row, fam));
       }
 
-      return executor.stream().mapToLong(l -> l).summaryStatistics();
+      return executor.stream().mapToLong(l -> l).toArray();
     }
   }
 
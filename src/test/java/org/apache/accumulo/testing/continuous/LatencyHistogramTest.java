@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.continuous;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBuckets() {
+    for (long v = 0; v < 16; v++) {
+      assertEquals(v, LatencyHistogram.lowerBound(LatencyHistogram.bucket(v)));
+    }
+
+    long[] values = {16, 17, 31, 32, 33, 1000, 65_535, 65_536, 1_000_000_007L, Long.MAX_VALUE};
+    for (long v : values) {
+      int bucket = LatencyHistogram.bucket(v);
+      long lower = LatencyHistogram.lowerBound(bucket);
+      assertTrue(lower <= v, "lower bound " + lower + " above " + v);
+      assertTrue(v - lower <= lower / 16, "bucket of " + v + " starts too low at " + lower);
+      assertEquals(bucket, LatencyHistogram.bucket(lower));
+    }
+
+    // every bucket starts right after the previous one ends
+    for (int b = 1; b <= LatencyHistogram.bucket(Long.MAX_VALUE); b++) {
+      long lower = LatencyHistogram.lowerBound(b);
+      assertEquals(b - 1, LatencyHistogram.bucket(lower - 1));
+      assertEquals(b, LatencyHistogram.bucket(lower));
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(-1, histogram.getPercentile(.5));
+
+    for (long v = 1; v <= 10_000; v++) {
+      histogram.record(v);
+    }
+    assertEquals(10_000, histogram.getCount());
+    assertWithin(5_000, histogram.getPercentile(.50));
+    assertWithin(9_900, histogram.getPercentile(.99));
+    assertWithin(9_990, histogram.getPercentile(.999));
+    assertEquals(1, histogram.getPercentile(0));
+
+    histogram.clear();
+    assertEquals(0, histogram.getCount());
+    assertEquals(-1, histogram.getPercentile(.5));
+  }
+
+  @Test
+  public void testAddAndEncode() {
+    LatencyHistogram h1 = new LatencyHistogram();
+    LatencyHistogram h2 = new LatencyHistogram();
+    for (long v = 0; v < 1000; v++) {
+      h1.record(v);
+      h2.record(v * 1000);
+    }
+    h1.add(h2);
+    assertEquals(2000, h1.getCount());
+
+    LatencyHistogram decoded = LatencyHistogram.decode(h1.encode());
+    assertEquals(h1.encode(), decoded.encode());
+    for (double p : new double[] {.01, .5, .9, .99, .999, 1}) {
+      assertEquals(h1.getPercentile(p), decoded.getPercentile(p));
+    }
+
+    assertEquals("-", new LatencyHistogram().encode());
+    assertEquals(0, LatencyHistogram.decode("-").getCount());
+    assertThrows(IllegalArgumentException.class, () -> LatencyHistogram.decode("100000:1"));
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(actual <= expected && expected - actual <= expected / 16,
+        "expected about " + expected + " but was " + actual);
+  }
+}
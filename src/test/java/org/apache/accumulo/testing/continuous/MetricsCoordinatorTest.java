@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.continuous;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.common.net.HostAndPort;
+
+public class MetricsCoordinatorTest {
+
+  private static final String HEADER =
+      "time,operation,clients,ops_per_sec,entries_per_sec,p50_ms,p99_ms,p999_ms";
+
+  @TempDir
+  Path tempDir;
+
+  private static String histogram(long... micros) {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long m : micros) {
+      histogram.record(m);
+    }
+    return histogram.encode();
+  }
+
+  private static String ms(long micros) {
+    return String.format("%.3f",
+        LatencyHistogram.lowerBound(LatencyHistogram.bucket(micros)) / 1000.0);
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+    Path output = tempDir.resolve("metrics.csv");
+    MetricsCoordinator coordinator = new MetricsCoordinator(1000, output);
+
+    coordinator.add("c1 scan 0 1000 2 20 " + histogram(1000, 3000));
+    coordinator.add("c2 scan 0 1000 2 40 " + histogram(2000, 100_000));
+    coordinator.add("c1 ingest 0 1000 0 0 -");
+    coordinator.add("c1 scan 1000 1000 1 5 " + histogram(5000));
+
+    // only the first interval has ended 2 intervals before this time
+    coordinator.report(2500);
+
+    List<String> lines = Files.readAllLines(output);
+    assertEquals(List.of(HEADER, "1970-01-01T00:00:00Z,ingest,1,0.00,0.00,-,-,-",
+        "1970-01-01T00:00:00Z,scan,2,4.00,60.00," + ms(2000) + "," + ms(100_000) + ","
+            + ms(100_000)),
+        lines);
+
+    // metrics for an interval that was already reported are dropped
+    coordinator.add("c3 scan 0 1000 7 70 " + histogram(1));
+    coordinator.report(10_000);
+    lines = Files.readAllLines(output);
+    assertEquals(4, lines.size());
+    assertEquals(
+        "1970-01-01T00:00:01Z,scan,1,1.00,5.00," + ms(5000) + "," + ms(5000) + "," + ms(5000),
+        lines.get(3));
+  }
+
+  @Test
+  public void testBadLines() {
+    MetricsCoordinator coordinator = new MetricsCoordinator(1000, null);
+    assertThrows(IllegalArgumentException.class, () -> coordinator.add("c1 scan 0 1000 1 1"));
+    assertThrows(IllegalArgumentException.class,
+        () -> coordinator.add("c1 scan 0 2000 1 1 " + histogram(1)));
+  }
+
+  @Test
+  public void testClientPublishes() throws Exception {
+    Path output = tempDir.resolve("published.csv");
+    MetricsCoordinator coordinator = new MetricsCoordinator(1000, output);
+
+    try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      Thread thread = new Thread(() -> {
+        try {
+          coordinator.run(server);
+        } catch (IOException e) {
+          // thrown when the server socket is closed
+        }
+      });
+      thread.setDaemon(true);
+      thread.start();
+
+      ClientMetrics metrics = new ClientMetrics("walk",
+          HostAndPort.fromParts(server.getInetAddress().getHostAddress(), server.getLocalPort()),
+          1000);
+      metrics.record(10, Duration.ofMillis(5));
+      metrics.record(10, Duration.ofMillis(5));
+      metrics.recordTotal(30, Duration.ofMillis(5));
+      metrics.publish();
+
+      long deadline = System.currentTimeMillis() + 30_000;
+      while (!Files.exists(output) && System.currentTimeMillis() < deadline) {
+        coordinator.report(Long.MAX_VALUE);
+        Thread.sleep(50);
+      }
+      assertTrue(Files.exists(output), "coordinator never received the published metrics");
+    }
+
+    List<String> lines = Files.readAllLines(output);
+    assertEquals(2, lines.size());
+    String[] row = lines.get(1).split(",");
+    assertEquals("walk", row[1]);
+    assertEquals("1", row[2]);
+    assertEquals("3.00", row[3]);
+    assertEquals("50.00", row[4]);
+    assertEquals(ms(5000), row[5]);
+    assertFalse(row[0].isEmpty());
+  }
+}
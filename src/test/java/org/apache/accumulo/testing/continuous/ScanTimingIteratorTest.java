@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.continuous;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iteratorsImpl.system.SortedMapIterator;
+import org.junit.jupiter.api.Test;
+
+public class ScanTimingIteratorTest {
+
+  private static List<Entry<Key,Value>> scan(TreeMap<Key,Value> data, Range range)
+      throws Exception {
+    ScanTimingIterator iter = new ScanTimingIterator();
+    iter.init(new SortedMapIterator(data), Map.of(), null);
+    iter.seek(range, List.of(), false);
+
+    List<Entry<Key,Value>> entries = new ArrayList<>();
+    while (iter.hasTop()) {
+      Key key = iter.getTopKey();
+      assertFalse(range.beforeStartKey(key) || range.afterEndKey(key), key + " not in " + range);
+      if (!entries.isEmpty()) {
+        assertTrue(entries.get(entries.size() - 1).getKey().compareTo(key) < 0, "out of order");
+      }
+      entries.add(Map.entry(new Key(key), new Value(iter.getTopValue())));
+      iter.next();
+    }
+    return entries;
+  }
+
+  private static long timingEntries(List<Entry<Key,Value>> entries) {
+    return entries.stream().filter(e -> ScanTimingIterator.isTimingEntry(e.getValue())).count();
+  }
+
+  private static TreeMap<Key,Value> data(long... timestamps) {
+    TreeMap<Key,Value> data = new TreeMap<>();
+    for (String row : new String[] {"a", "b", "c"}) {
+      for (long ts : timestamps) {
+        data.put(new Key(row, "f", "q", ts), new Value(row + ts));
+      }
+    }
+    return data;
+  }
+
+  @Test
+  public void testTimingEntryFollowsData() throws Exception {
+    for (long ts : new long[] {5, 1, 0, -3, Long.MIN_VALUE}) {
+      List<Entry<Key,Value>> entries = scan(data(ts), new Range("b"));
+      assertEquals(2, entries.size(), "timestamp " + ts);
+      assertFalse(ScanTimingIterator.isTimingEntry(entries.get(0).getValue()));
+      assertTrue(ScanTimingIterator.isTimingEntry(entries.get(1).getValue()));
+      assertTrue(ScanTimingIterator.getServerNanos(entries.get(1).getValue()) >= 0);
+      assertTrue(entries.get(1).getKey().getTimestamp() >= 0, "negative timestamp for " + ts);
+
+      assertEquals(4, scan(data(ts), new Range()).size());
+    }
+  }
+
+  @Test
+  public void testRangeEnds() throws Exception {
+    TreeMap<Key,Value> data = data(7);
+    Key last = new Key("b", "f", "q", 7);
+
+    // no key in the range is left after the last entry, so nothing is added
+    List<Entry<Key,Value>> entries = scan(data, new Range(new Key("a"), true, last, true));
+    assertEquals(2, entries.size());
+    assertEquals(0, timingEntries(entries));
+
+    entries = scan(data, new Range(new Key("a"), true, new Key("b", "f", "q", 6), false));
+    assertEquals(2, entries.size());
+    assertEquals(0, timingEntries(entries));
+
+    // the entry is clamped to an inclusive end
+    data = data(0);
+    Key end = new Key("b", "f", "q", -5);
+    entries = scan(data, new Range(new Key("b"), true, end, true));
+    assertEquals(2, entries.size());
+    assertEquals(end, entries.get(1).getKey());
+    assertTrue(ScanTimingIterator.isTimingEntry(entries.get(1).getValue()));
+  }
+
+  @Test
+  public void testEmptyRange() throws Exception {
+    List<Entry<Key,Value>> entries = scan(data(7), new Range("bb"));
+    assertEquals(1, entries.size());
+    assertEquals(new Key("bb"), entries.get(0).getKey());
+    assertTrue(ScanTimingIterator.isTimingEntry(entries.get(0).getValue()));
+
+    assertEquals(0, scan(data(7), new Range(new Key("bb"), false, new Key("bc"), false)).size());
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class BucketDistributionTest {
+
+  private static final int BUCKETS = 1000;
+
+  /**
+   * Checks that the buckets chosen by next agree with below and that below is a distribution.
+   */
+  private static void checkSamples(BucketDistribution distribution) {
+    assertEquals(0, distribution.below(0));
+    assertEquals(1, distribution.below(BUCKETS), 1e-9);
+    for (int bucket = 1; bucket <= BUCKETS; bucket++) {
+      assertTrue(distribution.below(bucket) >= distribution.below(bucket - 1));
+    }
+
+    Random rand = new Random(42);
+    int samples = 200_000;
+    int[] counts = new int[BUCKETS];
+    for (int i = 0; i < samples; i++) {
+      int bucket = distribution.next(rand);
+      assertTrue(bucket >= 0 && bucket < BUCKETS, "bucket " + bucket);
+      counts[bucket]++;
+    }
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      assertEquals(distribution.below(bucket), (double) seen / samples, 0.01);
+      seen += counts[bucket];
+    }
+  }
+
+  private static void checkSplits(int[] splits, int tablets) {
+    assertTrue(splits.length <= tablets - 1);
+    for (int i = 0; i < splits.length; i++) {
+      assertTrue(splits[i] > 0 && splits[i] < BUCKETS);
+      assertTrue(i == 0 || splits[i] > splits[i - 1]);
+    }
+  }
+
+  @Test
+  public void testUniform() {
+    BucketDistribution distribution = BucketDistribution.uniform(BUCKETS);
+    assertEquals(0.25, distribution.below(250));
+    checkSamples(distribution);
+    assertArrayEquals(new int[] {250, 500, 750}, distribution.splits(4));
+    assertArrayEquals(new int[0], distribution.splits(1));
+  }
+
+  @Test
+  public void testZipf() {
+    BucketDistribution distribution = BucketDistribution.zipf(BUCKETS, 1.0);
+    double harmonic = 0;
+    for (int n = 1; n <= BUCKETS; n++) {
+      harmonic += 1.0 / n;
+    }
+    assertEquals(1 / harmonic, distribution.below(1), 1e-9);
+    assertEquals(1.5 / harmonic, distribution.below(2), 1e-9);
+    checkSamples(distribution);
+
+    // bucket 0 gets about 13% of references, more than one of ten tablets' share, so it is alone
+    // in the first tablet and the next tablet starts at bucket 1
+    int[] splits = distribution.splits(10);
+    checkSplits(splits, 10);
+    assertEquals(1, splits[0]);
+
+    // with more tablets than bucket 0 can fill, some tablets are lost
+    assertTrue(distribution.splits(100).length < 99);
+  }
+
+  @Test
+  public void testHotspot() {
+    BucketDistribution distribution = BucketDistribution.hotspot(BUCKETS, 0.01, 0.9);
+    assertEquals(0.9, distribution.below(10), 1e-9);
+    assertEquals(0.09, distribution.below(1), 1e-9);
+    assertEquals(0.9 + 0.1 / 990, distribution.below(11), 1e-9);
+    checkSamples(distribution);
+
+    // each hot bucket gets 9% of references, just under a tablet's share, so the first tablet
+    // holds two of them, the next eight hold one each and the cold buckets share the last tablet
+    int[] splits = distribution.splits(10);
+    checkSplits(splits, 10);
+    assertArrayEquals(new int[] {2, 3, 4, 5, 6, 7, 8, 9, 10}, splits);
+
+    assertThrows(IllegalArgumentException.class, () -> BucketDistribution.hotspot(BUCKETS, 0, 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> BucketDistribution.hotspot(BUCKETS, 0.5, 1.5));
+  }
+}
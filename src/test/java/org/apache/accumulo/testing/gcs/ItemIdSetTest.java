@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class ItemIdSetTest {
+
+  @Test
+  public void testAddAndContains() {
+    ItemIdSet set = new ItemIdSet();
+    assertEquals(0, set.size());
+    assertFalse(set.contains(1, 2, 3));
+
+    set.add(1, 2, 3);
+    set.add(1, 2, 4, 7);
+    set.add(1, 2, 4, 9);
+    assertEquals(2, set.size());
+    assertTrue(set.contains(1, 2, 3));
+    assertTrue(set.contains(1, 2, 4));
+    assertFalse(set.contains(2, 1, 3));
+    assertFalse(set.contains(1, 3, 2));
+
+    // ids that are zero or negative are ordinary values
+    set.add(0, 0, 0);
+    set.add(-1, Long.MIN_VALUE, Long.MAX_VALUE);
+    assertTrue(set.contains(0, 0, 0));
+    assertTrue(set.contains(-1, Long.MIN_VALUE, Long.MAX_VALUE));
+    assertEquals(4, set.size());
+
+    Map<List<Long>,Integer> visited = new HashMap<>();
+    set.forEach((clientId, groupId, itemId, value) -> assertEquals(null,
+        visited.put(List.of(clientId, groupId, itemId), value)));
+    assertEquals(Map.of(List.of(1L, 2L, 3L), 0, List.of(1L, 2L, 4L), 9, List.of(0L, 0L, 0L), 0,
+        List.of(-1L, Long.MIN_VALUE, Long.MAX_VALUE), 0), visited);
+  }
+
+  @Test
+  public void testMatchesHashMap() {
+    Random rand = new Random(42);
+    ItemIdSet set = new ItemIdSet();
+    Map<List<Long>,Integer> expected = new HashMap<>();
+
+    // few distinct clients and groups with consecutive items, like the test data
+    for (int i = 0; i < 100_000; i++) {
+      long clientId = rand.nextInt(4);
+      long groupId = rand.nextInt(100);
+      long itemId = rand.nextInt(1000);
+      int value = rand.nextInt();
+      set.add(clientId, groupId, itemId, value);
+      expected.put(List.of(clientId, groupId, itemId), value);
+    }
+
+    assertEquals(expected.size(), set.size());
+    Map<List<Long>,Integer> actual = new HashMap<>();
+    set.forEach((clientId, groupId, itemId, value) -> actual.put(List.of(clientId, groupId, itemId),
+        value));
+    assertEquals(expected, actual);
+
+    for (int i = 0; i < 10_000; i++) {
+      long clientId = rand.nextInt(5);
+      long groupId = rand.nextInt(110);
+      long itemId = rand.nextInt(1100);
+      assertEquals(expected.containsKey(List.of(clientId, groupId, itemId)),
+          set.contains(clientId, groupId, itemId));
+    }
+  }
+}
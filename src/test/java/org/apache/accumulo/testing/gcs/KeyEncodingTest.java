@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.junit.jupiter.api.Test;
+
+public class KeyEncodingTest {
+
+  private static final long[] LONGS =
+      {0, 1, 15, 16, 255, 256, 0xffffffffL, 1L << 32, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+
+  private static final int[] INTS =
+      {0, 1, 15, 16, 255, 256, 65535, 65536, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+
+  private static byte[] concat(byte[] a, byte[] b) {
+    byte[] result = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, result, a.length, b.length);
+    return result;
+  }
+
+  @Test
+  public void testRoundTrip() {
+    for (KeyEncoding encoding : KeyEncoding.values()) {
+      for (long id : LONGS) {
+        ArrayByteSequence row = new ArrayByteSequence(encoding.itemRow("I:", id, id ^ 7, ~id));
+        assertEquals(KeyEncoding.PREFIX_LENGTH + encoding.itemKeyLength(), row.length());
+        assertEquals("I:", new String(row.subSequence(0, 2).toArray(), UTF_8));
+        assertEquals(KeyEncoding.hash(id, id ^ 7),
+            encoding.readInt(row, KeyEncoding.PREFIX_LENGTH));
+        assertEquals(id, encoding.readLong(row, encoding.clientOffset()));
+        assertEquals(id ^ 7, encoding.readLong(row, encoding.groupOffset()));
+        assertEquals(~id, encoding.readLong(row, encoding.itemOffset()));
+
+        byte[] groupRow = encoding.groupRow("I:", id, id ^ 7);
+        assertEquals(KeyEncoding.PREFIX_LENGTH + encoding.groupKeyLength(), groupRow.length);
+        assertArrayEquals(groupRow, Arrays.copyOf(row.toArray(), groupRow.length));
+
+        ArrayByteSequence ids = new ArrayByteSequence(encoding.ids(id, ~id, 42));
+        assertEquals(encoding.idsLength(), ids.length());
+        assertEquals(id, encoding.readLong(ids, encoding.idOffset(0)));
+        assertEquals(~id, encoding.readLong(ids, encoding.idOffset(1)));
+        assertEquals(42, encoding.readLong(ids, encoding.idOffset(2)));
+
+        assertEquals(id, encoding.readLong(new ArrayByteSequence(encoding.id(id)), 0));
+      }
+
+      for (int value : INTS) {
+        assertEquals(value, encoding.readInt(new ArrayByteSequence(encoding.bucket(value)), 0));
+        assertEquals(value, encoding.readInt(new ArrayByteSequence(encoding.intRow("B:", value)),
+            KeyEncoding.PREFIX_LENGTH));
+      }
+    }
+
+    assertEquals("I:0000002a", new String(KeyEncoding.HEX.intRow("I:", 42), UTF_8));
+    assertEquals(KeyEncoding.HEX, KeyEncoding.parse(null));
+    assertEquals(KeyEncoding.BINARY, KeyEncoding.parse(" binary "));
+  }
+
+  @Test
+  public void testOrder() {
+    Random rand = new Random(42);
+    for (KeyEncoding encoding : KeyEncoding.values()) {
+      for (int i = 0; i < 10_000; i++) {
+        // ids and buckets are never negative, ints compare as unsigned like hashes do
+        long id1 = (rand.nextLong() >>> 1) >>> rand.nextInt(63);
+        long id2 = (rand.nextLong() >>> 1) >>> rand.nextInt(63);
+        assertEquals(Integer.signum(Long.compare(id1, id2)),
+            Integer.signum(Arrays.compareUnsigned(encoding.id(id1), encoding.id(id2))));
+        assertEquals(Integer.signum(Long.compare(id1, id2)),
+            Integer.signum(Arrays.compareUnsigned(encoding.itemRow("I:", 3, 4, id1),
+                encoding.itemRow("I:", 3, 4, id2))));
+        assertEquals(Integer.signum(Long.compare(id1, id2)), Integer
+            .signum(Arrays.compareUnsigned(encoding.ids(5, id1, 0), encoding.ids(5, id2, 0))));
+
+        int int1 = rand.nextInt() >>> rand.nextInt(32);
+        int int2 = rand.nextInt() >>> rand.nextInt(32);
+        assertEquals(Integer.signum(Integer.compareUnsigned(int1, int2)), Integer.signum(
+            Arrays.compareUnsigned(encoding.intRow("R:", int1), encoding.intRow("R:", int2))));
+        assertEquals(Integer.signum(Integer.compareUnsigned(int1, int2)),
+            Integer.signum(Arrays.compareUnsigned(encoding.bucket(int1), encoding.bucket(int2))));
+      }
+    }
+  }
+
+  @Test
+  public void testSplitRow() {
+    assertEquals("R:0", new String(KeyEncoding.HEX.splitRow("R:", 0), UTF_8));
+    assertEquals("R:1", new String(KeyEncoding.HEX.splitRow("R:", 0x10000000), UTF_8));
+    assertEquals("R:0000002a", new String(KeyEncoding.HEX.splitRow("R:", 42), UTF_8));
+    assertEquals("R:00001", new String(KeyEncoding.HEX.splitRow("R:", 0x1000), UTF_8));
+    assertArrayEquals(new byte[] {'R', ':', 0}, KeyEncoding.BINARY.splitRow("R:", 0));
+    assertArrayEquals(new byte[] {'R', ':', 0, 1}, KeyEncoding.BINARY.splitRow("R:", 0x10000));
+    assertArrayEquals(new byte[] {'R', ':', 0, 0, 0, 42}, KeyEncoding.BINARY.splitRow("R:", 42));
+
+    byte[] low = new byte[8];
+    byte[] high = new byte[8];
+    Arrays.fill(high, (byte) 0xff);
+    Random rand = new Random(42);
+    for (KeyEncoding encoding : KeyEncoding.values()) {
+      for (int i = 0; i < 10_000; i++) {
+        int value = Math.max(1, rand.nextInt() >>> rand.nextInt(32));
+        byte[] split = encoding.splitRow("R:", value);
+        byte[] row = encoding.intRow("R:", value);
+        byte[] previous = encoding.intRow("R:", value - 1);
+        assertArrayEquals(split, Arrays.copyOf(row, split.length));
+        // a tablet ends at its split inclusive, so every row of the previous value sorts before
+        // the split and every longer row of the value itself sorts after it
+        assertTrue(Arrays.compareUnsigned(concat(previous, high), split) < 0);
+        assertTrue(Arrays.compareUnsigned(concat(row, low), split) > 0);
+      }
+    }
+  }
+}
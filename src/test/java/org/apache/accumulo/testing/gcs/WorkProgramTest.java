@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.gcs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class WorkProgramTest {
+
+  private static List<Integer> items(int mask) {
+    List<Integer> items = new ArrayList<>();
+    WorkProgram.forEachItem(mask, items::add);
+    return items;
+  }
+
+  @Test
+  public void testMask() {
+    assertEquals(0, WorkProgram.mask(List.of()));
+    assertEquals(List.of(), items(0));
+    assertEquals(0b1011, WorkProgram.mask(List.of(3, 0, 1)));
+    assertEquals(List.of(0, 1, 3), items(0b1011));
+
+    int last = WorkProgram.MAX_ITEMS - 1;
+    assertEquals(1 << last, WorkProgram.mask(List.of(last)));
+    assertEquals(List.of(last), items(1 << last));
+    assertEquals(Integer.MAX_VALUE, WorkProgram.mask(items(Integer.MAX_VALUE)));
+    assertEquals(WorkProgram.MAX_ITEMS, items(Integer.MAX_VALUE).size());
+
+    assertThrows(IllegalArgumentException.class,
+        () -> WorkProgram.mask(List.of(WorkProgram.MAX_ITEMS)));
+    assertThrows(IllegalArgumentException.class, () -> WorkProgram.mask(List.of(-1)));
+
+    Random rand = new Random(42);
+    for (int i = 0; i < 1000; i++) {
+      int mask = rand.nextInt() >>> 1;
+      assertEquals(mask, WorkProgram.mask(items(mask)));
+    }
+  }
+
+  @Test
+  public void testBuilder() {
+    WorkProgram.Builder builder = new WorkProgram.Builder();
+    builder.add(WorkProgram.SAVE_NEW, 0b111).add(WorkProgram.SAVE_REFS, 0b011, 42)
+        .add(WorkProgram.SAVE_GROUP_REF).add(WorkProgram.REPLACE, 0b001, 2, 42)
+        .add(WorkProgram.RELEASE_REF, 2, 42).add(WorkProgram.DELETE_GROUP_REF);
+    assertEquals(6, builder.steps());
+
+    int[] program = builder.build();
+    assertArrayEquals(new int[] {WorkProgram.SAVE_NEW, 0b111, WorkProgram.SAVE_REFS, 0b011, 42,
+        WorkProgram.SAVE_GROUP_REF, WorkProgram.REPLACE, 0b001, 2, 42, WorkProgram.RELEASE_REF, 2,
+        42, WorkProgram.DELETE_GROUP_REF}, program);
+
+    List<Integer> opcodes = new ArrayList<>();
+    for (int pc = 0; pc < program.length; pc = WorkProgram.next(program, pc)) {
+      opcodes.add(program[pc]);
+    }
+    assertEquals(List.of(WorkProgram.SAVE_NEW, WorkProgram.SAVE_REFS, WorkProgram.SAVE_GROUP_REF,
+        WorkProgram.REPLACE, WorkProgram.RELEASE_REF, WorkProgram.DELETE_GROUP_REF), opcodes);
+
+    assertThrows(IllegalArgumentException.class,
+        () -> new WorkProgram.Builder().add(WorkProgram.SAVE_REFS, 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> new WorkProgram.Builder().add(WorkProgram.SAVE_GROUP_REF, 1));
+    assertThrows(IllegalArgumentException.class, () -> new WorkProgram.Builder().add(42));
+  }
+
+  @Test
+  public void testGrow() {
+    WorkProgram.Builder builder = new WorkProgram.Builder();
+    for (int i = 0; i < 1000; i++) {
+      builder.add(WorkProgram.SAVE_REF, i % WorkProgram.MAX_ITEMS, i);
+    }
+    assertEquals(1000, builder.steps());
+    int[] program = builder.build();
+    assertEquals(3000, program.length);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(WorkProgram.SAVE_REF, program[3 * i]);
+      assertEquals(i % WorkProgram.MAX_ITEMS, program[3 * i + 1]);
+      assertEquals(i, program[3 * i + 2]);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.merkle;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.accumulo.core.data.Range;
+import org.apache.hadoop.io.Text;
+import org.junit.jupiter.api.Test;
+
+public class MerkleTreeBuilderTest {
+
+  private static final String DIGEST = "SHA-256";
+
+  /**
+   * Creates leaves over consecutive row ranges the way GenerateHashes does.
+   */
+  private static List<MerkleTreeNode> leaves(int n) throws Exception {
+    List<MerkleTreeNode> leaves = new ArrayList<>();
+    Text prev = null;
+    for (int i = 0; i < n; i++) {
+      Text end = i == n - 1 ? null : new Text(String.format("%04d", i));
+      byte[] hash = MessageDigest.getInstance(DIGEST).digest(("leaf" + i).getBytes(UTF_8));
+      leaves.add(
+          new MerkleTreeNode(new Range(prev, false, end, true), 0, Collections.emptyList(), hash));
+      prev = end;
+    }
+    return leaves;
+  }
+
+  /**
+   * The algorithm MerkleTree used before MerkleTreeBuilder: repeatedly join the leftmost adjacent
+   * pair at the same level, or the last two nodes when there is no such pair.
+   */
+  private static MerkleTreeNode pairwiseRoot(List<MerkleTreeNode> leaves) throws Exception {
+    List<MerkleTreeNode> buffer = new ArrayList<>(leaves);
+    while (buffer.size() > 1) {
+      int first = buffer.size() - 2;
+      for (int i = 0; i + 1 < buffer.size(); i++) {
+        if (buffer.get(i).getLevel() == buffer.get(i + 1).getLevel()) {
+          first = i;
+          break;
+        }
+      }
+      MerkleTreeNode parent =
+          new MerkleTreeNode(Arrays.asList(buffer.get(first), buffer.get(first + 1)), DIGEST);
+      buffer.set(first, parent);
+      buffer.remove(first + 1);
+    }
+    return buffer.get(0);
+  }
+
+  @Test
+  public void testMatchesPairwiseRollup() throws Exception {
+    for (int n = 1; n <= 64; n++) {
+      List<MerkleTreeNode> leaves = leaves(n);
+      MerkleTreeNode expected = pairwiseRoot(leaves);
+
+      MerkleTreeBuilder builder = new MerkleTreeBuilder(DIGEST);
+      leaves.forEach(builder::add);
+      assertEquals(expected, builder.getRootNode(), "root differs for " + n + " leaves");
+
+      assertEquals(expected, new MerkleTree(leaves, DIGEST).getRootNode());
+      assertEquals(new Range(), expected.getRange());
+    }
+  }
+
+  @Test
+  public void testKeepChildNodes() throws Exception {
+    for (int n = 1; n <= 64; n++) {
+      List<MerkleTreeNode> leaves = leaves(n);
+      MerkleTreeBuilder builder = new MerkleTreeBuilder(DIGEST, true);
+      leaves.forEach(builder::add);
+      MerkleTreeNode root = builder.getRootNode();
+      assertEquals(pairwiseRoot(leaves), root);
+
+      // walking the retained children visits every leaf in order
+      List<MerkleTreeNode> walked = new ArrayList<>();
+      collectLeaves(root, walked);
+      assertEquals(leaves, walked);
+    }
+  }
+
+  private static void collectLeaves(MerkleTreeNode node, List<MerkleTreeNode> leaves) {
+    if (node.getChildNodes().isEmpty()) {
+      leaves.add(node);
+    } else {
+      node.getChildNodes().forEach(child -> collectLeaves(child, leaves));
+    }
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    MerkleTreeBuilder builder = new MerkleTreeBuilder(DIGEST);
+    assertThrows(IllegalStateException.class, builder::getRootNode);
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.merkle.cli;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.testing.merkle.RangeSerialization;
+import org.apache.hadoop.io.Text;
+import org.junit.jupiter.api.Test;
+
+public class DiffRefinerTest {
+
+  private static Text text(String s) {
+    return s == null ? null : new Text(s);
+  }
+
+  @Test
+  public void testSplit() {
+    assertEquals(new Text("b"), DiffRefiner.split(text("a"), text("c")));
+    assertEquals(new Text(new byte[] {0x7f}), DiffRefiner.split(null, null));
+    assertNotNull(DiffRefiner.split(text("a"), null));
+    assertNotNull(DiffRefiner.split(null, text("a")));
+
+    // adjacent rows are split using an extra byte
+    Text mid = DiffRefiner.split(text("a"), text("b"));
+    assertNotNull(mid);
+    assertTrue(mid.compareTo(new Text("a")) > 0 && mid.compareTo(new Text("b")) < 0);
+
+    // nothing sorts strictly between these
+    assertNull(DiffRefiner.split(text("a"), text("a")));
+    assertNull(DiffRefiner.split(text("a"), new Text("a\0".getBytes(UTF_8))));
+    assertNull(DiffRefiner.split(null, new Text(new byte[] {0})));
+  }
+
+  @Test
+  public void testSplitIsBetween() {
+    Random rand = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      Text a = randomRow(rand);
+      Text b = randomRow(rand);
+      int cmp = a.compareTo(b);
+      if (cmp == 0) {
+        continue;
+      }
+      Text lo = cmp < 0 ? a : b;
+      Text hi = cmp < 0 ? b : a;
+      Text mid = DiffRefiner.split(lo, hi);
+      if (mid != null) {
+        assertTrue(mid.compareTo(lo) > 0, lo + " " + mid);
+        assertTrue(mid.compareTo(hi) < 0, hi + " " + mid);
+      }
+      Text open = DiffRefiner.split(lo, null);
+      if (open != null) {
+        assertTrue(open.compareTo(lo) > 0);
+      }
+    }
+  }
+
+  private static Text randomRow(Random rand) {
+    byte[] row = new byte[rand.nextInt(4)];
+    for (int i = 0; i < row.length; i++) {
+      // favor a few values so rows often share prefixes and are adjacent
+      row[i] = (byte) (rand.nextBoolean() ? rand.nextInt(3) : rand.nextInt(256));
+    }
+    return new Text(row);
+  }
+
+  @Test
+  public void testRowRange() {
+    List<Range> hashed = List.of(new Range(text("b"), false, text("d"), true),
+        new Range((Text) null, false, text("b"), true),
+        new Range(text("d"), false, (Text) null, false),
+        new Range((Text) null, false, (Text) null, false));
+    String[] rows = {"", "a", "b", "b\0", "b\0\0", "c", "d", "d\0", "e"};
+
+    for (Range range : hashed) {
+      // the ranges GenerateHashes hashes are stored as a key and read back as the leaf range
+      Range leaf = RangeSerialization.toRange(RangeSerialization.toKey(range));
+      Range rowRange = DiffRefiner.toRowRange(leaf);
+      for (String row : rows) {
+        for (Key key : new Key[] {new Key(row), new Key(row, "f", "q")}) {
+          assertEquals(range.contains(key), rowRange.contains(key),
+              range + " and " + rowRange + " disagree on " + key);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.merkle.cli;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class ServerThrottleTest {
+
+  @Test
+  public void testWaitingScansDoNotHoldThreads() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      ServerThrottle throttle = new ServerThrottle(1);
+      CountDownLatch blocked = new CountDownLatch(1);
+
+      CompletableFuture<String> first = throttle.submit("a", () -> {
+        try {
+          assertTrue(blocked.await(30, SECONDS));
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        return "a1";
+      }, executor);
+      CompletableFuture<String> second = throttle.submit("a", () -> "a2", executor);
+      CompletableFuture<String> third = throttle.submit("a", () -> "a3", executor);
+
+      // server b gets the remaining thread even though scans are waiting for server a
+      assertEquals("b1", throttle.submit("b", () -> "b1", executor).get(30, SECONDS));
+      assertFalse(second.isDone());
+
+      blocked.countDown();
+      assertEquals("a1", first.get(30, SECONDS));
+      assertEquals("a2", second.get(30, SECONDS));
+      assertEquals("a3", third.get(30, SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testScansPerServer() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      ServerThrottle throttle = new ServerThrottle(2);
+      Map<String,AtomicInteger> running = new ConcurrentHashMap<>();
+      Map<String,AtomicInteger> maxRunning = new ConcurrentHashMap<>();
+
+      List<CompletableFuture<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        String server = i % 3 == 0 ? ServerThrottle.UNKNOWN : "server" + (i % 2);
+        int scan = i;
+        futures.add(throttle.submit(server, () -> {
+          int now = running.computeIfAbsent(server, s -> new AtomicInteger()).incrementAndGet();
+          maxRunning.computeIfAbsent(server, s -> new AtomicInteger()).accumulateAndGet(now,
+              Math::max);
+          try {
+            Thread.sleep(1);
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+          running.get(server).decrementAndGet();
+          if (scan == 100) {
+            throw new IllegalStateException("failed scan");
+          }
+          return scan;
+        }, executor));
+      }
+
+      for (int i = 0; i < futures.size(); i++) {
+        CompletableFuture<Integer> future = futures.get(i);
+        if (i == 100) {
+          assertTrue(future.handle((v, t) -> t != null).get(30, SECONDS));
+        } else {
+          assertEquals(i, future.get(30, SECONDS));
+        }
+      }
+      assertTrue(maxRunning.get("server0").get() <= 2);
+      assertTrue(maxRunning.get("server1").get() <= 2);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
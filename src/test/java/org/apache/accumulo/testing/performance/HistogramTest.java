@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.accumulo.testing.performance;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class HistogramTest {
+
+  private static final double[] PERCENTILES = {0.1, 1, 50, 90, 99, 99.9, 100};
+
+  @Test
+  public void testIndexValueRoundTrip() {
+    long[] values = {0, 1, 63, 64, 127, 128, 129, 255, 256, 257, 1000, 1L << 40, (1L << 40) - 1,
+        Long.MAX_VALUE - 1, Long.MAX_VALUE};
+    for (long v : values) {
+      long bucketValue = Histogram.value(Histogram.index(v));
+      if (v < 128) {
+        assertEquals(v, bucketValue);
+      } else {
+        assertTrue(Math.abs(bucketValue - v) <= v / 64, v + " -> " + bucketValue);
+      }
+    }
+  }
+
+  @Test
+  public void testBucketEdges() {
+    assertEquals(127, Histogram.index(127));
+    assertEquals(128, Histogram.index(128));
+    assertEquals(Histogram.index(128), Histogram.index(129));
+    assertEquals(Histogram.index(255) + 1, Histogram.index(256));
+
+    int last = Histogram.index(Long.MAX_VALUE);
+    for (int i = 0; i <= last; i++) {
+      assertEquals(i, Histogram.index(Histogram.value(i)));
+    }
+    for (int shift = 7; shift < 63; shift++) {
+      long edge = 1L << shift;
+      assertEquals(Histogram.index(edge - 1) + 1, Histogram.index(edge));
+    }
+
+    Histogram histogram = new Histogram();
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(50));
+  }
+
+  @Test
+  public void testPercentiles() {
+    Random random = new Random(42);
+    long[] values = new long[10_000];
+    Histogram histogram = new Histogram();
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (long) Math.abs(random.nextGaussian() * 1_000_000);
+      histogram.record(values[i]);
+    }
+    Arrays.sort(values);
+
+    for (double p : PERCENTILES) {
+      long expected = values[(int) Math.ceil(p / 100 * values.length) - 1];
+      long actual = histogram.getValueAtPercentile(p);
+      assertTrue(Math.abs(actual - expected) <= expected / 64, p + " " + expected + " " + actual);
+    }
+    assertEquals(values[0], histogram.getMin());
+    assertEquals(values[values.length - 1], histogram.getMax());
+  }
+
+  @Test
+  public void testEncodeDecode() {
+    Random random = new Random(7);
+    Histogram histogram = new Histogram();
+    for (int i = 0; i < 5_000; i++) {
+      histogram.record(random.nextInt(200) == 0 ? Long.MAX_VALUE / (1 + random.nextInt(1000))
+          : random.nextInt(100_000));
+    }
+
+    Histogram decoded = Histogram.decode(histogram.encode());
+    assertSame(histogram, decoded);
+    assertEquals(histogram.encode(), decoded.encode());
+
+    Histogram empty = Histogram.decode(new Histogram().encode());
+    assertSame(new Histogram(), empty);
+    assertEquals(0, empty.getValueAtPercentile(50));
+  }
+
+  @Test
+  public void testAdd() {
+    Histogram a = new Histogram();
+    Histogram b = new Histogram();
+    Histogram all = new Histogram();
+    for (int i = 0; i < 1000; i++) {
+      a.record(i);
+      b.record(i * 1000L);
+      all.record(i);
+      all.record(i * 1000L);
+    }
+    a.add(b);
+    a.add(new Histogram());
+    assertSame(all, a);
+  }
+
+  @Test
+  public void testDistributionMedian() {
+    Histogram h1 = new Histogram();
+    Histogram h2 = new Histogram();
+    Histogram h3 = new Histogram();
+    for (int i = 1; i <= 100; i++) {
+      h1.record(i);
+      h2.record(i * 2);
+      h3.record(i * 3);
+    }
+    List<Distribution> trials =
+        List.of(new Distribution(h1), new Distribution(h3), new Distribution(h2));
+    Distribution median = Distribution.median(trials);
+    assertEquals(new Distribution(h2).p50, median.p50);
+    assertEquals(new Distribution(h2).p99, median.p99);
+    assertEquals(1, median.min);
+    assertEquals(300, median.max);
+    assertEquals(300, median.count);
+
+    Histogram merged = Histogram.decode(median.histogram);
+    assertEquals(300, merged.getCount());
+    assertEquals((50.5 + 101 + 151.5) / 3, merged.getAverage(), 1e-9);
+  }
+
+  private static void assertSame(Histogram expected, Histogram actual) {
+    assertEquals(expected.getCount(), actual.getCount());
+    assertEquals(expected.getMin(), actual.getMin());
+    assertEquals(expected.getMax(), actual.getMax());
+    assertEquals(expected.getAverage(), actual.getAverage());
+    for (double p : PERCENTILES) {
+      assertEquals(expected.getValueAtPercentile(p), actual.getValueAtPercentile(p), "p" + p);
+    }
+  }
+}